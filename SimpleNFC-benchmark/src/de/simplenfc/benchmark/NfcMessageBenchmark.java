@@ -0,0 +1,99 @@
+package de.simplenfc.benchmark;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.NfcRecord;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+
+/**
+ * Construction of a {@link NfcMessage} through addRecord and lookups of its records, at several record counts.
+ * Run with {@code -prof gc} for the allocation rate.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class NfcMessageBenchmark {
+	@Param({"1", "4", "16", "64"})
+	public int records;
+	
+	private String[] mIds;
+	private String[] mContents;
+	private NfcMessage mMessage;
+	private byte[] mEncoded;
+	private String mLastId;
+	
+	
+	@Setup
+	public void setup(){
+		mIds = new String[records];
+		mContents = new String[records];
+		NfcMessage.Builder builder = new NfcMessage.Builder();
+		for(int i=0; i<records; i++){
+			mIds[i] = "record" + i;
+			mContents[i] = "content of record " + i;
+			builder.addRecord(mIds[i], mContents[i]);
+		}
+		mMessage = builder.build();
+		mEncoded = mMessage.toByteArray();
+		mLastId = mIds[records - 1];
+	}
+	
+	
+	@Benchmark
+	public NfcMessage addRecord(){
+		NfcMessage message = new NfcMessage();
+		for(int i=0; i<records; i++){
+			message.addRecord(mIds[i], mContents[i]);
+		}
+		return message;
+	}
+	
+	@Benchmark
+	public NfcMessage builder(){
+		NfcMessage.Builder builder = new NfcMessage.Builder();
+		for(int i=0; i<records; i++){
+			builder.addRecord(mIds[i], mContents[i]);
+		}
+		return builder.build();
+	}
+	
+	@Benchmark
+	public HashMap<String, NfcRecord> getRecords(){
+		return mMessage.getRecords();
+	}
+	
+	@Benchmark
+	public NfcRecord getRecordById(){
+		return mMessage.getRecordById(mLastId);
+	}
+	
+	/**
+	 * Lookup on a freshly parsed message, including building its index.
+	 */
+	@Benchmark
+	public NfcRecord parseAndGetRecordById() throws MalformedNdefException{
+		return NfcMessage.parse(mEncoded).getRecordById(mLastId);
+	}
+}
@@ -0,0 +1,73 @@
+package de.simplenfc.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.NfcRecord;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Decoding of record contents by {@link NfcRecord#getContent()}. A record caches its content, so every
+ * invocation creates a new record over the same view. Run with {@code -prof gc} for the allocation rate.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class NfcRecordBenchmark {
+	@Param({"8", "64"})
+	public int entries;
+	
+	private NdefRecordView mString;
+	private NdefRecordView mMap;
+	
+	
+	@Setup
+	public void setup(){
+		StringBuilder content = new StringBuilder();
+		LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
+		for(int i=0; i<entries; i++){
+			content.append("value ").append(i).append(' ');
+			map.put("key" + i, "value " + i);
+		}
+		
+		NfcMessage message = new NfcMessage.Builder()
+				.addRecord("string", content.toString())
+				.addRecord("map", map)
+				.build();
+		NdefRecordView[] records = message.getRecordViews();
+		mString = records[records.length - 2];
+		mMap = records[records.length - 1];
+	}
+	
+	
+	@Benchmark
+	public Object getStringContent(){
+		return new NfcRecord(mString).getContent();
+	}
+	
+	@Benchmark
+	public Object getMapContent(){
+		return new NfcRecord(mMap).getContent();
+	}
+}
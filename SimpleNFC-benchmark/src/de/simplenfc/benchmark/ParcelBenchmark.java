@@ -0,0 +1,58 @@
+package de.simplenfc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+
+/**
+ * Round-trip of a {@link NfcMessage} through a Parcel. {@link android.os.Parcel} only exists on a device, so the
+ * benchmark does what {@link NfcMessage#writeToParcel(android.os.Parcel, int)} and
+ * {@link NfcMessage#CREATOR} do around it: copy the encoded message and parse the copy. Run with
+ * {@code -prof gc} for the allocation rate.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ParcelBenchmark {
+	@Param({"1", "16"})
+	public int records;
+	
+	private NfcMessage mMessage;
+	
+	
+	@Setup
+	public void setup(){
+		NfcMessage.Builder builder = new NfcMessage.Builder();
+		for(int i=0; i<records; i++){
+			builder.addRecord("record" + i, "content of record " + i);
+		}
+		mMessage = builder.build();
+	}
+	
+	
+	@Benchmark
+	public NfcMessage roundTrip() throws MalformedNdefException{
+		return NfcMessage.parse(mMessage.toByteArray());
+	}
+}
@@ -0,0 +1,78 @@
+package de.simplenfc.benchmark;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.simplenfc.routing.RoutingTable;
+
+/**
+ * Routing lookups of {@link de.simplenfc.NfcMessageHandler}. The handler needs a Context, so the benchmark
+ * works on the {@link RoutingTable} it compiles from its registrations. Run with {@code -prof gc} for the
+ * allocation rate.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class RoutingBenchmark {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	@Param({"10", "1000"})
+	public int rules;
+	
+	private RoutingTable mTable;
+	private String mExact;
+	private String mPrefixed;
+	private byte[] mUnknown;
+	
+	
+	@Setup
+	public void setup(){
+		HashMap<String, Class<?>> map = new HashMap<String, Class<?>>();
+		for(int i=0; i<rules; i++){
+			map.put("com.example.app" + i + ".message", RoutingBenchmark.class);
+		}
+		map.put("com.example.prefix.*", RoutingBenchmark.class);
+		mTable = RoutingTable.compile(map);
+		
+		mExact = "com.example.app" + (rules / 2) + ".message";
+		mPrefixed = "com.example.prefix.order";
+		mUnknown = "org.example.other".getBytes(CHARSET);
+	}
+	
+	
+	@Benchmark
+	public Class<?> routeExact(){
+		return mTable.route(mExact);
+	}
+	
+	@Benchmark
+	public Class<?> routePrefix(){
+		return mTable.route(mPrefixed);
+	}
+	
+	@Benchmark
+	public boolean mightMatchUnknown(){
+		return mTable.mightMatch(mUnknown);
+	}
+}
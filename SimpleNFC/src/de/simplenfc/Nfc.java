@@ -1,13 +1,11 @@
 package de.simplenfc;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
 
 import android.app.Activity;
-import android.app.PendingIntent;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.pm.PackageManager;
 import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 import android.nfc.NfcAdapter;
@@ -16,22 +14,37 @@ import android.nfc.NfcEvent;
 import android.os.Build;
 import android.util.Log;
 import de.simplenfc.activity.NfcConnector;
+import de.simplenfc.activity.WriteRequest;
+import de.simplenfc.batch.NfcMessageSupplier;
+import de.simplenfc.batch.WriteBatch;
+import de.simplenfc.compress.Compression;
 import de.simplenfc.entity.NfcMessage;
 import de.simplenfc.entity.exceptions.LowCapacityException;
 import de.simplenfc.entity.exceptions.NDEFException;
 import de.simplenfc.entity.exceptions.NfcDisabledException;
 import de.simplenfc.entity.exceptions.ReadOnlyException;
+import de.simplenfc.event.NfcEventBus;
+import de.simplenfc.entity.exceptions.VerificationException;
+import de.simplenfc.io.TagIoEngine;
+import de.simplenfc.io.WriteOutcome;
+import de.simplenfc.io.WritePolicy;
+import de.simplenfc.listener.NfcBatchListener;
 import de.simplenfc.listener.NfcBeamListener;
 import de.simplenfc.listener.NfcForegroundListener;
 import de.simplenfc.listener.NfcWriteListener;
+import de.simplenfc.listener.NfcWriteOutcomeListener;
 import de.simplenfc.listener.adapter.NfcWriteAdapter;
-import de.simplenfc.receiver.NfcConnectorStateReceiver;
+import de.simplenfc.reader.ReaderOptions;
 import de.simplenfc.receiver.NfcForegroundReceiver;
 
 /**
  * Main class to write/read/beam NFC-tags and register NfcMessageHandler.
  * Nfc needs a reference for an activity which lifecycle has
  * to be tracked by {@link Nfc#onCreate()}, {@link Nfc#onResume()} and {@link Nfc#onPause()}.
+ * <p>
+ * Nfc is a lightweight view of the activity on the process-wide {@link NfcEngine}, which attaches the activity
+ * while it is resumed. Writes and batches are held by the engine, so they survive configuration changes and
+ * continue in whichever activity with an Nfc is resumed next.
  * 
  * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
  * @author Dennis Becker (simplenfc@denbec.de)
@@ -44,37 +57,31 @@ public class Nfc {
 	
 	private static final String TAG = "Nfc";
 	private static final int VERSION_ICECREAMSANDWICH = 14;
-	private static final int VERSION_GINGERBREAD = 10;
 	
-	private enum Mode { SLEEP, WRITE, BEAM, PUSH, FOREGROUND }
+	private enum Mode { SLEEP, BEAM, PUSH, FOREGROUND }
 	private enum State { CREATE, RESUME, PAUSE }
 	
 	private Mode mMode = Mode.SLEEP;
 	private State mState = null;
 	private Activity mActivity;
+	private NfcEngine mEngine;
 	private NfcAdapter mAdapter;
 	private NfcMessage mMessage;
-	private NfcConnectorStateReceiver mNfcReceiver;
-	private NfcWriteListener mWriteListener;
 	private NfcForegroundReceiver mForegroundReceiver;
 	
 	
 	/**
-	 * Construct and Nfc-object.
+	 * Construct and Nfc-object. The permission check and the lookup of the adapter are done once
+	 * per process by the {@link NfcEngine}.
 	 * 
 	 * @param activity The activity to use.
 	 */
 	public Nfc(Activity activity){
 		mActivity = activity;
-		mAdapter = NfcAdapter.getDefaultAdapter(mActivity);
+		mEngine = NfcEngine.getInstance(mActivity);
+		mAdapter = mEngine.getAdapter();
 		
 		if(Nfc.DEBUG)Log.v(TAG, "\tinitialize nfc, native support? "+this.isAvailable());
-		
-		if (Build.VERSION.SDK_INT >= VERSION_GINGERBREAD 
-				&& PackageManager.PERMISSION_GRANTED != mActivity.checkCallingOrSelfPermission("android.permission.NFC")) {
-
-			throw new SecurityException("android.permission.NFC must be included in AndroidManifest.xml.");
-		}
 	}
 	
 
@@ -83,8 +90,7 @@ public class Nfc {
 	 * @return True if is available, otherwise false;
 	 */
 	public boolean isAvailable(){
-		if(mAdapter == null) return false;
-		else return true;
+		return mEngine.isAvailable();
 	}
 	
 	
@@ -101,6 +107,16 @@ public class Nfc {
 	}
 	
 	/**
+	 * Creates a {@link NfcMessage.Builder} whose first record binds the message to the entire application.
+	 * @see Nfc#obtainMessageBoundToThisApp(String)
+	 * @param messageId An id for the registration of an handler through {@link Nfc#addMessageHandler(String, Class)}.
+	 * @return {@link NfcMessage.Builder} holding the binding record.
+	 */
+	public NfcMessage.Builder obtainBuilderBoundToThisApp(String messageId){
+		return new NfcMessage.Builder().addRecord(messageId, NdefRecord.TNF_MIME_MEDIA, ("application/"+mActivity.getPackageName()).getBytes(), new byte[] {});
+	}
+	
+		/**
 	 * Registers an activity as handler for received {@link NfcMessage}. The mapping between
 	 * activity and {@link NfcMessage} is placed on nfcMessageId.
 	 * 
@@ -108,7 +124,28 @@ public class Nfc {
 	 * @param activity Activity which handles the received {@link NfcMessage}.
 	 */
 	public void addMessageHandler(String nfcMessageId, Class activity){
-		NfcMessageHandler.getInstance(mActivity).registerMessageId(nfcMessageId, activity);
+		mEngine.getMessageHandler().registerMessageId(nfcMessageId, activity);
+	}
+	
+	/**
+	 * Registers several activities as handlers at once, see {@link Nfc#addMessageHandler(String, Class)}.
+	 * 
+	 * @param handlers Activities which handle the received {@link NfcMessage}, by identification-string.
+	 */
+	public void addMessageHandlers(Map<String, ? extends Class<? extends Activity>> handlers){
+		mEngine.getMessageHandler().registerMessageIds(handlers);
+	}
+	
+	/**
+	 * Registers an activity as handler for all received {@link NfcMessage}s whose identification-string matches
+	 * a pattern, e.g. <code>door*</code>, see {@link NfcMessageHandler#registerPattern(String, Class)}.
+	 * 
+	 * @param pattern Pattern of identification-strings.
+	 * @param activity Activity which handles the received {@link NfcMessage}.
+	 * @throws IllegalArgumentException If the pattern contains <code>*</code> anywhere but at its end.
+	 */
+	public void addMessageHandlerPattern(String pattern, Class<? extends Activity> activity){
+		mEngine.getMessageHandler().registerPattern(pattern, activity);
 	}
 	
 	
@@ -143,8 +180,7 @@ public class Nfc {
 	 * @return boolean If messagehandler exists true otherwise false.
 	 */
 	public boolean handleMessages(NfcMessage[] messages){
-		NfcMessageHandler handler = NfcMessageHandler.getInstance(mActivity);
-		return handler.handleMessages(messages);
+		return mEngine.getMessageHandler().handleMessages(messages);
 	}
 	
 	
@@ -156,13 +192,52 @@ public class Nfc {
 	 * @param listener {@link NfcWriteListener} to handle Exceptions or success.
 	 */
 	public void writeToTag(NfcMessage message, NfcWriteListener listener){
-		mWriteListener = listener;
-		mMessage = message;
-		mMode = Mode.WRITE;
+		writeToTag(message, listener, Compression.NONE);
+	}
+	
+	/**
+	 * Starts writemode like {@link Nfc#writeToTag(NfcMessage, NfcWriteListener)}. If the message exceeds the
+	 * capacity of the located NFC-tag, its payloads are compressed with the cheapest allowed method that fits.
+	 * 
+	 * @param message {@link NfcMessage} which will be written to an available NFC-tag.
+	 * @param listener {@link NfcWriteListener} to handle Exceptions or success.
+	 * @param compression Allowed {@link Compression}, {@link Compression#NONE} to disable compression.
+	 */
+	public void writeToTag(NfcMessage message, NfcWriteListener listener, Compression compression){
+		writeToTag(message, listener, compression, WritePolicy.OVERWRITE);
+	}
+	
+	/**
+	 * Starts writemode like {@link Nfc#writeToTag(NfcMessage, NfcWriteListener, Compression)}. The policy allows to
+	 * skip tags which already hold the message and to read written tags back. Implement {@link NfcWriteOutcomeListener}
+	 * to receive the {@link WriteOutcome}, otherwise a mismatch is reported as {@link VerificationException}.
+	 * 
+	 * @param message {@link NfcMessage} which will be written to an available NFC-tag.
+	 * @param listener {@link NfcWriteListener} to handle Exceptions or success.
+	 * @param compression Allowed {@link Compression}, {@link Compression#NONE} to disable compression.
+	 * @param policy {@link WritePolicy} of the write.
+	 */
+	public void writeToTag(NfcMessage message, NfcWriteListener listener, Compression compression, WritePolicy policy){
+		if(Nfc.DEBUG)Log.v(TAG, "\tprepare to write message "+message);
 		
-		if(State.RESUME.equals(mState)){
-			this.enableWriteMode();
-		}
+		mEngine.write(new WriteRequest(message, compression, policy), listener);
+	}
+	
+	/**
+	 * Checks if a message of {@link Nfc#writeToTag(NfcMessage, NfcWriteListener)} still waits for a tag, e.g. after
+	 * the activity was recreated.
+	 * @return True if a write is pending, otherwise false.
+	 */
+	public boolean hasPendingWrite(){
+		return mEngine.hasPendingWrite();
+	}
+	
+	/**
+	 * Replaces the listener of the pending write, so a recreated activity receives its result.
+	 * @param listener {@link NfcWriteListener} to handle Exceptions or success.
+	 */
+	public void setWriteListener(NfcWriteListener listener){
+		mEngine.setWriteListener(listener);
 	}
 	
 	/**
@@ -172,6 +247,61 @@ public class Nfc {
 	public void writeToTag(NfcMessage message){
 		writeToTag(message, null);
 	}
+	
+	
+	/**
+	 * Starts batchmode to write a sequence of messages to one NFC-tag each. Other than {@link Nfc#writeToTag(NfcMessage, NfcWriteListener)}
+	 * the foregrounddispatch stays armed between the tags, every message is encoded once before its tag is presented.
+	 * If a write fails the same message is written to the next tag.
+	 * 
+	 * @param supplier {@link NfcMessageSupplier} which returns the messages in order and null at the end of the batch.
+	 * @param listener {@link NfcBatchListener} to handle the progress of the batch.
+	 * @param compression Allowed {@link Compression}, {@link Compression#NONE} to disable compression.
+	 */
+	public void writeToTags(NfcMessageSupplier supplier, NfcBatchListener listener, Compression compression){
+		writeToTags(supplier, listener, compression, WritePolicy.OVERWRITE);
+	}
+	
+	/**
+	 * Starts batchmode like {@link Nfc#writeToTags(NfcMessageSupplier, NfcBatchListener, Compression)}. Skipped tags
+	 * count as written, a mismatch after writing as failure.
+	 * 
+	 * @param supplier {@link NfcMessageSupplier} which returns the messages in order and null at the end of the batch.
+	 * @param listener {@link NfcBatchListener} to handle the progress of the batch.
+	 * @param compression Allowed {@link Compression}, {@link Compression#NONE} to disable compression.
+	 * @param policy {@link WritePolicy} of every write.
+	 */
+	public void writeToTags(NfcMessageSupplier supplier, NfcBatchListener listener, Compression compression, WritePolicy policy){
+		mEngine.cancelBatch();
+		
+		WriteBatch batch = WriteBatch.start(supplier, compression, policy);
+		if(batch.isFinished()){
+			WriteBatch.cancel();
+			if(listener != null) listener.onNfcBatchFinished(0, 0);
+			return;
+		}
+		
+		if(Nfc.DEBUG)Log.v(TAG, "\tprepare to write batch");
+		mEngine.startBatch(listener);
+	}
+	
+	/**
+	 * @see Nfc#writeToTags(NfcMessageSupplier, NfcBatchListener, Compression)
+	 * @param supplier {@link NfcMessageSupplier} which returns the messages in order and null at the end of the batch.
+	 * @param listener {@link NfcBatchListener} to handle the progress of the batch.
+	 */
+	public void writeToTags(NfcMessageSupplier supplier, NfcBatchListener listener){
+		writeToTags(supplier, listener, Compression.NONE);
+	}
+	
+	/**
+	 * @see Nfc#writeToTags(NfcMessageSupplier, NfcBatchListener, Compression)
+	 * @param messages Queue of {@link NfcMessage}s, which may still be filled while the batch is running. The batch ends once it is empty.
+	 * @param listener {@link NfcBatchListener} to handle the progress of the batch.
+	 */
+	public void writeToTags(Queue<NfcMessage> messages, NfcBatchListener listener){
+		writeToTags(WriteBatch.fromQueue(messages), listener, Compression.NONE);
+	}
 		
 	
 	/**
@@ -184,6 +314,31 @@ public class Nfc {
 	}
 	
 	
+	/**
+	 * Checks if current android-version supports the reader mode(since API 19).
+	 * @return True if the reader mode is supported otherwise false.
+	 */
+	public boolean supportsReaderMode(){
+		return mEngine.supportsReaderMode();
+	}
+	
+	
+	/**
+	 * Handles tags of {@link Nfc#writeToTag(NfcMessage, NfcWriteListener)} and {@link Nfc#dispatchAllMessages(NfcForegroundListener)}
+	 * in the reader mode of the platform instead of the foregrounddispatch, if it is supported. The tag is written or read on a
+	 * thread of the platform without starting the {@link NfcConnector}, results reach the same listeners. Batchmode and push keep
+	 * using the foregrounddispatch.
+	 * @param options Options of the reader mode, null to use the foregrounddispatch again.
+	 */
+	public void setReaderMode(ReaderOptions options){
+		mEngine.setReaderOptions(options);
+		
+		if(State.RESUME.equals(mState) && Mode.FOREGROUND.equals(mMode)){
+			this.enableForegroundDispatch();
+		}
+	}
+	
+	
 	/**
 	 * Start beaming NfcMesage to another android-device.
 	 * @param message Message which will be beamed.
@@ -252,81 +407,38 @@ public class Nfc {
 	public void reset(){
 		if(Nfc.DEBUG)Log.v(TAG, "\treset from mode "+mMode+" with message "+mMessage);
 		
+		Mode mode = mMode;
 		mMode = Mode.SLEEP;
 		mMessage = null;
+		TagIoEngine.getInstance().cancelAll();
+		mEngine.cancelWrite();
+		mEngine.cancelBatch();
 		
-		if(Mode.BEAM.equals(mMode)){
+		if(Mode.BEAM.equals(mode)){
 			mAdapter.setNdefPushMessage(null, mActivity);
-		}else if(Mode.PUSH.equals(mMode)){
+		}else if(Mode.PUSH.equals(mode)){
 			//it's quite enough to null the mMessage
-		}else if(Mode.WRITE.equals(mMode)){
-			mAdapter.disableForegroundDispatch(mActivity);
 		}
 	}
 	
 	
-	private void enableWriteMode(){
-		if(Nfc.DEBUG)Log.v(TAG, "\tprepare to write message "+mMessage);
-		
-		mNfcReceiver = new NfcConnectorStateReceiver(mWriteListener){
-
-			@Override
-			public void onReceive(Context context, Intent intent) {
-				super.onReceive(context, intent);
-				
-				mMode = Mode.SLEEP;
-				mMessage = null;
-				mWriteListener = null;
-			}
-			
-		};
-		
-		IntentFilter filter = new IntentFilter(NfcConnectorStateReceiver.ACTION_STATECHANGED);
-		mActivity.registerReceiver(mNfcReceiver, filter);
-		
-		Intent intent = new Intent(mActivity, NfcConnector.class);
-		intent.setExtrasClassLoader(NfcMessage.class.getClassLoader());
-		intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-		intent.putExtra(NfcConnector.EXTRA_MODE, NfcConnector.MODE_WRITE);
-		intent.putExtra(NfcMessage.KEY_MESSAGE, mMessage.getRAWMessage().toByteArray());
-		
-		PendingIntent pendingIntent= PendingIntent.getActivity(mActivity, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-		NfcAdapter.getDefaultAdapter(mActivity).enableForegroundDispatch((Activity) mActivity, pendingIntent,
-				new IntentFilter[] { new IntentFilter(NfcAdapter.ACTION_TAG_DISCOVERED) }
-		, null);
-	}
-	
 	private void enablePushMode(){
 		if(Nfc.DEBUG)Log.v(TAG, "\tprepare to push message "+mMessage);
 		
 		mAdapter.enableForegroundNdefPush(mActivity, mMessage.getRAWMessage());
-		
-		Intent intent = new Intent(mActivity, NfcConnector.class);
-		intent.setExtrasClassLoader(NfcMessage.class.getClassLoader());
-		intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-		
-		PendingIntent pendingIntent= PendingIntent.getActivity(mActivity, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-		NfcAdapter.getDefaultAdapter(mActivity).enableForegroundDispatch((Activity) mActivity, pendingIntent,
-				new IntentFilter[] { new IntentFilter(NfcAdapter.ACTION_TAG_DISCOVERED) }
-		, null);
+		mEngine.enableDispatch(mActivity, null);
 	}
 	
 	private void enableForegroundDispatch(){
 		if(Nfc.DEBUG)Log.v(TAG, "\tprepare to read all messages ");
 		
-		IntentFilter filter = new IntentFilter(NfcForegroundReceiver.ACTION_MESSAGE_RECEIVED);
-		mActivity.registerReceiver(mForegroundReceiver, filter);
+		NfcEventBus.getInstance().register(mActivity, mForegroundReceiver, NfcForegroundReceiver.ACTION_MESSAGE_RECEIVED);
 		
-		Intent intent = new Intent(mActivity, NfcConnector.class);
-		intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-		intent.putExtra(NfcConnector.EXTRA_MODE, NfcConnector.MODE_FOREGROUND);
-		
-		PendingIntent pendingIntent= PendingIntent.getActivity(mActivity, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-		mAdapter.enableForegroundDispatch(mActivity, pendingIntent,
-				new IntentFilter[] { new IntentFilter(NfcAdapter.ACTION_TAG_DISCOVERED) }
-		, null);
+		// a pending write or batch keeps the foregrounddispatch
+		if(mEngine.hasPendingWrite() || mEngine.isBatchRunning()) return;
+		mEngine.enableDispatch(mActivity, NfcConnector.MODE_FOREGROUND);
 	}
-
+	
 	
 	/**
 	 * Called when activity is created.
@@ -346,11 +458,14 @@ public class Nfc {
 		
 		mState = State.RESUME;
 		
-		if(mMessage == null) return;
+		if(mEngine.attach(mActivity)){
+			if(mForegroundReceiver != null && Mode.FOREGROUND.equals(mMode)){
+				NfcEventBus.getInstance().register(mActivity, mForegroundReceiver, NfcForegroundReceiver.ACTION_MESSAGE_RECEIVED);
+			}
+			return;
+		}
 		
-		if(Mode.WRITE.equals(mMode)){
-			this.enableWriteMode();
-		}else if(Mode.PUSH.equals(mMode)){
+		if(Mode.PUSH.equals(mMode) && mMessage != null){
 			this.enablePushMode();
 		}else if(Mode.FOREGROUND.equals(mMode)){
 			this.enableForegroundDispatch();
@@ -366,15 +481,16 @@ public class Nfc {
 		
 		mState = State.PAUSE;
 		
-		if(mNfcReceiver != null){
-			mActivity.unregisterReceiver(mNfcReceiver);
-		}
-		
 		if(mForegroundReceiver != null){
-			mActivity.unregisterReceiver(mForegroundReceiver);
+			NfcEventBus.getInstance().unregister(mForegroundReceiver);
 		}
 		
-		mAdapter.disableForegroundNdefPush(mActivity);
-		mAdapter.disableForegroundDispatch(mActivity);
+		// dispatching a tag to the NfcConnector pauses the activity too, so tag I/O is only cancelled if the activity goes away,
+		// and not even then for a pending write or batch, its result is received by the NfcEngine
+		if(mActivity.isFinishing() && !mEngine.hasPendingWrite() && !mEngine.isBatchRunning()){
+			TagIoEngine.getInstance().cancelAll();
+		}
+
+		mEngine.detach(mActivity);
 	}
 }
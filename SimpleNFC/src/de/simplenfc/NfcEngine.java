@@ -0,0 +1,386 @@
+package de.simplenfc;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.nfc.NfcAdapter;
+import android.os.Build;
+import android.util.Log;
+import de.simplenfc.activity.NfcConnector;
+import de.simplenfc.activity.WriteRequest;
+import de.simplenfc.batch.WriteBatch;
+import de.simplenfc.event.NfcEventBus;
+import de.simplenfc.listener.NfcBatchListener;
+import de.simplenfc.listener.NfcWriteListener;
+import de.simplenfc.reader.ReaderModeEngine;
+import de.simplenfc.reader.ReaderOptions;
+import de.simplenfc.receiver.NfcBatchReceiver;
+import de.simplenfc.receiver.NfcConnectorStateReceiver;
+
+/**
+ * Process-wide part of {@link Nfc}, which is independent of the lifecycle of a single activity. The permission
+ * check, the {@link NfcAdapter}, the {@link IntentFilter}s, the {@link PendingIntent}s of the {@link NfcConnector}
+ * and the {@link NfcMessageHandler} are set up once per process, so activities attach and detach cheaply.
+ * <p>
+ * A pending write and a running batch belong to the engine instead of the activity which started them. They
+ * survive configuration changes and activity switches, the foregrounddispatch is armed for them whenever an
+ * activity is attached, and their receivers stay registered until they are finished or cancelled.
+ * <p>
+ * Methods except {@link #getInstance(Context)} have to be called on the main thread.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class NfcEngine {
+	private static final String TAG = "NfcEngine";
+	private static final int VERSION_GINGERBREAD = 10;
+	private static final int VERSION_KITKAT = 19;
+	// modes of the NfcConnector, null is the push mode. The index is the request code of the PendingIntent,
+	// since the intents of the modes only differ in their extras and would share one PendingIntent otherwise.
+	private static final String[] DISPATCH_MODES = { null, NfcConnector.MODE_WRITE, NfcConnector.MODE_BATCH, NfcConnector.MODE_FOREGROUND };
+	private static NfcEngine INSTANCE;
+
+	private final Context mContext;
+	private final NfcAdapter mAdapter;
+	private final NfcMessageHandler mHandler;
+	private final IntentFilter[] mFilters;
+	private final PendingIntent[] mPendingIntents = new PendingIntent[DISPATCH_MODES.length];
+	private Activity mActivity;
+	private ReaderOptions mReaderOptions;
+	private ReaderModeEngine mReader;
+	private WriteRequest mWriteRequest;
+	private long mWriteToken;
+	private NfcConnectorStateReceiver mWriteReceiver;
+	private NfcBatchReceiver mBatchReceiver;
+
+
+	private NfcEngine(Context context){
+		mContext = context.getApplicationContext();
+
+		if (Build.VERSION.SDK_INT >= VERSION_GINGERBREAD
+				&& PackageManager.PERMISSION_GRANTED != mContext.checkCallingOrSelfPermission("android.permission.NFC")) {
+
+			throw new SecurityException("android.permission.NFC must be included in AndroidManifest.xml.");
+		}
+
+		mAdapter = NfcAdapter.getDefaultAdapter(mContext);
+		mHandler = NfcMessageHandler.getInstance(mContext);
+		mFilters = new IntentFilter[] { new IntentFilter(NfcAdapter.ACTION_TAG_DISCOVERED) };
+
+		if(Nfc.DEBUG)Log.v(TAG, "\tinitialize engine, native support? "+this.isAvailable());
+	}
+
+
+	/**
+	 * @param context The context to use, only its application context is kept.
+	 * @return The process-wide engine.
+	 * @throws SecurityException If android.permission.NFC is missing.
+	 */
+	public static synchronized NfcEngine getInstance(Context context){
+		if(INSTANCE == null){
+			INSTANCE = new NfcEngine(context);
+		}
+		return INSTANCE;
+	}
+
+
+	/**
+	 * @return True if native nfc-functionality is available, otherwise false.
+	 */
+	public boolean isAvailable(){
+		return mAdapter != null;
+	}
+
+	/**
+	 * @return True if nfc is available and enabled in the settings, otherwise false.
+	 */
+	public boolean isEnabled(){
+		return mAdapter != null && mAdapter.isEnabled();
+	}
+
+	/**
+	 * @return True if the reader mode is supported(since API 19), otherwise false.
+	 */
+	public boolean supportsReaderMode(){
+		return mAdapter != null && Build.VERSION.SDK_INT >= VERSION_KITKAT;
+	}
+
+	/**
+	 * @return The adapter of the device or null if nfc is not available.
+	 */
+	public NfcAdapter getAdapter(){
+		return mAdapter;
+	}
+
+	/**
+	 * @return The message handler, whose routing table is shared by all activities.
+	 */
+	public NfcMessageHandler getMessageHandler(){
+		return mHandler;
+	}
+
+
+	/**
+	 * Attaches the resumed activity. A pending write or a running batch is continued in this activity.
+	 * @param activity The activity, has to be detached by {@link #detach(Activity)} when it is paused.
+	 * @return True if the foregrounddispatch was armed for a pending write or a running batch.
+	 */
+	public boolean attach(Activity activity){
+		if(Nfc.DEBUG)Log.v(TAG, "\tattach "+activity.getClass().getSimpleName()+", write pending: "+this.hasPendingWrite()+", batch running: "+this.isBatchRunning());
+
+		if(mActivity != activity){
+			// the reader mode is bound to the activity, the platform disabled it when the activity was paused
+			mReader = null;
+		}
+		mActivity = activity;
+
+		if(this.hasPendingWrite()){
+			this.enableDispatch(activity, NfcConnector.MODE_WRITE);
+			return true;
+		}else if(this.isBatchRunning()){
+			this.enableDispatch(activity, NfcConnector.MODE_BATCH);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Detaches the activity before it is paused and disables the foregrounddispatch, the push and the reader mode.
+	 * Pending operations are kept for the next attached activity.
+	 * @param activity The activity, does nothing if it is not attached.
+	 */
+	public void detach(Activity activity){
+		if(mActivity != activity) return;
+
+		if(Nfc.DEBUG)Log.v(TAG, "\tdetach "+activity.getClass().getSimpleName());
+		this.disableReaderMode();
+		if(mAdapter != null){
+			mAdapter.disableForegroundNdefPush(activity);
+			mAdapter.disableForegroundDispatch(activity);
+		}
+		mActivity = null;
+	}
+
+
+	/**
+	 * Makes the request the pending write, replacing any other pending write. The foregrounddispatch is
+	 * armed at once if an activity is attached.
+	 * @param request The request.
+	 * @param listener {@link NfcWriteListener} to handle Exceptions or success, may be null.
+	 */
+	public void write(WriteRequest request, NfcWriteListener listener){
+		this.clearWrite();
+		mWriteRequest = request;
+		mWriteToken = WriteRequest.post(request);
+		this.setWriteListener(listener);
+
+		if(mActivity != null){
+			this.enableDispatch(mActivity, NfcConnector.MODE_WRITE);
+		}
+	}
+
+	/**
+	 * Replaces the listener of the pending write, e.g. by an activity which was recreated after a configuration change.
+	 * @param listener {@link NfcWriteListener} to handle Exceptions or success, may be null.
+	 */
+	public void setWriteListener(NfcWriteListener listener){
+		if(mWriteReceiver != null){
+			NfcEventBus.getInstance().unregister(mWriteReceiver);
+			mWriteReceiver = null;
+		}
+		if(mWriteRequest == null) return;
+
+		mWriteReceiver = new WriteReceiver(listener);
+		NfcEventBus.getInstance().register(mContext, mWriteReceiver, NfcConnectorStateReceiver.ACTION_STATECHANGED);
+	}
+
+	/**
+	 * @return True if a message waits for a tag to be written to.
+	 */
+	public boolean hasPendingWrite(){
+		return mWriteRequest != null;
+	}
+
+	/**
+	 * Drops the pending write and disables the foregrounddispatch armed for it.
+	 */
+	public void cancelWrite(){
+		if(mWriteRequest == null) return;
+
+		this.clearWrite();
+		if(mActivity != null){
+			mAdapter.disableForegroundDispatch(mActivity);
+		}
+	}
+
+
+	/**
+	 * Continues the batch started by {@link WriteBatch#start(de.simplenfc.batch.NfcMessageSupplier, de.simplenfc.compress.Compression, de.simplenfc.io.WritePolicy)}
+	 * in the attached activities until it is finished or cancelled.
+	 * @param listener {@link NfcBatchListener} to handle the progress of the batch, may be null.
+	 */
+	public void startBatch(NfcBatchListener listener){
+		if(mBatchReceiver != null){
+			NfcEventBus.getInstance().unregister(mBatchReceiver);
+		}
+
+		mBatchReceiver = new NfcBatchReceiver(listener){
+
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				super.onReceive(context, intent);
+
+				if(intent.getBooleanExtra(EXTRA_FINISHED, false)){
+					NfcEngine.this.cancelBatch();
+				}
+			}
+
+		};
+		NfcEventBus.getInstance().register(mContext, mBatchReceiver, NfcBatchReceiver.ACTION_BATCH_PROGRESS);
+
+		if(mActivity != null){
+			this.enableDispatch(mActivity, NfcConnector.MODE_BATCH);
+		}
+	}
+
+	/**
+	 * @return True if a batch is written.
+	 */
+	public boolean isBatchRunning(){
+		return mBatchReceiver != null;
+	}
+
+	/**
+	 * Cancels the running batch and disables the foregrounddispatch armed for it.
+	 */
+	public void cancelBatch(){
+		if(mBatchReceiver == null) return;
+
+		WriteBatch.cancel();
+		NfcEventBus.getInstance().unregister(mBatchReceiver);
+		mBatchReceiver = null;
+		if(mActivity != null){
+			mAdapter.disableForegroundDispatch(mActivity);
+		}
+	}
+
+
+	/**
+	 * Sets the options of the reader mode, which replaces the foregrounddispatch for writes and reads of all messages.
+	 * @param options Options of the reader mode, null to use the foregrounddispatch.
+	 */
+	public void setReaderOptions(ReaderOptions options){
+		this.disableReaderMode();
+		mReaderOptions = options;
+
+		if(mActivity != null && this.hasPendingWrite()){
+			this.enableDispatch(mActivity, NfcConnector.MODE_WRITE);
+		}
+	}
+
+
+	/**
+	 * Arms the foregrounddispatch of the attached activity with the cached PendingIntent of the given
+	 * {@link NfcConnector} mode. Writes and reads of all messages use the reader mode instead, if it is set and supported.
+	 * @param activity The activity, does nothing if it is not attached.
+	 * @param mode Mode of the {@link NfcConnector}, null for push.
+	 */
+	void enableDispatch(Activity activity, String mode){
+		if(mActivity != activity || mAdapter == null) return;
+
+		if(NfcConnector.MODE_WRITE.equals(mode) || NfcConnector.MODE_FOREGROUND.equals(mode)){
+			if(this.enableReaderMode(NfcConnector.MODE_WRITE.equals(mode) ? mWriteRequest : null)) return;
+		}
+
+		mAdapter.enableForegroundDispatch(activity, this.getPendingIntent(mode), mFilters, null);
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	private PendingIntent getPendingIntent(String mode){
+		int index = 0;
+		for(int i=1; i<DISPATCH_MODES.length; i++){
+			if(DISPATCH_MODES[i].equals(mode)) index = i;
+		}
+
+		if(mPendingIntents[index] == null){
+			Intent intent = new Intent(mContext, NfcConnector.class);
+			intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+			if(mode != null){
+				intent.putExtra(NfcConnector.EXTRA_MODE, mode);
+			}
+			mPendingIntents[index] = PendingIntent.getActivity(mContext, index, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+		}
+		return mPendingIntents[index];
+	}
+
+	/**
+	 * Enables the reader mode instead of the foregrounddispatch, if it is set and supported.
+	 * @return True if the reader mode was enabled.
+	 */
+	private boolean enableReaderMode(WriteRequest request){
+		if(mReaderOptions == null || !this.supportsReaderMode()) return false;
+
+		mAdapter.disableForegroundDispatch(mActivity);
+		if(mReader == null){
+			mReader = new ReaderModeEngine(mActivity, mAdapter, mReaderOptions);
+		}
+		mReader.enable(request);
+		return true;
+	}
+
+	private void disableReaderMode(){
+		if(mReader != null){
+			mReader.disable();
+			mReader = null;
+		}
+	}
+
+	private void clearWrite(){
+		if(mWriteRequest == null) return;
+
+		mWriteRequest = null;
+		WriteRequest.release(mWriteToken);
+		if(mWriteReceiver != null){
+			NfcEventBus.getInstance().unregister(mWriteReceiver);
+			mWriteReceiver = null;
+		}
+		this.disableReaderMode();
+	}
+
+
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+
+	/**
+	 * Ends the pending write once its result is received.
+	 */
+	private final class WriteReceiver extends NfcConnectorStateReceiver{
+		private final boolean mHasListener;
+
+		WriteReceiver(NfcWriteListener listener){
+			super(listener);
+			mHasListener = listener != null;
+		}
+
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			if(mHasListener){
+				super.onReceive(context, intent);
+			}
+
+			if(mWriteReceiver == this){
+				NfcEngine.this.clearWrite();
+			}
+		}
+	}
+}
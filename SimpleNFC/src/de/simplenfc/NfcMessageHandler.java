@@ -1,26 +1,25 @@
 package de.simplenfc;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.StreamCorruptedException;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.Future;
 
+import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.routing.RoutingTable;
 /**
  * Singleton class to add handler for messages and call those handlers, based on a given message.
+ * The registry is loaded and stored on a background thread by {@link RegistryStore}. Message IDs are
+ * registered as rules of a {@link RoutingTable}. {@link #registerMessageId(String, Class)} matches the ID
+ * exactly, {@link #registerPattern(String, Class)} also accepts prefixes like <code>door*</code> and
+ * single-character wildcards like <code>door-?</code>.
+ * <p>
+ * The class is thread-safe. Registrations replace an immutable snapshot of the registry and its routing table,
+ * so dispatching reads them without locking.
  * 
  * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
  * @author Dennis Becker (simplenfc@denbec.de)
@@ -29,11 +28,17 @@ import de.simplenfc.entity.NfcMessage;
  */
 public class NfcMessageHandler {
 	private static final String TAG = "NfcMessageHandler";
-	private static NfcMessageHandler INSTANCE;
-	private static final String FILENAME = "handler";
+	private static volatile NfcMessageHandler INSTANCE;
 	
-	private Context mContext;
-	private HashMap<String, String> mMessageId2Class;
+	private final Context mContext;
+	private final Object mLock = new Object();
+	private final HashMap<String, Class<?>> mClasses;
+	private final RegistryStore mStore;
+	private final Future<?> mLoad;
+	private volatile Map<String, String> mMessageId2Class;
+	private volatile RoutingTable mTable = RoutingTable.EMPTY;
+	private boolean mLoaded;
+	private NfcMessage[] mDeferred;
 	
 	
 	/**
@@ -42,8 +47,15 @@ public class NfcMessageHandler {
 	 */
 	private NfcMessageHandler(Context context){
 		this.mContext = context.getApplicationContext();
-		this.mMessageId2Class = new HashMap<String, String>();
-		this.deserializeFromFile();
+		this.mMessageId2Class = Collections.emptyMap();
+		this.mClasses = new HashMap<String, Class<?>>();
+		this.mStore = new RegistryStore(this.mContext);
+		this.mLoad = this.mStore.load(new RegistryStore.Callback() {
+			@Override
+			public void onLoaded(Map<String, String> registry) {
+				NfcMessageHandler.this.merge(registry);
+			}
+		});
 	}
 	
 	
@@ -53,101 +65,205 @@ public class NfcMessageHandler {
 	 * @return The message handler.
 	 */
 	public static NfcMessageHandler getInstance(Context c){
-		if(INSTANCE == null){
-			return INSTANCE = new NfcMessageHandler(c);
-		}else{
-			return INSTANCE;
+		NfcMessageHandler instance = INSTANCE;
+		if(instance == null){
+			synchronized (NfcMessageHandler.class) {
+				instance = INSTANCE;
+				if(instance == null){
+					INSTANCE = instance = new NfcMessageHandler(c);
+				}
+			}
 		}
+		return instance;
+	}
+	
+	
+	/**
+	 * The stored registry is loaded in the background. Registrations made before it is loaded take
+	 * precedence over stored ones, messages {@link #handleMessages(NfcMessage[])} can not route before
+	 * are dispatched once it is loaded.
+	 * @return Future which is done once the stored registry is loaded.
+	 */
+	public Future<?> getReadyFuture(){
+		return mLoad;
 	}
 	
 	
 	/**
-	 * Open Activities based on the messages passed.
+	 * Open Activities based on the messages passed. The call never blocks: it routes on the registrations
+	 * known so far. If none of them matches while the stored registry is still loading, e.g. on a tap which
+	 * cold-started the app, the messages are kept and dispatched from the background thread once it is loaded.
+	 * If they still have no handler then, the launch activity of the app is started instead.
 	 * @param messages Array of messages, which handlers should be opened.
-	 * @return If there is no associated handler, returns false otherwise true.
+	 * @return If there is no associated handler, returns false otherwise true. True as well if the messages
+	 * are dispatched after the load.
 	 */
 	public boolean handleMessages(NfcMessage[] messages){
 		if(messages == null || messages.length == 0) return false;
-
-		for (NfcMessage msg : messages) {
-			if(this.mMessageId2Class.containsKey(msg.getID())){
-				String className = this.mMessageId2Class.get(msg.getID());
-				Intent intent = null;
-				try {
-					intent = new Intent(this.mContext, Class.forName(className));
-				} catch (ClassNotFoundException e) {
-					Log.e(TAG, e.getMessage());
-				}
-				intent.putExtra(NfcMessage.KEY_MESSAGE, msg);
-				
-				this.mContext.startActivity(intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP));
+		if(this.dispatch(messages)) return true;
+		
+		synchronized (mLock) {
+			if(!mLoaded){
+				if(Nfc.DEBUG)Log.v(TAG, "	registry not loaded, dispatch deferred");
+				mDeferred = messages;
 				return true;
 			}
 		}
-		return false;
+		return this.dispatch(messages);
+	}
+	
+	
+	/**
+	 * Checks the encoded ID of a message against the routing table before the message is parsed. Does not
+	 * block either, while the stored registry is loading every ID might be handled.
+	 * @param id Encoded ID of the first record of a message.
+	 * @return False if no handler is registered for the ID, true if one probably is.
+	 */
+	public boolean mightHandle(byte[] id){
+		synchronized (mLock) {
+			if(!mLoaded) return true;
+		}
+		return mTable.mightMatch(id);
 	}
 	
 	
 	/**
 	 * Register Message ID an pass appropriate handler class that is opened later on.
-	 * @param messageId The message ID as a String.
+	 * The registry is stored in the background, the call does not touch the file system.
+	 * @param messageId The message ID as a String, matched exactly. <code>*</code> and <code>?</code> are no wildcards,
+	 * see {@link #registerPattern(String, Class)}.
 	 * @param activity A class that is called, once the message is passed to the instance.
 	 */
 	public void registerMessageId(String messageId, @SuppressWarnings("rawtypes") Class activity){
-		this.mMessageId2Class.put(messageId, activity.getName());
-		
-		this.serializeToFile();
+		this.register(Collections.<String, Class<?>>singletonMap(RoutingTable.quote(messageId), activity));
 	}
 	
-	private void serializeToFile(){
-		try {
-			JSONObject json = new JSONObject(mMessageId2Class);
-			
-			FileOutputStream fos = mContext.openFileOutput(FILENAME, Context.MODE_PRIVATE);
-			BufferedOutputStream bos = new BufferedOutputStream(fos);
-			bos.write(json.toString().getBytes());
-			bos.close();
-			fos.close();
-			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+	
+	/**
+	 * Registers several message IDs at once. Either all or none of them are registered, dispatching sees them
+	 * all at the same time and the registry is compiled and stored only once.
+	 * @see NfcMessageHandler#registerMessageId(String, Class)
+	 * @param handlers Classes to call by message ID, matched exactly.
+	 */
+	public void registerMessageIds(Map<String, ? extends Class<? extends Activity>> handlers){
+		HashMap<String, Class<?>> rules = new HashMap<String, Class<?>>(handlers.size() * 4 / 3 + 1);
+		for(Map.Entry<String, ? extends Class<? extends Activity>> entry : handlers.entrySet()){
+			rules.put(RoutingTable.quote(entry.getKey()), entry.getValue());
 		}
+		this.register(rules);
+	}
+	
+	
+	/**
+	 * Registers a handler for all message IDs matching a rule.
+	 * @param pattern The rule. May end with <code>*</code> to match all IDs with this prefix and contain <code>?</code>
+	 * to match any single character, <code>\</code> makes the next character literal, see {@link RoutingTable}.
+	 * @param activity A class that is called, once a matching message is passed to the instance.
+	 * @throws IllegalArgumentException If the rule contains <code>*</code> anywhere but at its end.
+	 */
+	public void registerPattern(String pattern, Class<? extends Activity> activity){
+		this.register(Collections.<String, Class<?>>singletonMap(pattern, activity));
 	}
 	
-	private void deserializeFromFile(){
-		if(!Arrays.asList(mContext.fileList()).contains(FILENAME)){
-			return;
+	
+	/**
+	 * Registers several rules at once, like {@link #registerMessageIds(Map)}.
+	 * @see NfcMessageHandler#registerPattern(String, Class)
+	 * @param handlers Classes to call by rule.
+	 * @throws IllegalArgumentException If a rule contains <code>*</code> anywhere but at its end, then none is registered.
+	 */
+	public void registerPatterns(Map<String, ? extends Class<? extends Activity>> handlers){
+		this.register(handlers);
+	}
+	
+	
+	private void register(Map<String, ? extends Class<?>> handlers){
+		for(String messageId : handlers.keySet()){
+			RoutingTable.checkRule(messageId);
 		}
 		
-		try {
-			FileInputStream fis = mContext.openFileInput(FILENAME);
+		synchronized (mLock) {
+			HashMap<String, String> registry = new HashMap<String, String>(mMessageId2Class);
+			for(Map.Entry<String, ? extends Class<?>> entry : handlers.entrySet()){
+				registry.put(entry.getKey(), entry.getValue().getName());
+				mClasses.put(entry.getValue().getName(), entry.getValue());
+			}
+			this.publish(registry);
 			
-			BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-			StringBuilder content = new StringBuilder();
-			String line;
-			while ((line = br.readLine()) != null) {
-			    content.append(line);
+			if(mLoaded){
+				mStore.save(mMessageId2Class);
+			}
+		}
+	}
+	
+	
+	private boolean dispatch(NfcMessage[] messages){
+		RoutingTable table = mTable;
+		for (NfcMessage msg : messages) {
+			Class<?> handler = table.route(msg.getID());
+			if(handler != null){
+				Intent intent = new Intent(this.mContext, handler);
+				intent.putExtra(NfcMessage.KEY_MESSAGE, msg);
+				
+				this.mContext.startActivity(intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP));
+				return true;
 			}
-			fis.close();
+		}
+		return false;
+	}
+	
+	private void merge(Map<String, String> stored){
+		NfcMessage[] deferred;
+		synchronized (mLock) {
+			boolean changed = !mMessageId2Class.isEmpty();
+			HashMap<String, String> registry = new HashMap<String, String>(stored);
+			registry.putAll(mMessageId2Class);
+			mLoaded = true;
+			this.publish(registry);
 			
-			mMessageId2Class = new HashMap<String, String>();
-			JSONObject json = new JSONObject(content.toString());
-			Iterator<String> keys = json.keys();
-			while (keys.hasNext()) {
-				String key = (String) keys.next();
-				mMessageId2Class.put(key, json.getString(key));
+			if(changed){
+				mStore.save(mMessageId2Class);
+			}
+			deferred = mDeferred;
+			mDeferred = null;
+		}
+		
+		if(deferred != null && !this.dispatch(deferred)){
+			Intent launchIntent = mContext.getPackageManager().getLaunchIntentForPackage(mContext.getPackageName());
+			if(launchIntent != null){
+				mContext.startActivity(launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+			}
+		}
+	}
+	
+	/**
+	 * Compiles the routing table and publishes it together with the registry. Handler classes are resolved
+	 * once and cached, unknown classes and invalid stored rules are skipped. Must be called with mLock held.
+	 */
+	private void publish(HashMap<String, String> registry){
+		HashMap<String, Class<?>> rules = new HashMap<String, Class<?>>();
+		for(Map.Entry<String, String> entry : registry.entrySet()){
+			try {
+				RoutingTable.checkRule(entry.getKey());
+			} catch (IllegalArgumentException e) {
+				Log.e(TAG, "rule skipped: "+e.getMessage());
+				continue;
 			}
 			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (StreamCorruptedException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (JSONException e) {
-			e.printStackTrace();
+			Class<?> handler = mClasses.get(entry.getValue());
+			if(handler == null){
+				try {
+					handler = Class.forName(entry.getValue());
+					mClasses.put(entry.getValue(), handler);
+				} catch (ClassNotFoundException e) {
+					Log.e(TAG, "handler not found: "+e.getMessage());
+					continue;
+				}
+			}
+			rules.put(entry.getKey(), handler);
 		}
+		
+		mTable = RoutingTable.compile(rules);
+		mMessageId2Class = Collections.unmodifiableMap(registry);
 	}
 }
@@ -0,0 +1,209 @@
+package de.simplenfc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.util.Log;
+import de.simplenfc.routing.RoutingTable;
+
+/**
+ * Persists the registry of {@link NfcMessageHandler} on a background thread. Saves are coalesced: while a
+ * commit is pending, further saves only replace the snapshot it will write. A commit writes a temporary
+ * file and renames it over the registry, so the file is never left half-written.
+ * <p>
+ * The registry is stored in a compact binary format
+ * <pre>magic (4 bytes) | version (1 byte) | count (4 bytes) | count * (message-id, class-name as modified UTF-8)</pre>
+ * The JSON-file of earlier versions is still read and replaced by the binary file on the first load. Its IDs
+ * are exact IDs, so they are quoted by {@link RoutingTable#quote(String)} to keep matching literally.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+final class RegistryStore {
+	static final String FILENAME = "handler.bin";
+	static final String LEGACY_FILENAME = "handler";
+	
+	private static final String TAG = "RegistryStore";
+	private static final int MAGIC = 0x534E4648;
+	private static final int VERSION = 1;
+	
+	private final Context mContext;
+	private final ExecutorService mExecutor;
+	private final AtomicReference<Map<String, String>> mPending = new AtomicReference<Map<String, String>>();
+	
+	private final Runnable mCommit = new Runnable() {
+		@Override
+		public void run() {
+			Map<String, String> snapshot = mPending.getAndSet(null);
+			if(snapshot != null){
+				RegistryStore.this.write(snapshot);
+			}
+		}
+	};
+	
+	
+	RegistryStore(Context context){
+		mContext = context;
+		mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SimpleNFC-registry");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	
+	/**
+	 * Loads the registry on the background thread. Saves queued afterwards are committed after the load.
+	 * @param callback Called on the background thread with the stored registry, empty if nothing is stored.
+	 * @return Future which is done once the callback returned.
+	 */
+	Future<?> load(final Callback callback){
+		return mExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				callback.onLoaded(RegistryStore.this.read());
+			}
+		});
+	}
+	
+	/**
+	 * Queues a snapshot of the registry for writing. The snapshot must not be modified afterwards.
+	 * @param snapshot The registry to store.
+	 */
+	void save(Map<String, String> snapshot){
+		if(mPending.getAndSet(snapshot) == null){
+			mExecutor.execute(mCommit);
+		}
+	}
+	
+	
+	/**
+	 * Receives the registry loaded by {@link RegistryStore#load(Callback)}.
+	 */
+	interface Callback{
+		void onLoaded(Map<String, String> registry);
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private Map<String, String> read(){
+		File file = mContext.getFileStreamPath(FILENAME);
+		if(file.exists()){
+			try {
+				return this.readBinary(file);
+			} catch (IOException e) {
+				Log.e(TAG, "unreadable registry: "+e.getMessage());
+			}
+		}
+		
+		File legacy = mContext.getFileStreamPath(LEGACY_FILENAME);
+		if(legacy.exists()){
+			try {
+				Map<String, String> registry = this.readJson(legacy);
+				this.write(registry);
+				mContext.deleteFile(LEGACY_FILENAME);
+				return registry;
+			} catch (IOException e) {
+				Log.e(TAG, "unreadable legacy registry: "+e.getMessage());
+			} catch (JSONException e) {
+				Log.e(TAG, "unreadable legacy registry: "+e.getMessage());
+			}
+		}
+		return new HashMap<String, String>();
+	}
+	
+	private Map<String, String> readBinary(File file) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) throw new IOException("unknown format");
+			
+			int count = in.readInt();
+			HashMap<String, String> registry = new HashMap<String, String>(Math.max(16, count * 2));
+			for(int i=0; i<count; i++){
+				registry.put(in.readUTF(), in.readUTF());
+			}
+			return registry;
+		} finally {
+			in.close();
+		}
+	}
+	
+	private Map<String, String> readJson(File file) throws IOException, JSONException{
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+		StringBuilder content = new StringBuilder();
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				content.append(line);
+			}
+		} finally {
+			br.close();
+		}
+		
+		HashMap<String, String> registry = new HashMap<String, String>();
+		JSONObject json = new JSONObject(content.toString());
+		Iterator<String> keys = json.keys();
+		while (keys.hasNext()) {
+			String key = (String) keys.next();
+			registry.put(RoutingTable.quote(key), json.getString(key));
+		}
+		return registry;
+	}
+	
+	private void write(Map<String, String> registry){
+		File file = mContext.getFileStreamPath(FILENAME);
+		File temp = new File(file.getPath() + ".tmp");
+		
+		try {
+			FileOutputStream fos = new FileOutputStream(temp);
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+				out.writeInt(MAGIC);
+				out.writeByte(VERSION);
+				out.writeInt(registry.size());
+				for(Map.Entry<String, String> entry : registry.entrySet()){
+					out.writeUTF(entry.getKey());
+					out.writeUTF(entry.getValue());
+				}
+				out.flush();
+				fos.getFD().sync();
+			} finally {
+				fos.close();
+			}
+			
+			if(!temp.renameTo(file)) throw new IOException("rename of "+temp+" failed");
+			if(Nfc.DEBUG)Log.v(TAG, "\tregistry with "+registry.size()+" entries written");
+		} catch (IOException e) {
+			Log.e(TAG, "registry not written: "+e.getMessage());
+			temp.delete();
+		}
+	}
+}
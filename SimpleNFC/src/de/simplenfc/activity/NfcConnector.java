@@ -1,27 +1,39 @@
 package de.simplenfc.activity;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.nfc.FormatException;
 import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.nfc.NfcAdapter;
 import android.nfc.Tag;
-import android.nfc.tech.Ndef;
-import android.nfc.tech.NdefFormatable;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.Log;
 import de.simplenfc.Nfc;
+import de.simplenfc.NfcEngine;
 import de.simplenfc.NfcMessageHandler;
+import de.simplenfc.batch.WriteBatch;
+import de.simplenfc.chunk.ChunkAssembler;
+import de.simplenfc.chunk.MessageChunker;
+import de.simplenfc.compress.Compression;
 import de.simplenfc.entity.NfcMessage;
-import de.simplenfc.entity.exceptions.LowCapacityException;
-import de.simplenfc.entity.exceptions.NDEFException;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
 import de.simplenfc.entity.exceptions.NfcDisabledException;
-import de.simplenfc.entity.exceptions.ReadOnlyException;
+import de.simplenfc.entity.exceptions.VerificationException;
+import de.simplenfc.event.NfcEventBus;
+import de.simplenfc.filter.ReadDeduplicator;
+import de.simplenfc.io.AndroidTag;
+import de.simplenfc.io.TagIoEngine;
+import de.simplenfc.io.TagWriter;
+import de.simplenfc.io.WriteOutcome;
+import de.simplenfc.io.WritePolicy;
+import de.simplenfc.metrics.NfcMetrics;
+import de.simplenfc.metrics.Stage;
+import de.simplenfc.receiver.NfcBatchReceiver;
 import de.simplenfc.receiver.NfcConnectorStateReceiver;
 import de.simplenfc.receiver.NfcForegroundReceiver;
 
@@ -37,12 +49,17 @@ import de.simplenfc.receiver.NfcForegroundReceiver;
  */
 public class NfcConnector extends Activity {
 	public static final String EXTRA_MODE = "mode";
+	public static final String EXTRA_COMPRESSION = "compression";
+	public static final String EXTRA_WRITE_TOKEN = "write_token";
 	public static final String MODE_WRITE = "write";
 	public static final String MODE_READ = "read";
 	public static final String MODE_FOREGROUND = "foreground";
+	public static final String MODE_BATCH = "batch";
 	
 	private static final String TAG = "NfcConnector";
 	
+	private long mReceived;
+	
 	
 	/* **************************************** */
 	/* ************ event handler ************* */
@@ -66,12 +83,16 @@ public class NfcConnector extends Activity {
 	/* **************************************** */
 	
 	private void handleIntent(Intent intent){
+		mReceived = NfcMetrics.start();
+		
 		if (intent.hasExtra(EXTRA_MODE) && intent.getStringExtra(EXTRA_MODE).equals(MODE_WRITE)) {
 			this.writeMessage(intent);
 		} else if (intent.hasExtra(EXTRA_MODE) && intent.getStringExtra(EXTRA_MODE).equals(MODE_READ)){
 			this.readMessage(intent);
 		} else if(intent.hasExtra(EXTRA_MODE) && intent.getStringExtra(EXTRA_MODE).equals(MODE_FOREGROUND)){
 			this.handleForegroundMessage(intent);
+		} else if(intent.hasExtra(EXTRA_MODE) && intent.getStringExtra(EXTRA_MODE).equals(MODE_BATCH)){
+			this.writeBatch(intent);
 		}else {
 			this.readMessage(intent);
 		}
@@ -81,19 +102,29 @@ public class NfcConnector extends Activity {
 		if(NfcAdapter.ACTION_NDEF_DISCOVERED.equals(intent.getAction())){
 			Parcelable[] rawMessages = intent.getParcelableArrayExtra(NfcAdapter.EXTRA_NDEF_MESSAGES);
 			
+			if(rawMessages != null && this.isDuplicate(intent, rawMessages)){
+				this.finish();
+				return;
+			}
+			
 			if(rawMessages != null){
 				try{
+					long start = NfcMetrics.start();
 					NfcMessage[] parsedMessages = new NfcMessage[rawMessages.length];
 					
 					for (int i=0; i<rawMessages.length; i++) {
 						NdefMessage msg = (NdefMessage) rawMessages[i];
 						parsedMessages[i] = NfcMessage.PARSER.parseFromNdefMessage(msg);
 					}
+					NfcMetrics.stop(Stage.PARSE, start);
+					
+					parsedMessages = this.reassemble(parsedMessages);
+					if(parsedMessages.length == 0) return;
 					
 					Intent broadcastIntent = new Intent(NfcForegroundReceiver.ACTION_MESSAGE_RECEIVED);
 					Bundle b = new Bundle(1);
 					b.putParcelableArray(NfcForegroundReceiver.EXTRA_NFCMESSAGE, parsedMessages);
-					this.sendBroadcast(broadcastIntent.putExtras(b));
+					this.dispatch(broadcastIntent.putExtras(b));
 				}catch (Exception e) {
 					Log.e(TAG, "handleForegroundMessage", e);
 					
@@ -106,7 +137,7 @@ public class NfcConnector extends Activity {
 					Intent broadcastIntent = new Intent(NfcForegroundReceiver.ACTION_MESSAGE_RECEIVED);
 					Bundle b = new Bundle(1);
 					b.putParcelableArray(NfcForegroundReceiver.EXTRA_NDEFMESSAGE, parsedMessages);
-					this.sendBroadcast(broadcastIntent.putExtras(b));
+					this.dispatch(broadcastIntent.putExtras(b));
 				}finally{
 					this.finish();
 				}
@@ -117,15 +148,24 @@ public class NfcConnector extends Activity {
 	private void readMessage(Intent intent){
 		if(NfcAdapter.ACTION_NDEF_DISCOVERED.equals(intent.getAction())){
 			Parcelable[] rawMessages = intent.getParcelableArrayExtra(NfcAdapter.EXTRA_NDEF_MESSAGES);
-			if(rawMessages != null){
-				NfcMessage[] parsedMessages = new NfcMessage[rawMessages.length];
+			if(rawMessages != null && !this.isDuplicate(intent, rawMessages)){
+				boolean processed = false;
 				
-				for (int i=0; i<rawMessages.length; i++) {
-					NdefMessage msg = (NdefMessage) rawMessages[i];
-					parsedMessages[i] = NfcMessage.PARSER.parseFromNdefMessage(msg);
+				if(this.isRoutable(rawMessages)){
+					long start = NfcMetrics.start();
+					NfcMessage[] parsedMessages = new NfcMessage[rawMessages.length];
+					
+					for (int i=0; i<rawMessages.length; i++) {
+						NdefMessage msg = (NdefMessage) rawMessages[i];
+						parsedMessages[i] = NfcMessage.PARSER.parseFromNdefMessage(msg);
+					}
+					NfcMetrics.stop(Stage.PARSE, start);
+					
+					parsedMessages = this.reassemble(parsedMessages);
+					NfcMetrics.stop(Stage.DISPATCH, mReceived);
+					processed = parsedMessages.length == 0 || NfcMessageHandler.getInstance(this).handleMessages(parsedMessages);
 				}
 				
-				boolean processed = new Nfc(this).handleMessages(parsedMessages);
 				if(!processed){
 					PackageManager manager = this.getPackageManager();
 					Intent launchIntent = manager.getLaunchIntentForPackage(this.getPackageName());
@@ -137,98 +177,186 @@ public class NfcConnector extends Activity {
 		}
 	}
 	
+	/**
+	 * Checks the IDs of the read messages against the routing table of {@link NfcMessageHandler} before
+	 * they are parsed. Chunk-messages always pass, their ID is only known after reassembly.
+	 */
+	private boolean isRoutable(Parcelable[] rawMessages){
+		NfcMessageHandler handler = NfcMessageHandler.getInstance(this);
+		for (Parcelable rawMessage : rawMessages) {
+			NdefMessage msg = (NdefMessage) rawMessage;
+			NdefRecord[] records = msg.getRecords();
+			if(records.length == 0) continue;
+			
+			if(MessageChunker.isChunk(msg) || handler.mightHandle(records[0].getId())) return true;
+		}
+		if(Nfc.DEBUG)Log.v(TAG, "\tno handler for read messages");
+		return false;
+	}
+	
+	/**
+	 * Checks the read against the {@link ReadDeduplicator} before anything is parsed or dispatched.
+	 */
+	private boolean isDuplicate(Intent intent, Parcelable[] rawMessages){
+		return ReadDeduplicator.getInstance().isDuplicate(intent.getByteArrayExtra(NfcAdapter.EXTRA_ID), rawMessages);
+	}
+	
+	/**
+	 * Hands the intent to the receivers registered by {@link Nfc} in this process. The intent is only
+	 * broadcast if none is registered, e.g. for receivers of another process.
+	 */
+	private void dispatch(Intent intent){
+		NfcMetrics.stop(Stage.DISPATCH, mReceived);
+		if(!NfcEventBus.getInstance().post(intent)){
+			this.sendBroadcast(intent);
+		}
+	}
+	
+	/**
+	 * Passes chunk-messages to the {@link ChunkAssembler}. Chunks are replaced by their reassembled message
+	 * once it is complete, otherwise they are removed.
+	 */
+	private NfcMessage[] reassemble(NfcMessage[] messages){
+		int count = 0;
+		for (int i=0; i<messages.length; i++) {
+			NfcMessage message = messages[i];
+			if(MessageChunker.isChunk(message)){
+				message = ChunkAssembler.getInstance().offer(message);
+			}
+			if(message != null){
+				messages[count++] = message;
+			}
+		}
+		
+		return count == messages.length ? messages : Arrays.copyOf(messages, count);
+	}
+	
 	private void writeMessage(Intent intent) {
-		Intent broadcastIntent = new Intent(NfcConnectorStateReceiver.ACTION_STATECHANGED);
-		Bundle b = new Bundle(1);
+		final Intent broadcastIntent = new Intent(NfcConnectorStateReceiver.ACTION_STATECHANGED);
+		final Bundle b = new Bundle(1);
 		
-		if(!NfcAdapter.getDefaultAdapter(this).isEnabled()){
+		if(!NfcEngine.getInstance(this).isEnabled()){
 			b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_NFCDISABLED, new NfcDisabledException());
-			this.sendBroadcast(broadcastIntent.putExtras(b));
+			this.dispatch(broadcastIntent.putExtras(b));
 			this.finish();
+			return;
 		}
 		
 		if (NfcAdapter.ACTION_TAG_DISCOVERED.equals(intent.getAction())) {
 			Tag detectedTag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
-			NfcMessage message = null;
-			try {
-				message = NfcMessage.PARSER.parseFromNdefMessage(new NdefMessage(intent.getByteArrayExtra(NfcMessage.KEY_MESSAGE)));
-			} catch (FormatException e) {
-				Log.e(TAG, e.getMessage());
+			final WriteRequest request = this.getWriteRequest(intent);
+			if(request == null){
+				b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_IO, new IOException("No message to write."));
+				this.dispatch(broadcastIntent.putExtras(b));
+				this.finish();
+				return;
 			}
 			
-			try {
-				this.write(detectedTag, message);
-				if(Nfc.DEBUG){
-					NdefRecord records[] = message.getRAWMessage().getRecords();
-					String log = "\tNdefMessage written. Included Records:";
-					for (int i=0; i<records.length; i++) {
-						log += "\n\t["+i+"] tnf: "+records[i].getTnf()
-								+", type: "+new String(records[i].getType())
-								+", id: "+new String(records[i].getId())
-								+", payloadlength: "+records[i].getPayload().length
-								+", payload: "+new String(records[i].getPayload());
-					}
+			TagWriter task = new TagWriter(new AndroidTag(detectedTag), request.getMessage(), request.getCompression(), request.getPolicy());
+			TagIoEngine.getInstance().execute(task, new TagIoEngine.Callback<WriteOutcome>() {
+				
+				@Override
+				public void onSuccess(WriteOutcome outcome) {
+					if(Nfc.DEBUG)Log.v(TAG, "\tNdefMessage of "+request.getSize()+" bytes "+outcome.name().toLowerCase());
 					
-					Log.v(TAG, log);
+					b.putBoolean(NfcConnectorStateReceiver.EXTRA_WRITTEN, true);
+					b.putSerializable(NfcConnectorStateReceiver.EXTRA_OUTCOME, outcome);
+					NfcConnector.this.dispatch(broadcastIntent.putExtras(b));
+					NfcConnector.this.finish();
 				}
-			} catch (IOException e) {
-				Log.e(TAG, e.getMessage());
-				b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_IO, e);
-			} catch (FormatException e) {
-				Log.e(TAG, e.getMessage());
-				b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_FORMAT, e);
-			} catch (ReadOnlyException e) {
-				Log.e(TAG, e.getMessage());
-				b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_READONLY, e);
-			} catch (LowCapacityException e) {
-				Log.e(TAG, e.getMessage());
-				b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_LOWCAPACITY, e);
-			} catch (NDEFException e) {
-				Log.e(TAG, e.getMessage());
-				b.putSerializable(NfcConnectorStateReceiver.EXTRA_EXCEPTION_NDEF, e);
-			} catch (Exception e) {
-				Log.e(TAG, e.getMessage());
-			}
+				
+				@Override
+				public void onFailure(Exception e) {
+					Log.e(TAG, String.valueOf(e.getMessage()));
+					NfcMetrics.exception(e);
+					b.putSerializable(NfcConnectorStateReceiver.getExceptionKey(e), e);
+					NfcConnector.this.dispatch(broadcastIntent.putExtras(b));
+					NfcConnector.this.finish();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Writes the current message of the active {@link WriteBatch}. The message is taken from the batch instead of
+	 * the intent, so the foreground dispatch of {@link Nfc} stays armed with the same PendingIntent for all tags.
+	 * A failed tag keeps the message for the next tag.
+	 */
+	private void writeBatch(Intent intent) {
+		final WriteBatch batch = WriteBatch.getActive();
+		if(batch == null || !NfcAdapter.ACTION_TAG_DISCOVERED.equals(intent.getAction())){
+			this.finish();
+			return;
+		}
+		
+		final Intent broadcastIntent = new Intent(NfcBatchReceiver.ACTION_BATCH_PROGRESS);
+		final Bundle b = new Bundle(5);
+		b.putInt(NfcBatchReceiver.EXTRA_INDEX, batch.getIndex());
+		
+		if(!NfcEngine.getInstance(this).isEnabled()){
+			this.onBatchWritten(batch, broadcastIntent, b, new NfcDisabledException());
+			return;
+		}
+		
+		Tag detectedTag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
+		TagWriter task = new TagWriter(new AndroidTag(detectedTag), batch.getCurrent(), batch.getCompression(), batch.getPolicy());
+		TagIoEngine.getInstance().execute(task, new TagIoEngine.Callback<WriteOutcome>() {
 			
-			if(b.size() == 0){
-				b.putBoolean(NfcConnectorStateReceiver.EXTRA_WRITTEN, true);
+			@Override
+			public void onSuccess(WriteOutcome outcome) {
+				NfcConnector.this.onBatchWritten(batch, broadcastIntent, b, outcome == WriteOutcome.MISMATCH ? new VerificationException() : null);
 			}
 			
-			this.sendBroadcast(broadcastIntent.putExtras(b));
-			this.finish();
+			@Override
+			public void onFailure(Exception e) {
+				NfcConnector.this.onBatchWritten(batch, broadcastIntent, b, e);
+			}
+		});
+	}
+	
+	private void onBatchWritten(WriteBatch batch, Intent broadcastIntent, Bundle b, Exception e){
+		if(e == null){
+			if(Nfc.DEBUG)Log.v(TAG, "\tbatch message "+batch.getIndex()+" written");
+			batch.onWritten();
+		}else{
+			Log.e(TAG, "writeBatch: "+e.getMessage());
+			NfcMetrics.exception(e);
+			b.putSerializable(NfcBatchReceiver.EXTRA_EXCEPTION, e);
+			batch.onFailed();
 		}
+		
+		if(batch.isFinished()){
+			b.putBoolean(NfcBatchReceiver.EXTRA_FINISHED, true);
+			b.putInt(NfcBatchReceiver.EXTRA_WRITTEN, batch.getWritten());
+			b.putInt(NfcBatchReceiver.EXTRA_FAILED, batch.getFailed());
+		}
+		
+		this.dispatch(broadcastIntent.putExtras(b));
+		this.finish();
 	}
 	
-	private void write(Tag tag, NfcMessage message) throws IOException, FormatException, ReadOnlyException, LowCapacityException, NDEFException{
-		int size = message.getRAWMessage().toByteArray().length;
-
-			Ndef ndef = Ndef.get(tag);
-			if (ndef != null) {
-				ndef.connect();
-
-				if (!ndef.isWritable()) {
-					throw new ReadOnlyException();
-				}
-				if (ndef.getMaxSize() < size) {
-					throw new LowCapacityException(ndef.getMaxSize(), size);
-				}
-				
-				ndef.writeNdefMessage(message.getRAWMessage());
-			} else {
-				NdefFormatable format = NdefFormatable.get(tag);
-				if (format != null) {
-					try {
-						format.connect();
-						format.format(message.getRAWMessage());
-					} catch (IOException e) {
-						throw e;
-					}
-				} else {
-					throw new NDEFException();
-				}
+	/**
+	 * Returns the {@link WriteRequest} posted by {@link Nfc}. The cached PendingIntent of the {@link NfcEngine} carries
+	 * no token, so the pending request is taken. Intents which carry a token or the encoded message instead are still
+	 * accepted, their message is parsed here.
+	 */
+	private WriteRequest getWriteRequest(Intent intent){
+		if(intent.hasExtra(EXTRA_WRITE_TOKEN)){
+			return WriteRequest.get(intent.getLongExtra(EXTRA_WRITE_TOKEN, 0));
+		}
+		
+		if(intent.hasExtra(NfcMessage.KEY_MESSAGE)){
+			Compression compression = intent.hasExtra(EXTRA_COMPRESSION)
+					? Compression.valueOf(intent.getStringExtra(EXTRA_COMPRESSION)) : Compression.NONE;
+			try {
+				return new WriteRequest(NfcMessage.parse(intent.getByteArrayExtra(NfcMessage.KEY_MESSAGE)), compression, WritePolicy.OVERWRITE);
+			} catch (MalformedNdefException e) {
+				Log.e(TAG, e.getMessage());
 			}
+			return null;
+		}
+		return WriteRequest.getPending();
 	}
-
 	
 	/* **************************************** */
 	/* *********** public methods ************* */
@@ -242,7 +370,4 @@ public class NfcConnector extends Activity {
 	/* *********** static methods ************* */
 	/* **************************************** */
 	
-	/* **************************************** */
-	/* *********** internal class ************* */
-	/* **************************************** */
 }
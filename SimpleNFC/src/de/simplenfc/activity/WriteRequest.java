@@ -0,0 +1,117 @@
+package de.simplenfc.activity;
+
+import android.nfc.NdefMessage;
+import de.simplenfc.compress.Compression;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.io.WritePolicy;
+
+/**
+ * A message prepared for writing. The message is snapshotted and its {@link NdefMessage} is created
+ * once when the request is constructed, so the {@link NfcConnector} writes it without copying, parsing
+ * or encoding it again.
+ * <p>
+ * Requests are handed to the {@link NfcConnector} inside the process: {@link #post(WriteRequest)} stores
+ * the request and returns a token. The PendingIntent of the {@link de.simplenfc.NfcEngine} is built once
+ * and carries nothing, the connector takes the pending request. Only one request is pending at a time,
+ * since only the resumed activity can dispatch tags.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class WriteRequest {
+	private static WriteRequest sPending;
+	private static long sToken;
+	
+	private final NfcMessage mMessage;
+	private final NdefMessage mRawMessage;
+	private final Compression mCompression;
+	private final WritePolicy mPolicy;
+	private final int mSize;
+	
+	
+	/**
+	 * Prepares a message for writing.
+	 * @param message Message to write. Later changes of the message do not affect the request.
+	 * @param compression Allowed compression if the message exceeds the capacity of the tag.
+	 * @param policy Whether identical tags are skipped and written tags are verified.
+	 */
+	public WriteRequest(NfcMessage message, Compression compression, WritePolicy policy){
+		mMessage = message.snapshot();
+		mRawMessage = mMessage.getRAWMessage();
+		mCompression = compression;
+		mPolicy = policy;
+		mSize = mMessage.getEncodedSize();
+	}
+	
+	
+	/**
+	 * Makes the request available to the {@link NfcConnector}, replacing any other pending request.
+	 * @param request The request.
+	 * @return Token which has to be passed in {@link NfcConnector#EXTRA_WRITE_TOKEN}.
+	 */
+	public static synchronized long post(WriteRequest request){
+		sPending = request;
+		return ++sToken;
+	}
+	
+	/**
+	 * @param token Token returned by {@link #post(WriteRequest)}.
+	 * @return The pending request or null if it was released or replaced.
+	 */
+	public static synchronized WriteRequest get(long token){
+		return token == sToken ? sPending : null;
+	}
+	
+	/**
+	 * @return The pending request or null if there is none.
+	 */
+	public static synchronized WriteRequest getPending(){
+		return sPending;
+	}
+	
+	/**
+	 * Drops the pending request if it still belongs to the given token.
+	 * @param token Token returned by {@link #post(WriteRequest)}.
+	 */
+	public static synchronized void release(long token){
+		if(token == sToken) sPending = null;
+	}
+	
+	
+	/**
+	 * @return The immutable snapshot of the message.
+	 */
+	public NfcMessage getMessage(){
+		return mMessage;
+	}
+	
+	/**
+	 * @return The message as {@link NdefMessage}, created once for this request.
+	 */
+	public NdefMessage getRAWMessage(){
+		return mRawMessage;
+	}
+	
+	/**
+	 * @return Allowed compression.
+	 */
+	public Compression getCompression(){
+		return mCompression;
+	}
+	
+	/**
+	 * @return Whether identical tags are skipped and written tags are verified.
+	 */
+	public WritePolicy getPolicy(){
+		return mPolicy;
+	}
+	
+	/**
+	 * @return Encoded size of the message in bytes.
+	 */
+	public int getSize(){
+		return mSize;
+	}
+}
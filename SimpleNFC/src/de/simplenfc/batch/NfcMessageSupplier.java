@@ -0,0 +1,21 @@
+package de.simplenfc.batch;
+
+import de.simplenfc.entity.NfcMessage;
+
+/**
+ * Interface for objects which supply the messages of a batch, see
+ * {@link de.simplenfc.Nfc#writeToTags(NfcMessageSupplier, de.simplenfc.listener.NfcBatchListener)}.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface NfcMessageSupplier {
+	
+	/**
+	 * Called once per message, ahead of the tap which writes it.
+	 * @return The next message to write or null if the batch is complete.
+	 */
+	public NfcMessage next();
+}
@@ -0,0 +1,153 @@
+package de.simplenfc.batch;
+
+import java.util.Queue;
+
+import de.simplenfc.compress.Compression;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.io.WritePolicy;
+
+/**
+ * State of a running batch of writes. The batch is process-wide, so the foreground dispatch stays
+ * armed with a single PendingIntent and {@link de.simplenfc.activity.NfcConnector} takes the current
+ * message from here instead of an intent extra. The next message is fetched and encoded right after
+ * a successful write, before the next tag is presented.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class WriteBatch {
+	private static WriteBatch sActive;
+	
+	private final NfcMessageSupplier mSupplier;
+	private final Compression mCompression;
+	private final WritePolicy mPolicy;
+	private NfcMessage mCurrent;
+	private int mIndex;
+	private int mWritten;
+	private int mFailed;
+	
+	
+	private WriteBatch(NfcMessageSupplier supplier, Compression compression, WritePolicy policy){
+		mSupplier = supplier;
+		mCompression = compression;
+		mPolicy = policy;
+		this.prefetch();
+	}
+	
+	
+	/**
+	 * Starts a new batch, replacing the active one.
+	 * @param supplier Supplier of the messages.
+	 * @param compression Allowed compression for every write.
+	 * @param policy Whether identical tags are skipped and written tags are verified.
+	 * @return The new active batch.
+	 */
+	public static synchronized WriteBatch start(NfcMessageSupplier supplier, Compression compression, WritePolicy policy){
+		sActive = new WriteBatch(supplier, compression, policy);
+		return sActive;
+	}
+	
+	/**
+	 * @return The active batch or null if none is running.
+	 */
+	public static synchronized WriteBatch getActive(){
+		return sActive;
+	}
+	
+	/**
+	 * Ends the active batch, further taps are ignored.
+	 */
+	public static synchronized void cancel(){
+		sActive = null;
+	}
+	
+	/**
+	 * Creates a supplier which polls the given queue.
+	 * @param messages Queue of messages, which may still be filled while the batch is running.
+	 * @return Supplier that returns null once the queue is empty.
+	 */
+	public static NfcMessageSupplier fromQueue(final Queue<NfcMessage> messages){
+		return new NfcMessageSupplier() {
+			@Override
+			public NfcMessage next() {
+				return messages.poll();
+			}
+		};
+	}
+	
+	
+	/**
+	 * @return Message for the next tag or null if the batch is finished.
+	 */
+	public synchronized NfcMessage getCurrent(){
+		return mCurrent;
+	}
+	
+	/**
+	 * @return Index of the message for the next tag, starting with 0.
+	 */
+	public synchronized int getIndex(){
+		return mIndex;
+	}
+	
+	/**
+	 * @return Allowed compression for every write.
+	 */
+	public Compression getCompression(){
+		return mCompression;
+	}
+	
+	/**
+	 * @return Whether identical tags are skipped and written tags are verified.
+	 */
+	public WritePolicy getPolicy(){
+		return mPolicy;
+	}
+	
+	/**
+	 * @return Number of tags written successfully.
+	 */
+	public synchronized int getWritten(){
+		return mWritten;
+	}
+	
+	/**
+	 * @return Number of failed write attempts.
+	 */
+	public synchronized int getFailed(){
+		return mFailed;
+	}
+	
+	/**
+	 * @return True if all messages have been written.
+	 */
+	public synchronized boolean isFinished(){
+		return mCurrent == null;
+	}
+	
+	/**
+	 * Marks the current message as written and prepares the next one.
+	 */
+	public synchronized void onWritten(){
+		mWritten++;
+		mIndex++;
+		this.prefetch();
+	}
+	
+	/**
+	 * Counts a failed attempt, the current message is kept for the next tag.
+	 */
+	public synchronized void onFailed(){
+		mFailed++;
+	}
+	
+	
+	private void prefetch(){
+		mCurrent = mSupplier.next();
+		if(mCurrent != null){
+			mCurrent.getRAWMessage();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package de.simplenfc.cbor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Convenience methods to encode and decode a single value with {@link CborWriter} and {@link CborReader}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class Cbor {
+
+	private Cbor(){}
+
+
+	/**
+	 * Encodes a value as CBOR.
+	 * @param value Any value supported by {@link CborWriter#writeValue(Object)}.
+	 * @return The encoded value.
+	 * @throws IllegalArgumentException If the value or one of its elements is not supported.
+	 */
+	public static byte[] encode(Object value){
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		try {
+			new CborWriter(out).writeValue(value);
+		} catch (IOException e) {
+			//ByteArrayOutputStream never throws
+			throw new IllegalStateException(e.getMessage());
+		}
+		return out.toByteArray();
+	}
+
+
+	/**
+	 * Decodes exactly one value from the bytes between position and limit. The position of the
+	 * given buffer is not changed.
+	 * @param encoded Buffer holding the encoded value.
+	 * @return The decoded value, see {@link CborReader#readValue()}.
+	 * @throws IOException If the data is malformed or followed by further data.
+	 */
+	public static Object decode(ByteBuffer encoded) throws IOException{
+		CborReader reader = new CborReader(encoded.duplicate());
+		Object value = reader.readValue();
+		if(reader.hasNext()) throw new IOException("CBOR: data after value");
+		return value;
+	}
+}
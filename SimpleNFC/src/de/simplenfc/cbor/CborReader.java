@@ -0,0 +1,315 @@
+package de.simplenfc.cbor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Streaming decoder for CBOR (RFC 7049) reading from a {@link ByteBuffer}. Items are consumed
+ * from the current position of the buffer, text strings are decoded directly from the buffer.
+ * <p>
+ * {@link #readValue()} returns {@link String}s, {@link Long}s, {@link Double}s, byte[]s,
+ * {@link Boolean}s, null, {@link ArrayList}s and {@link LinkedHashMap}s. Tags are skipped,
+ * indefinite-length items are supported.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class CborReader {
+	/** Item types returned by {@link CborReader#peekType()}. */
+	public enum Type { UNSIGNED, NEGATIVE, BYTES, TEXT, ARRAY, MAP, TAG, SIMPLE, BREAK, END }
+
+	private static final int MAX_DEPTH = 32;
+	private static final Type[] MAJOR_TYPES = {
+		Type.UNSIGNED, Type.NEGATIVE, Type.BYTES, Type.TEXT, Type.ARRAY, Type.MAP, Type.TAG, Type.SIMPLE
+	};
+
+	private final ByteBuffer mIn;
+
+
+	/**
+	 * Constructs a CborReader. The buffer's position is advanced while items are read.
+	 * @param in Buffer holding the encoded items between position and limit.
+	 */
+	public CborReader(ByteBuffer in){
+		mIn = in;
+	}
+
+
+	/**
+	 * @return Type of the next item without consuming it.
+	 */
+	public Type peekType(){
+		if(!mIn.hasRemaining()) return Type.END;
+
+		int initial = mIn.get(mIn.position()) & 0xFF;
+		if(initial == CborWriter.BREAK) return Type.BREAK;
+		return MAJOR_TYPES[initial >>> 5];
+	}
+
+	/**
+	 * @return True if there are more items to read.
+	 */
+	public boolean hasNext(){
+		return mIn.hasRemaining();
+	}
+
+	/**
+	 * Reads the next item including all nested items.
+	 * @return The decoded value.
+	 * @throws IOException If the data is malformed.
+	 */
+	public Object readValue() throws IOException{
+		return readValue(0);
+	}
+
+	/**
+	 * @return The next text string.
+	 * @throws IOException If the next item is no definite-length text string.
+	 */
+	public String readString() throws IOException{
+		int length = readLength(CborWriter.MAJOR_TEXT);
+		int position = mIn.position();
+		String value;
+		if(mIn.hasArray()){
+			value = new String(mIn.array(), mIn.arrayOffset() + position, length, CborWriter.CHARSET);
+		}else{
+			byte[] bytes = new byte[length];
+			mIn.duplicate().get(bytes);
+			value = new String(bytes, CborWriter.CHARSET);
+		}
+		mIn.position(position + length);
+		return value;
+	}
+
+	/**
+	 * @return The next byte string as a copy.
+	 * @throws IOException If the next item is no definite-length byte string.
+	 */
+	public byte[] readBytes() throws IOException{
+		byte[] bytes = new byte[readLength(CborWriter.MAJOR_BYTES)];
+		mIn.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * @return The next integer.
+	 * @throws IOException If the next item is no integer or exceeds the range of long.
+	 */
+	public long readLong() throws IOException{
+		int initial = readInitial();
+		int major = initial >>> 5;
+		if(major != CborWriter.MAJOR_UNSIGNED && major != CborWriter.MAJOR_NEGATIVE) throw new IOException("CBOR: integer expected");
+
+		long value = readArgument(initial);
+		if(value < 0) throw new IOException("CBOR: integer out of range");
+		return major == CborWriter.MAJOR_NEGATIVE ? -1 - value : value;
+	}
+
+	/**
+	 * @return The next floating point number.
+	 * @throws IOException If the next item is no floating point number.
+	 */
+	public double readDouble() throws IOException{
+		int initial = readInitial();
+		switch(initial){
+		case CborWriter.MAJOR_SIMPLE << 5 | CborWriter.FLOAT_HALF:
+			return halfToDouble((int) readRaw(2));
+		case CborWriter.MAJOR_SIMPLE << 5 | CborWriter.FLOAT_SINGLE:
+			return Float.intBitsToFloat((int) readRaw(4));
+		case CborWriter.MAJOR_SIMPLE << 5 | CborWriter.FLOAT_DOUBLE:
+			return Double.longBitsToDouble(readRaw(8));
+		default:
+			throw new IOException("CBOR: floating point number expected");
+		}
+	}
+
+	/**
+	 * @return The next boolean.
+	 * @throws IOException If the next item is no boolean.
+	 */
+	public boolean readBoolean() throws IOException{
+		int initial = readInitial();
+		if(initial == (CborWriter.MAJOR_SIMPLE << 5 | CborWriter.SIMPLE_TRUE)) return true;
+		if(initial == (CborWriter.MAJOR_SIMPLE << 5 | CborWriter.SIMPLE_FALSE)) return false;
+		throw new IOException("CBOR: boolean expected");
+	}
+
+	/**
+	 * Reads the header of an array, its elements are the following items.
+	 * @return Number of elements or -1 for an indefinite-length array terminated by a break.
+	 * @throws IOException If the next item is no array.
+	 */
+	public int readArrayHeader() throws IOException{
+		return readContainerHeader(CborWriter.MAJOR_ARRAY);
+	}
+
+	/**
+	 * Reads the header of a map, its keys and values are the following items.
+	 * @return Number of entries or -1 for an indefinite-length map terminated by a break.
+	 * @throws IOException If the next item is no map.
+	 */
+	public int readMapHeader() throws IOException{
+		return readContainerHeader(CborWriter.MAJOR_MAP);
+	}
+
+	/**
+	 * Consumes the break which terminates an indefinite-length item.
+	 * @throws IOException If the next item is no break.
+	 */
+	public void readBreak() throws IOException{
+		if(readInitial() != CborWriter.BREAK) throw new IOException("CBOR: break expected");
+	}
+
+	/**
+	 * Skips the next item including all nested items.
+	 * @throws IOException If the data is malformed.
+	 */
+	public void skip() throws IOException{
+		readValue(0);
+	}
+
+
+	private Object readValue(int depth) throws IOException{
+		if(depth > MAX_DEPTH) throw new IOException("CBOR: nesting too deep");
+
+		int initial = mIn.hasRemaining() ? mIn.get(mIn.position()) & 0xFF : -1;
+		if(initial < 0) throw new IOException("CBOR: unexpected end of data");
+		int info = initial & 0x1F;
+
+		switch(initial >>> 5){
+		case CborWriter.MAJOR_UNSIGNED:
+		case CborWriter.MAJOR_NEGATIVE:
+			return readLong();
+		case CborWriter.MAJOR_BYTES:
+			if(info == 31) return readIndefinite(CborWriter.MAJOR_BYTES);
+			return readBytes();
+		case CborWriter.MAJOR_TEXT:
+			if(info == 31) return new String(readIndefinite(CborWriter.MAJOR_TEXT), CborWriter.CHARSET);
+			return readString();
+		case CborWriter.MAJOR_ARRAY: {
+			int size = readArrayHeader();
+			ArrayList<Object> list = new ArrayList<Object>(size < 0 ? 4 : Math.min(size, mIn.remaining()));
+			for(int i=0; size < 0 ? peekType() != Type.BREAK : i < size; i++){
+				list.add(readValue(depth + 1));
+			}
+			if(size < 0) readBreak();
+			return list;
+		}
+		case CborWriter.MAJOR_MAP: {
+			int size = readMapHeader();
+			LinkedHashMap<Object, Object> map = new LinkedHashMap<Object, Object>(size < 0 ? 4 : Math.min(size, mIn.remaining()) * 2);
+			for(int i=0; size < 0 ? peekType() != Type.BREAK : i < size; i++){
+				Object key = readValue(depth + 1);
+				map.put(key, readValue(depth + 1));
+			}
+			if(size < 0) readBreak();
+			return map;
+		}
+		case CborWriter.MAJOR_TAG:
+			readArgument(readInitial());
+			return readValue(depth + 1);
+		default:
+			switch(info){
+			case CborWriter.SIMPLE_FALSE:
+			case CborWriter.SIMPLE_TRUE:
+				return readBoolean();
+			case CborWriter.SIMPLE_NULL:
+			case 23:
+				readInitial();
+				return null;
+			case CborWriter.FLOAT_HALF:
+			case CborWriter.FLOAT_SINGLE:
+			case CborWriter.FLOAT_DOUBLE:
+				return readDouble();
+			default:
+				throw new IOException("CBOR: unsupported simple value " + info);
+			}
+		}
+	}
+
+	private byte[] readIndefinite(int major) throws IOException{
+		readInitial();
+		ArrayList<byte[]> parts = new ArrayList<byte[]>();
+		int total = 0;
+		while(peekType() != Type.BREAK){
+			byte[] part = new byte[readLength(major)];
+			mIn.get(part);
+			parts.add(part);
+			total += part.length;
+		}
+		readBreak();
+
+		byte[] bytes = new byte[total];
+		int position = 0;
+		for(byte[] part : parts){
+			System.arraycopy(part, 0, bytes, position, part.length);
+			position += part.length;
+		}
+		return bytes;
+	}
+
+	private int readContainerHeader(int major) throws IOException{
+		int initial = readInitial();
+		if(initial >>> 5 != major) throw new IOException("CBOR: unexpected major type " + (initial >>> 5));
+		if((initial & 0x1F) == 31) return -1;
+
+		long size = readArgument(initial);
+		if(size < 0 || size > Integer.MAX_VALUE) throw new IOException("CBOR: container too large");
+		return (int) size;
+	}
+
+	private int readLength(int major) throws IOException{
+		int initial = readInitial();
+		if(initial >>> 5 != major) throw new IOException("CBOR: unexpected major type " + (initial >>> 5));
+
+		long length = readArgument(initial);
+		if(length < 0 || length > mIn.remaining()) throw new IOException("CBOR: unexpected end of data");
+		return (int) length;
+	}
+
+	private int readInitial() throws IOException{
+		if(!mIn.hasRemaining()) throw new IOException("CBOR: unexpected end of data");
+		return mIn.get() & 0xFF;
+	}
+
+	private long readArgument(int initial) throws IOException{
+		int info = initial & 0x1F;
+		if(info < 24) return info;
+
+		switch(info){
+		case 24: return readRaw(1);
+		case 25: return readRaw(2);
+		case 26: return readRaw(4);
+		case 27: return readRaw(8);
+		default: throw new IOException("CBOR: invalid additional information " + info);
+		}
+	}
+
+	private long readRaw(int length) throws IOException{
+		if(mIn.remaining() < length) throw new IOException("CBOR: unexpected end of data");
+
+		long value = 0;
+		for(int i=0; i<length; i++){
+			value = value << 8 | (mIn.get() & 0xFF);
+		}
+		return value;
+	}
+
+	private static double halfToDouble(int half){
+		int exponent = (half >>> 10) & 0x1F;
+		int mantissa = half & 0x3FF;
+		double value;
+		if(exponent == 0){
+			value = mantissa * Math.pow(2, -24);
+		}else if(exponent == 31){
+			value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+		}else{
+			value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+		}
+		return (half & 0x8000) != 0 ? -value : value;
+	}
+}
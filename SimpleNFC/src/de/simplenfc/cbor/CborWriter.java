@@ -0,0 +1,223 @@
+package de.simplenfc.cbor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Streaming encoder for CBOR (RFC 7049). Items are written with definite lengths and in their
+ * shortest form, so structured content takes only a few bytes more than its raw values.
+ * <p>
+ * Supported values for {@link #writeValue(Object)} are null, {@link Boolean}, {@link String},
+ * integral {@link Number}s, {@link Float}, {@link Double}, byte[], {@link ByteBuffer},
+ * {@link Collection}s, Object[] and {@link Map}s of these values.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class CborWriter {
+	static final int MAJOR_UNSIGNED = 0;
+	static final int MAJOR_NEGATIVE = 1;
+	static final int MAJOR_BYTES = 2;
+	static final int MAJOR_TEXT = 3;
+	static final int MAJOR_ARRAY = 4;
+	static final int MAJOR_MAP = 5;
+	static final int MAJOR_TAG = 6;
+	static final int MAJOR_SIMPLE = 7;
+
+	static final int SIMPLE_FALSE = 20;
+	static final int SIMPLE_TRUE = 21;
+	static final int SIMPLE_NULL = 22;
+	static final int FLOAT_HALF = 25;
+	static final int FLOAT_SINGLE = 26;
+	static final int FLOAT_DOUBLE = 27;
+	static final int BREAK = 0xFF;
+
+	static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final OutputStream mOut;
+
+
+	/**
+	 * Constructs a CborWriter.
+	 * @param out Stream to write the encoded items to.
+	 */
+	public CborWriter(OutputStream out){
+		mOut = out;
+	}
+
+
+	/**
+	 * Writes any supported value, containers are written recursively.
+	 * @param value The value to write.
+	 * @throws IOException If the stream fails.
+	 * @throws IllegalArgumentException If the value or one of its elements is not supported.
+	 */
+	public void writeValue(Object value) throws IOException{
+		if(value == null){
+			writeNull();
+		}else if(value instanceof String){
+			writeString((String) value);
+		}else if(value instanceof Boolean){
+			writeBoolean((Boolean) value);
+		}else if(value instanceof Double){
+			writeDouble((Double) value);
+		}else if(value instanceof Float){
+			writeDouble((Float) value);
+		}else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte){
+			writeLong(((Number) value).longValue());
+		}else if(value instanceof byte[]){
+			writeBytes((byte[]) value);
+		}else if(value instanceof ByteBuffer){
+			writeBytes((ByteBuffer) value);
+		}else if(value instanceof Map){
+			Map<?, ?> map = (Map<?, ?>) value;
+			beginMap(map.size());
+			for(Map.Entry<?, ?> entry : map.entrySet()){
+				writeValue(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		}else if(value instanceof Collection){
+			Collection<?> collection = (Collection<?>) value;
+			beginArray(collection.size());
+			for(Object element : collection){
+				writeValue(element);
+			}
+		}else if(value instanceof Object[]){
+			Object[] array = (Object[]) value;
+			beginArray(array.length);
+			for(Object element : array){
+				writeValue(element);
+			}
+		}else{
+			throw new IllegalArgumentException("Unsupported type for CBOR: " + value.getClass().getName());
+		}
+	}
+
+	/**
+	 * @param value Text to write as UTF-8 text string.
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeString(String value) throws IOException{
+		byte[] bytes = value.getBytes(CHARSET);
+		writeHeader(MAJOR_TEXT, bytes.length);
+		mOut.write(bytes);
+	}
+
+	/**
+	 * @param value Integer to write in its shortest form.
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeLong(long value) throws IOException{
+		if(value < 0){
+			writeHeader(MAJOR_NEGATIVE, -1 - value);
+		}else{
+			writeHeader(MAJOR_UNSIGNED, value);
+		}
+	}
+
+	/**
+	 * Writes a floating point number as single precision if that is lossless, otherwise as double precision.
+	 * @param value Number to write.
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeDouble(double value) throws IOException{
+		float single = (float) value;
+		if(single == value || Double.isNaN(value)){
+			mOut.write(MAJOR_SIMPLE << 5 | FLOAT_SINGLE);
+			writeRaw(Float.floatToIntBits(single) & 0xFFFFFFFFL, 4);
+		}else{
+			mOut.write(MAJOR_SIMPLE << 5 | FLOAT_DOUBLE);
+			writeRaw(Double.doubleToLongBits(value), 8);
+		}
+	}
+
+	/**
+	 * @param value Bytes to write as byte string.
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeBytes(byte[] value) throws IOException{
+		writeHeader(MAJOR_BYTES, value.length);
+		mOut.write(value);
+	}
+
+	/**
+	 * @param value Bytes between position and limit to write as byte string. The position is not changed.
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeBytes(ByteBuffer value) throws IOException{
+		int length = value.remaining();
+		writeHeader(MAJOR_BYTES, length);
+		if(value.hasArray()){
+			mOut.write(value.array(), value.arrayOffset() + value.position(), length);
+		}else{
+			for(int i=0; i<length; i++){
+				mOut.write(value.get(value.position() + i));
+			}
+		}
+	}
+
+	/**
+	 * @param value Boolean to write.
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeBoolean(boolean value) throws IOException{
+		mOut.write(MAJOR_SIMPLE << 5 | (value ? SIMPLE_TRUE : SIMPLE_FALSE));
+	}
+
+	/**
+	 * @throws IOException If the stream fails.
+	 */
+	public void writeNull() throws IOException{
+		mOut.write(MAJOR_SIMPLE << 5 | SIMPLE_NULL);
+	}
+
+	/**
+	 * Starts an array, the next size items written are its elements.
+	 * @param size Number of elements.
+	 * @throws IOException If the stream fails.
+	 */
+	public void beginArray(int size) throws IOException{
+		writeHeader(MAJOR_ARRAY, size);
+	}
+
+	/**
+	 * Starts a map, the next 2*size items written are its keys and values in alternating order.
+	 * @param size Number of entries.
+	 * @throws IOException If the stream fails.
+	 */
+	public void beginMap(int size) throws IOException{
+		writeHeader(MAJOR_MAP, size);
+	}
+
+
+	private void writeHeader(int major, long value) throws IOException{
+		int type = major << 5;
+		if(value < 24){
+			mOut.write(type | (int) value);
+		}else if(value <= 0xFFL){
+			mOut.write(type | 24);
+			writeRaw(value, 1);
+		}else if(value <= 0xFFFFL){
+			mOut.write(type | 25);
+			writeRaw(value, 2);
+		}else if(value <= 0xFFFFFFFFL){
+			mOut.write(type | 26);
+			writeRaw(value, 4);
+		}else{
+			mOut.write(type | 27);
+			writeRaw(value, 8);
+		}
+	}
+
+	private void writeRaw(long value, int length) throws IOException{
+		for(int shift = (length - 1) * 8; shift >= 0; shift -= 8){
+			mOut.write((int) (value >>> shift) & 0xFF);
+		}
+	}
+}
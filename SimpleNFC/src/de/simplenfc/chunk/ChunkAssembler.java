@@ -0,0 +1,222 @@
+package de.simplenfc.chunk;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import android.util.Log;
+import de.simplenfc.Nfc;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Reassembly buffer for chunk-messages created by {@link MessageChunker}. Chunks may arrive in any
+ * order, once all chunks of a message have been offered the original {@link NfcMessage} is returned.
+ * <p>
+ * Incomplete messages are dropped after a timeout. The number of incomplete messages and the memory they use
+ * are bounded, if either bound is exceeded the oldest incomplete messages are dropped first. The memory of a
+ * message is estimated from its chunk slots and chunk arrays, so chunks with tiny payloads are not cheaper than
+ * their bookkeeping. Chunks announcing more chunks than could ever be buffered are ignored.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class ChunkAssembler {
+	public static final long DEFAULT_TIMEOUT_MILLIS = 60 * 1000;
+	public static final int DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024;
+	public static final int DEFAULT_MAX_PENDING = 16;
+
+	/** Estimated size of one chunk slot, a reference in the array of chunks. */
+	private static final int SLOT_BYTES = 4;
+	/** Estimated header size of an array. */
+	private static final int ARRAY_BYTES = 16;
+
+	private static final String TAG = "ChunkAssembler";
+	private static ChunkAssembler INSTANCE;
+
+	private final LinkedHashMap<Integer, PartialMessage> mPartials = new LinkedHashMap<Integer, PartialMessage>();
+	private long mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private int mMaxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+	private int mMaxPending = DEFAULT_MAX_PENDING;
+	private int mBufferedBytes;
+
+
+	/**
+	 * Constructs a ChunkAssembler with default timeout and memory bound.
+	 */
+	public ChunkAssembler(){}
+
+
+	/**
+	 * @return The process-wide assembler used by {@link de.simplenfc.activity.NfcConnector}.
+	 */
+	public static synchronized ChunkAssembler getInstance(){
+		if(INSTANCE == null){
+			INSTANCE = new ChunkAssembler();
+		}
+		return INSTANCE;
+	}
+
+
+	/**
+	 * @param timeoutMillis Time after the first chunk of a message, after which its incomplete chunks are dropped.
+	 */
+	public synchronized void setTimeout(long timeoutMillis){
+		mTimeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @param maxBufferedBytes Maximum number of bytes buffered for incomplete messages, including their bookkeeping.
+	 */
+	public synchronized void setMaxBufferedBytes(int maxBufferedBytes){
+		mMaxBufferedBytes = maxBufferedBytes;
+	}
+
+	/**
+	 * @param maxPending Maximum number of incomplete messages.
+	 */
+	public synchronized void setMaxPending(int maxPending){
+		mMaxPending = maxPending;
+	}
+
+	/**
+	 * @return Number of messages which are waiting for further chunks.
+	 */
+	public synchronized int getPendingCount(){
+		return mPartials.size();
+	}
+
+	/**
+	 * Drops all incomplete messages.
+	 */
+	public synchronized void clear(){
+		mPartials.clear();
+		mBufferedBytes = 0;
+	}
+
+
+	/**
+	 * Adds a chunk-message to the buffer.
+	 * @param message A message for which {@link MessageChunker#isChunk(NfcMessage)} is true.
+	 * @return The reassembled message if this was its last missing chunk, otherwise null.
+	 */
+	public synchronized NfcMessage offer(NfcMessage message){
+		NdefRecordView chunk = MessageChunker.getChunkRecord(message);
+		if(chunk == null) return null;
+
+		long now = System.nanoTime() / 1000000;
+		this.evictExpired(now);
+
+		ByteBuffer payload = chunk.getPayload();
+		int version = payload.get() & 0xFF;
+		int hash = payload.getInt();
+		int sequence = payload.getShort() & 0xFFFF;
+		int total = payload.getShort() & 0xFFFF;
+		if(version != MessageChunker.VERSION || total == 0 || sequence >= total){
+			if(Nfc.DEBUG)Log.v(TAG, "\tignore invalid chunk "+sequence+"/"+total);
+			return null;
+		}
+		if(minimumSize(total) > mMaxBufferedBytes){
+			if(Nfc.DEBUG)Log.v(TAG, "\tignore chunk of oversized message "+sequence+"/"+total);
+			return null;
+		}
+
+		PartialMessage partial = mPartials.get(hash);
+		if(partial == null || partial.parts.length != total){
+			if(partial != null) this.remove(hash);
+			partial = new PartialMessage(now, total);
+			mPartials.put(hash, partial);
+			mBufferedBytes += partial.footprint;
+		}
+		if(partial.parts[sequence] == null){
+			byte[] data = new byte[payload.remaining()];
+			payload.get(data);
+			partial.parts[sequence] = data;
+			partial.received++;
+			partial.bytes += data.length;
+			partial.footprint += ARRAY_BYTES + data.length;
+			mBufferedBytes += ARRAY_BYTES + data.length;
+		}
+		if(Nfc.DEBUG)Log.v(TAG, "\tchunk "+(sequence+1)+"/"+total+" of message "+Integer.toHexString(hash));
+
+		if(partial.received < total){
+			this.evictOverflow(hash);
+			return null;
+		}
+
+		this.remove(hash);
+		return this.join(partial, hash);
+	}
+
+
+	private NfcMessage join(PartialMessage partial, int hash){
+		ByteBuffer encoded = ByteBuffer.allocate(partial.bytes);
+		for(byte[] part : partial.parts){
+			encoded.put(part);
+		}
+		encoded.flip();
+
+		if(MessageChunker.crc(encoded) != hash){
+			Log.e(TAG, "checksum mismatch of reassembled message");
+			return null;
+		}
+		try {
+			return NfcMessage.parse(encoded);
+		} catch (MalformedNdefException e) {
+			Log.e(TAG, e.getMessage());
+			return null;
+		}
+	}
+
+	private void evictExpired(long now){
+		Iterator<PartialMessage> iterator = mPartials.values().iterator();
+		while(iterator.hasNext()){
+			PartialMessage partial = iterator.next();
+			if(now - partial.created < mTimeoutMillis) break;
+
+			mBufferedBytes -= partial.footprint;
+			iterator.remove();
+		}
+	}
+
+	private void evictOverflow(int keep){
+		Iterator<Integer> iterator = mPartials.keySet().iterator();
+		while((mBufferedBytes > mMaxBufferedBytes || mPartials.size() > mMaxPending) && iterator.hasNext()){
+			Integer hash = iterator.next();
+			if(hash == keep) continue;
+
+			mBufferedBytes -= mPartials.get(hash).footprint;
+			iterator.remove();
+		}
+	}
+
+	private void remove(int hash){
+		PartialMessage partial = mPartials.remove(hash);
+		if(partial != null) mBufferedBytes -= partial.footprint;
+	}
+
+	/**
+	 * @return Memory of a complete message of the given number of chunks with one byte per chunk.
+	 */
+	private static long minimumSize(int total){
+		return ARRAY_BYTES + (long) total * (SLOT_BYTES + ARRAY_BYTES + 1);
+	}
+
+
+	private static final class PartialMessage{
+		final long created;
+		final byte[][] parts;
+		int received;
+		int bytes;
+		int footprint;
+
+		PartialMessage(long created, int total){
+			this.created = created;
+			this.parts = new byte[total][];
+			this.footprint = ARRAY_BYTES + total * SLOT_BYTES;
+		}
+	}
+}
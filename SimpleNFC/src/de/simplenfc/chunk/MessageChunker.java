@@ -0,0 +1,147 @@
+package de.simplenfc.chunk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.ndef.NdefCodec;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Splits a {@link NfcMessage} which exceeds the capacity of a single tag into chunk-messages for
+ * several tags. {@link ChunkAssembler} joins them again, in any order.
+ * <p>
+ * Every chunk-message repeats the first record of the original message (usually the record binding it
+ * to the application, see {@link de.simplenfc.Nfc#obtainMessageBoundToThisApp(String)}), followed by one
+ * record of type {@link #CHUNK_RECORD} with the payload
+ * <pre>version (1 byte) | CRC32 of the message (4 bytes) | sequence (2 bytes) | total (2 bytes) | data</pre>
+ * The data of all chunks in order of their sequence is the encoded original message.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class MessageChunker {
+	public static final String CHUNK_RECORD = "chunk";
+
+	static final int VERSION = 1;
+	static final int HEADER_LENGTH = 9;
+	static final int MAX_CHUNKS = 0xFFFF;
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final byte[] CHUNK_TYPE = CHUNK_RECORD.getBytes(CHARSET);
+
+
+	private MessageChunker(){}
+
+
+	/**
+	 * Splits a message into chunk-messages which each fit into the given capacity.
+	 * @param message The message to split.
+	 * @param capacity Capacity of the smallest tag that will be used, in bytes.
+	 * @return The message itself if it fits, otherwise the chunk-messages in order of their sequence.
+	 * @throws IllegalArgumentException If the capacity is too small for a single chunk or the message would need more than 65535 chunks.
+	 */
+	public static NfcMessage[] split(NfcMessage message, int capacity){
+		ByteBuffer encoded = message.getByteBuffer();
+		int length = encoded.remaining();
+		if(length <= capacity) return new NfcMessage[]{ message };
+
+		NdefRecordView[] records = message.getRecordViews();
+		NdefRecordView head = records.length > 1 ? records[0] : null;
+		int headSize = head == null ? 0 : NdefCodec.recordSize(head.getTypeLength(), head.getIdLength(), head.getPayloadLength());
+		int dataPerChunk = maxDataLength(capacity - headSize);
+		if(dataPerChunk <= 0) throw new IllegalArgumentException("Capacity of " + capacity + " bytes is too small for chunks.");
+
+		int total = (length + dataPerChunk - 1) / dataPerChunk;
+		if(total > MAX_CHUNKS) throw new IllegalArgumentException("Message needs more than " + MAX_CHUNKS + " chunks.");
+
+		int hash = crc(encoded);
+		String headId = head == null ? null : head.getIdString(CHARSET);
+		byte[] headType = head == null ? null : head.copyType();
+		byte[] headPayload = head == null ? null : head.copyPayload();
+
+		NfcMessage[] chunks = new NfcMessage[total];
+		for(int sequence=0; sequence<total; sequence++){
+			int offset = sequence * dataPerChunk;
+			int dataLength = Math.min(dataPerChunk, length - offset);
+
+			ByteBuffer payload = ByteBuffer.allocate(HEADER_LENGTH + dataLength);
+			payload.put((byte) VERSION);
+			payload.putInt(hash);
+			payload.putShort((short) sequence);
+			payload.putShort((short) total);
+			ByteBuffer data = encoded.duplicate();
+			data.position(encoded.position() + offset);
+			data.limit(encoded.position() + offset + dataLength);
+			payload.put(data);
+
+			NfcMessage.Builder builder = new NfcMessage.Builder();
+			if(head != null) builder.addRecord(headId, head.getTnf(), headType, headPayload);
+			builder.addRecord("", NdefCodec.TNF_WELL_KNOWN, CHUNK_TYPE, payload.array());
+			chunks[sequence] = builder.build();
+		}
+		return chunks;
+	}
+
+
+	/**
+	 * Checks if a message is a chunk-message created by {@link #split(NfcMessage, int)}.
+	 * @param message The message to check.
+	 * @return True if the last record of the message is a chunk-record.
+	 */
+	public static boolean isChunk(NfcMessage message){
+		return getChunkRecord(message) != null;
+	}
+
+
+	/**
+	 * Checks a read {@link NdefMessage} without converting it to a {@link NfcMessage}.
+	 * @param message The message to check.
+	 * @return True if the last record of the message is a chunk-record.
+	 */
+	public static boolean isChunk(NdefMessage message){
+		NdefRecord[] records = message.getRecords();
+		if(records.length == 0 || records.length > 2) return false;
+		
+		NdefRecord last = records[records.length - 1];
+		return last.getTnf() == NdefCodec.TNF_WELL_KNOWN && Arrays.equals(last.getType(), CHUNK_TYPE);
+	}
+
+
+	static NdefRecordView getChunkRecord(NfcMessage message){
+		NdefRecordView[] records = message.getRecordViews();
+		if(records.length == 0 || records.length > 2) return null;
+
+		NdefRecordView last = records[records.length - 1];
+		if(last.getTnf() != NdefCodec.TNF_WELL_KNOWN || !last.typeEquals(CHUNK_TYPE)) return null;
+		if(last.getPayloadLength() < HEADER_LENGTH) return null;
+		return last;
+	}
+
+	static int crc(ByteBuffer encoded){
+		CRC32 crc = new CRC32();
+		if(encoded.hasArray()){
+			crc.update(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+		}else{
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.duplicate().get(bytes);
+			crc.update(bytes);
+		}
+		return (int) crc.getValue();
+	}
+
+	private static int maxDataLength(int available){
+		int payload = available - 2 - CHUNK_TYPE.length - 4;
+		if(payload <= 0xFF){
+			payload = Math.min(0xFF, available - 2 - CHUNK_TYPE.length - 1);
+		}
+		return payload - HEADER_LENGTH;
+	}
+}
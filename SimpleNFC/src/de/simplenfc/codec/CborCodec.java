@@ -0,0 +1,33 @@
+package de.simplenfc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.simplenfc.cbor.Cbor;
+
+/**
+ * Codec of the structured records of the library(type {@link de.simplenfc.entity.NfcRecord#STRUCT_RECORD}),
+ * see {@link Cbor}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class CborCodec implements RecordCodec<Object> {
+	public static final CborCodec INSTANCE = new CborCodec();
+
+
+	private CborCodec(){}
+
+
+	@Override
+	public Object decode(ByteBuffer type, ByteBuffer payload) throws IOException {
+		return Cbor.decode(payload);
+	}
+
+	@Override
+	public ByteBuffer encode(Object content) {
+		return ByteBuffer.wrap(Cbor.encode(content));
+	}
+}
@@ -0,0 +1,136 @@
+package de.simplenfc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import de.simplenfc.entity.NfcRecord;
+import de.simplenfc.ndef.NdefCodec;
+
+/**
+ * Registry of {@link RecordCodec}s by TNF and type. A codec is either registered for one exact type or for all types
+ * of a TNF, exact types take precedence. Records without a codec are decoded as UTF-8 String by {@link StringCodec}.
+ * <p>
+ * Built in are the String, structured and map records of the library, NFC Forum Text({@link TextCodec}) and
+ * URI({@link UriCodec}) records, and MIME and External records({@link TypedCodec}).
+ * <p>
+ * The class is thread-safe. Registrations replace an immutable lookup table with one hash table per TNF, keyed
+ * by the type bytes. Lookups read it without locking and compare the type in place, without copying it.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class CodecRegistry {
+	private static final int TNF_COUNT = 8;
+	private static final CodecRegistry INSTANCE = new CodecRegistry();
+
+	private volatile Table[] mTables = new Table[TNF_COUNT];
+
+
+	private CodecRegistry(){
+		for(int i=0; i<TNF_COUNT; i++){
+			mTables[i] = Table.EMPTY;
+		}
+
+		this.register(NdefCodec.TNF_WELL_KNOWN, NfcRecord.STRING_RECORD.getBytes(), StringCodec.INSTANCE);
+		this.register(NdefCodec.TNF_WELL_KNOWN, NfcRecord.STRUCT_RECORD.getBytes(), CborCodec.INSTANCE);
+		this.register(NdefCodec.TNF_WELL_KNOWN, NfcRecord.MAP_RECORD.getBytes(), SerializedMapCodec.INSTANCE);
+		this.register(NdefCodec.TNF_WELL_KNOWN, TextCodec.TYPE, TextCodec.INSTANCE);
+		this.register(NdefCodec.TNF_WELL_KNOWN, UriCodec.TYPE, UriCodec.INSTANCE);
+		this.register(NdefCodec.TNF_MIME_MEDIA, TypedCodec.INSTANCE);
+		this.register(NdefCodec.TNF_EXTERNAL_TYPE, TypedCodec.INSTANCE);
+	}
+
+
+	/**
+	 * @return The process-wide registry.
+	 */
+	public static CodecRegistry getInstance(){
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Registers a codec for one type, replacing a codec registered for the same TNF and type.
+	 * @param tnf The 3-bit TNF.
+	 * @param type The type, e.g. <code>example.com:sensor</code> for an External record.
+	 * @param codec The codec.
+	 */
+	public synchronized void register(short tnf, byte[] type, RecordCodec<?> codec){
+		Table[] tables = mTables.clone();
+		Table table = tables[tnf & 0x07];
+		HashMap<ByteBuffer, RecordCodec<?>> types = new HashMap<ByteBuffer, RecordCodec<?>>(table.types);
+		types.put(ByteBuffer.wrap(type.clone()), codec);
+		tables[tnf & 0x07] = new Table(types, table.fallback);
+		mTables = tables;
+	}
+
+	/**
+	 * Registers a codec for all types of a TNF without a codec of their own.
+	 * @param tnf The 3-bit TNF.
+	 * @param codec The codec, null to remove it.
+	 */
+	public synchronized void register(short tnf, RecordCodec<?> codec){
+		Table[] tables = mTables.clone();
+		tables[tnf & 0x07] = new Table(tables[tnf & 0x07].types, codec);
+		mTables = tables;
+	}
+
+	/**
+	 * Removes the codec of one type.
+	 * @param tnf The 3-bit TNF.
+	 * @param type The type.
+	 */
+	public synchronized void unregister(short tnf, byte[] type){
+		Table[] tables = mTables.clone();
+		Table table = tables[tnf & 0x07];
+		HashMap<ByteBuffer, RecordCodec<?>> types = new HashMap<ByteBuffer, RecordCodec<?>>(table.types);
+		types.remove(ByteBuffer.wrap(type));
+		tables[tnf & 0x07] = new Table(types, table.fallback);
+		mTables = tables;
+	}
+
+
+	/**
+	 * @param tnf The 3-bit TNF.
+	 * @param type Type between position and limit.
+	 * @return The codec of the type, otherwise the codec of the TNF, otherwise {@link StringCodec}.
+	 */
+	public RecordCodec<?> getCodec(short tnf, ByteBuffer type){
+		Table table = mTables[tnf & 0x07];
+		RecordCodec<?> codec = table.types.get(type);
+		if(codec == null) codec = table.fallback;
+		return codec != null ? codec : StringCodec.INSTANCE;
+	}
+
+	/**
+	 * Decodes the payload with the codec of TNF and type.
+	 * @param tnf The 3-bit TNF.
+	 * @param type Read-only type between position and limit.
+	 * @param payload Read-only payload between position and limit.
+	 * @return The content.
+	 * @throws IOException If the payload is malformed.
+	 */
+	public Object decode(short tnf, ByteBuffer type, ByteBuffer payload) throws IOException{
+		return this.getCodec(tnf, type).decode(type, payload);
+	}
+
+
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+
+	private static final class Table{
+		static final Table EMPTY = new Table(new HashMap<ByteBuffer, RecordCodec<?>>(), null);
+
+		final HashMap<ByteBuffer, RecordCodec<?>> types;
+		final RecordCodec<?> fallback;
+
+		Table(HashMap<ByteBuffer, RecordCodec<?>> types, RecordCodec<?> fallback){
+			this.types = types;
+			this.fallback = fallback;
+		}
+	}
+}
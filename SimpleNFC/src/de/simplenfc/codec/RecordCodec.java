@@ -0,0 +1,36 @@
+package de.simplenfc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the payload of records of one or more (TNF, type) combinations into content and back.
+ * Codecs are registered at the {@link CodecRegistry}, which selects them for
+ * {@link de.simplenfc.entity.NfcRecord#getContent()}. Codecs have to be thread-safe.
+ *
+ * @param <T> Type of the content.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface RecordCodec<T> {
+
+	/**
+	 * Decodes the content of a record.
+	 * @param type Read-only buffer over the type field of the record.
+	 * @param payload Read-only buffer over the payload of the record.
+	 * @return The content.
+	 * @throws IOException If the payload is malformed.
+	 */
+	public T decode(ByteBuffer type, ByteBuffer payload) throws IOException;
+
+	/**
+	 * Encodes content as payload, see {@link de.simplenfc.entity.NfcMessage.Builder#addRecord(String, short, byte[], Object, RecordCodec)}.
+	 * @param content The content.
+	 * @return Buffer holding the payload between position and limit.
+	 * @throws IllegalArgumentException If the content can not be encoded.
+	 */
+	public ByteBuffer encode(T content);
+}
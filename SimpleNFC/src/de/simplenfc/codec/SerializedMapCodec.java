@@ -0,0 +1,55 @@
+package de.simplenfc.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import de.simplenfc.ndef.ByteBufferInputStream;
+
+/**
+ * Codec of the map records of former versions of the library(type {@link de.simplenfc.entity.NfcRecord#MAP_RECORD}),
+ * whose payload is a serialized {@link HashMap}. New maps are written as structured records, see {@link CborCodec}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class SerializedMapCodec implements RecordCodec<HashMap<String, String>> {
+	public static final SerializedMapCodec INSTANCE = new SerializedMapCodec();
+
+
+	private SerializedMapCodec(){}
+
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public HashMap<String, String> decode(ByteBuffer type, ByteBuffer payload) throws IOException {
+		InputStream in = new ByteBufferInputStream(payload);
+		ObjectInputStream objectIn = new ObjectInputStream(in);
+		try {
+			return (HashMap<String, String>) objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e.getMessage());
+		} finally {
+			objectIn.close();
+		}
+	}
+
+	@Override
+	public ByteBuffer encode(HashMap<String, String> content) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			ObjectOutputStream objectOut = new ObjectOutputStream(out);
+			objectOut.writeObject(content);
+			objectOut.close();
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+		return ByteBuffer.wrap(out.toByteArray());
+	}
+}
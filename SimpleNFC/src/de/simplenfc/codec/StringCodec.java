@@ -0,0 +1,33 @@
+package de.simplenfc.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Codec of the String records of the library(type {@link de.simplenfc.entity.NfcRecord#STRING_RECORD}), the payload
+ * is the UTF-8 encoded String. Records without a registered codec are decoded like this too.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class StringCodec implements RecordCodec<String> {
+	public static final StringCodec INSTANCE = new StringCodec();
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+
+	private StringCodec(){}
+
+
+	@Override
+	public String decode(ByteBuffer type, ByteBuffer payload) {
+		return CHARSET.decode(payload.duplicate()).toString();
+	}
+
+	@Override
+	public ByteBuffer encode(String content) {
+		return ByteBuffer.wrap(content.getBytes(CHARSET));
+	}
+}
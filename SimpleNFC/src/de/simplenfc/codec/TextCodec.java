@@ -0,0 +1,63 @@
+package de.simplenfc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Codec of NFC Forum Text records(TNF well known, type <code>T</code>). The payload starts with a status byte
+ * holding the encoding in bit 7 (0 UTF-8, 1 UTF-16) and the length of the language code in bits 5 to 0,
+ * followed by the US-ASCII language code and the text.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TextCodec implements RecordCodec<TextContent> {
+	/** Type of Text records. */
+	public static final byte[] TYPE = new byte[]{ 'T' };
+	public static final TextCodec INSTANCE = new TextCodec();
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Charset UTF16 = Charset.forName("UTF-16");
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final int FLAG_UTF16 = 0x80;
+	private static final int LANGUAGE_MASK = 0x3F;
+
+
+	private TextCodec(){}
+
+
+	@Override
+	public TextContent decode(ByteBuffer type, ByteBuffer payload) throws IOException {
+		ByteBuffer buffer = payload.duplicate();
+		if(!buffer.hasRemaining()) throw new IOException("Text: empty payload");
+
+		int status = buffer.get() & 0xFF;
+		int languageLength = status & LANGUAGE_MASK;
+		if(languageLength > buffer.remaining()) throw new IOException("Text: language code exceeds payload");
+
+		int end = buffer.limit();
+		buffer.limit(buffer.position() + languageLength);
+		String language = ASCII.decode(buffer).toString();
+		buffer.limit(end);
+
+		boolean utf16 = (status & FLAG_UTF16) != 0;
+		String text = (utf16 ? UTF16 : UTF8).decode(buffer).toString();
+		return new TextContent(language, text, utf16);
+	}
+
+	@Override
+	public ByteBuffer encode(TextContent content) {
+		byte[] language = content.getLanguage().getBytes(ASCII);
+		if(language.length > LANGUAGE_MASK) throw new IllegalArgumentException("language code is longer than 63 characters");
+		byte[] text = content.getText().getBytes(content.isUtf16() ? UTF16 : UTF8);
+
+		ByteBuffer payload = ByteBuffer.allocate(1 + language.length + text.length);
+		payload.put((byte) ((content.isUtf16() ? FLAG_UTF16 : 0) | language.length));
+		payload.put(language).put(text);
+		payload.flip();
+		return payload;
+	}
+}
@@ -0,0 +1,65 @@
+package de.simplenfc.codec;
+
+/**
+ * Content of a NFC Forum Text record(RTD Text): a text and the IANA language code it is written in.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TextContent {
+	private final String mLanguage;
+	private final String mText;
+	private final boolean mUtf16;
+
+
+	/**
+	 * @param language Language code like "en" or "de-DE", at most 63 characters.
+	 * @param text The text, encoded as UTF-8.
+	 */
+	public TextContent(String language, String text){
+		this(language, text, false);
+	}
+
+	/**
+	 * @param language Language code like "en" or "de-DE", at most 63 characters.
+	 * @param text The text.
+	 * @param utf16 True to encode the text as UTF-16, otherwise UTF-8.
+	 */
+	public TextContent(String language, String text, boolean utf16){
+		mLanguage = language;
+		mText = text;
+		mUtf16 = utf16;
+	}
+
+
+	/**
+	 * @return The language code.
+	 */
+	public String getLanguage(){
+		return mLanguage;
+	}
+
+	/**
+	 * @return The text.
+	 */
+	public String getText(){
+		return mText;
+	}
+
+	/**
+	 * @return True if the text is encoded as UTF-16, otherwise UTF-8.
+	 */
+	public boolean isUtf16(){
+		return mUtf16;
+	}
+
+	/**
+	 * @return The text.
+	 */
+	@Override
+	public String toString() {
+		return mText;
+	}
+}
@@ -0,0 +1,33 @@
+package de.simplenfc.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Codec of MIME records and NFC Forum External records, whose type names the format of the payload. The payload
+ * is left as it is, see {@link TypedContent}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TypedCodec implements RecordCodec<TypedContent> {
+	public static final TypedCodec INSTANCE = new TypedCodec();
+
+	private static final Charset CHARSET = Charset.forName("US-ASCII");
+
+
+	private TypedCodec(){}
+
+
+	@Override
+	public TypedContent decode(ByteBuffer type, ByteBuffer payload) {
+		return new TypedContent(CHARSET.decode(type.duplicate()).toString(), payload);
+	}
+
+	@Override
+	public ByteBuffer encode(TypedContent content) {
+		return content.getPayload();
+	}
+}
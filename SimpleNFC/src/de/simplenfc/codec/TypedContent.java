@@ -0,0 +1,47 @@
+package de.simplenfc.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Content of MIME and External records: the type, e.g. <code>image/png</code> or <code>example.com:firmware</code>,
+ * and the payload as it is, which is not copied.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TypedContent {
+	private final String mType;
+	private final ByteBuffer mPayload;
+
+
+	/**
+	 * @param type The MIME or External type.
+	 * @param payload Payload between position and limit.
+	 */
+	public TypedContent(String type, ByteBuffer payload){
+		mType = type;
+		mPayload = payload;
+	}
+
+
+	/**
+	 * @return The MIME or External type.
+	 */
+	public String getType(){
+		return mType;
+	}
+
+	/**
+	 * @return Read-only buffer over the payload.
+	 */
+	public ByteBuffer getPayload(){
+		return mPayload.asReadOnlyBuffer();
+	}
+
+	@Override
+	public String toString() {
+		return "TypedContent[" + mType + ", " + mPayload.remaining() + "b]";
+	}
+}
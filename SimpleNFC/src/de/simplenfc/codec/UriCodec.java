@@ -0,0 +1,77 @@
+package de.simplenfc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Codec of NFC Forum URI records(TNF well known, type <code>U</code>). The first byte of the payload abbreviates
+ * a common prefix like <code>https://www.</code>, see {@link #abbreviate(String)}, the rest of the URI follows as UTF-8.
+ * URIs are decoded as Strings.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class UriCodec implements RecordCodec<String> {
+	/** Type of URI records. */
+	public static final byte[] TYPE = new byte[]{ 'U' };
+	public static final UriCodec INSTANCE = new UriCodec();
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	// abbreviation table of the URI RTD, the index is the identifier code
+	private static final String[] PREFIXES = new String[]{
+		"", "http://www.", "https://www.", "http://", "https://", "tel:", "mailto:", "ftp://anonymous:anonymous@",
+		"ftp://ftp.", "ftps://", "sftp://", "smb://", "nfs://", "ftp://", "dav://", "news:",
+		"telnet://", "imap:", "rtsp://", "urn:", "pop:", "sip:", "sips:", "tftp:",
+		"btspp://", "btl2cap://", "btgoep://", "tcpobex://", "irdaobex://", "file://", "urn:epc:id:", "urn:epc:tag:",
+		"urn:epc:pat:", "urn:epc:raw:", "urn:epc:", "urn:nfc:"
+	};
+
+
+	private UriCodec(){}
+
+
+	/**
+	 * Finds the longest prefix of the abbreviation table the URI starts with.
+	 * @param uri The URI.
+	 * @return The identifier code of the prefix, 0 if the URI is not abbreviated.
+	 */
+	public static int abbreviate(String uri){
+		int code = 0;
+		for(int i=1; i<PREFIXES.length; i++){
+			if(PREFIXES[i].length() > PREFIXES[code].length() && uri.startsWith(PREFIXES[i])) code = i;
+		}
+		return code;
+	}
+
+	/**
+	 * @param code Identifier code of the abbreviation table.
+	 * @return The prefix, an empty String for reserved codes.
+	 */
+	public static String getPrefix(int code){
+		return code >= 0 && code < PREFIXES.length ? PREFIXES[code] : "";
+	}
+
+
+	@Override
+	public String decode(ByteBuffer type, ByteBuffer payload) throws IOException {
+		ByteBuffer buffer = payload.duplicate();
+		if(!buffer.hasRemaining()) throw new IOException("URI: empty payload");
+
+		String prefix = getPrefix(buffer.get() & 0xFF);
+		return prefix + CHARSET.decode(buffer);
+	}
+
+	@Override
+	public ByteBuffer encode(String uri) {
+		int code = abbreviate(uri);
+		byte[] rest = uri.substring(PREFIXES[code].length()).getBytes(CHARSET);
+
+		ByteBuffer payload = ByteBuffer.allocate(1 + rest.length);
+		payload.put((byte) code).put(rest);
+		payload.flip();
+		return payload;
+	}
+}
@@ -0,0 +1,24 @@
+package de.simplenfc.compress;
+
+/**
+ * Compression modes for writing a {@link de.simplenfc.entity.NfcMessage} onto a tag.
+ * Compression is only applied if the uncompressed message exceeds the capacity of the tag. All modes except
+ * {@link #NONE} minimize the message by {@link MessageMinimizer} first and only compress payloads if it still does not fit.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public enum Compression {
+	/** Never compress, messages exceeding the capacity fail with a LowCapacityException. */
+	NONE,
+	/** Only re-encode the message in its most compact layout, see {@link MessageMinimizer}. */
+	MINIMIZE,
+	/** Use the fast pure-Java LZ compressor. */
+	FAST,
+	/** Use DEFLATE, with the preset dictionary if one is set in {@link PayloadCompressor}. */
+	DEFLATE,
+	/** Try {@link #FAST} first and fall back to {@link #DEFLATE} if the message still does not fit. */
+	AUTO
+}
@@ -0,0 +1,145 @@
+package de.simplenfc.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fast LZ77-compressor using the LZ4 block format. Compression uses a single hash-table lookup per
+ * position, decompression is a plain copy loop, so both are considerably cheaper than DEFLATE
+ * at a lower ratio.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+final class LzCompressor {
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_LIMIT = 12;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_BITS = 12;
+
+
+	private LzCompressor(){}
+
+
+	/**
+	 * @param src Bytes to compress between position and limit. The position is not changed.
+	 * @return The compressed block.
+	 */
+	static byte[] compress(ByteBuffer src){
+		int length = src.remaining();
+		int start = src.position();
+		byte[] dst = new byte[length + length / 255 + 16];
+		int[] table = new int[1 << HASH_BITS];
+		int end = start + length;
+		int matchLimit = end - MATCH_LIMIT;
+		int anchor = start;
+		int ip = start;
+		int dp = 0;
+
+		while(ip < matchLimit){
+			int sequence = readInt(src, ip);
+			int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+			int ref = table[hash] - 1;
+			table[hash] = ip + 1;
+
+			if(ref >= start && ip - ref <= MAX_OFFSET && readInt(src, ref) == sequence){
+				int matchLength = MIN_MATCH;
+				while(ip + matchLength < end - LAST_LITERALS && src.get(ref + matchLength) == src.get(ip + matchLength)){
+					matchLength++;
+				}
+
+				dp = writeSequence(dst, dp, src, anchor, ip - anchor, ip - ref, matchLength);
+				ip += matchLength;
+				anchor = ip;
+			}else{
+				ip++;
+			}
+		}
+
+		dp = writeSequence(dst, dp, src, anchor, end - anchor, 0, 0);
+		return Arrays.copyOf(dst, dp);
+	}
+
+
+	/**
+	 * @param src Compressed block between position and limit. The position is advanced to the limit.
+	 * @param originalLength Length of the uncompressed data.
+	 * @return The decompressed data.
+	 * @throws IOException If the block is malformed.
+	 */
+	static byte[] decompress(ByteBuffer src, int originalLength) throws IOException{
+		byte[] dst = new byte[originalLength];
+		int dp = 0;
+
+		while(src.hasRemaining()){
+			int token = src.get() & 0xFF;
+			int literals = readLength(src, token >>> 4);
+			if(literals > src.remaining() || literals > originalLength - dp) throw new IOException("LZ: literals out of bounds");
+			src.get(dst, dp, literals);
+			dp += literals;
+
+			if(!src.hasRemaining()) break;
+
+			if(src.remaining() < 2) throw new IOException("LZ: truncated offset");
+			int offset = (src.get() & 0xFF) | (src.get() & 0xFF) << 8;
+			int matchLength = readLength(src, token & 0x0F) + MIN_MATCH;
+			if(offset == 0 || offset > dp || matchLength > originalLength - dp) throw new IOException("LZ: match out of bounds");
+
+			for(int i=0; i<matchLength; i++, dp++){
+				dst[dp] = dst[dp - offset];
+			}
+		}
+
+		if(dp != originalLength) throw new IOException("LZ: unexpected length " + dp);
+		return dst;
+	}
+
+
+	private static int writeSequence(byte[] dst, int dp, ByteBuffer src, int literalStart, int literals, int offset, int matchLength){
+		int token = Math.min(literals, 15) << 4;
+		if(matchLength > 0) token |= Math.min(matchLength - MIN_MATCH, 15);
+		dst[dp++] = (byte) token;
+
+		if(literals >= 15) dp = writeLength(dst, dp, literals - 15);
+		for(int i=0; i<literals; i++){
+			dst[dp++] = src.get(literalStart + i);
+		}
+
+		if(matchLength > 0){
+			dst[dp++] = (byte) offset;
+			dst[dp++] = (byte) (offset >>> 8);
+			if(matchLength - MIN_MATCH >= 15) dp = writeLength(dst, dp, matchLength - MIN_MATCH - 15);
+		}
+		return dp;
+	}
+
+	private static int writeLength(byte[] dst, int dp, int length){
+		while(length >= 255){
+			dst[dp++] = (byte) 255;
+			length -= 255;
+		}
+		dst[dp++] = (byte) length;
+		return dp;
+	}
+
+	private static int readLength(ByteBuffer src, int length) throws IOException{
+		if(length != 15) return length;
+
+		int next;
+		do{
+			if(!src.hasRemaining()) throw new IOException("LZ: truncated length");
+			next = src.get() & 0xFF;
+			length += next;
+		}while(next == 255);
+		return length;
+	}
+
+	private static int readInt(ByteBuffer src, int offset){
+		return (src.get(offset) & 0xFF) | (src.get(offset + 1) & 0xFF) << 8
+				| (src.get(offset + 2) & 0xFF) << 16 | (src.get(offset + 3) & 0xFF) << 24;
+	}
+}
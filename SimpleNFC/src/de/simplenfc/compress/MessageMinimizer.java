@@ -0,0 +1,89 @@
+package de.simplenfc.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import de.simplenfc.codec.UriCodec;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.ndef.NdefCodec;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Re-encodes messages in their most compact layout without compressing payloads. Records, their order, TNFs,
+ * types and IDs are kept, so the message reads exactly as before:
+ * <ul>
+ * <li>chunked records are joined and every record uses the short form if its payload has at most 255 bytes,</li>
+ * <li>NFC Forum URI records use the longest prefix of the abbreviation table, see {@link UriCodec#abbreviate(String)},
+ * which decodes to the same URI.</li>
+ * </ul>
+ * {@link #getMinimizedSize(NfcMessage)} calculates the size of the result without encoding it.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class MessageMinimizer {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+
+	private MessageMinimizer(){}
+
+
+	/**
+	 * @param message The message.
+	 * @return Exact size of {@link #minimize(NfcMessage)} in bytes, calculated without encoding the message.
+	 */
+	public static int getMinimizedSize(NfcMessage message){
+		NfcMessage.Builder builder = plan(message);
+		if(builder.getRecordCount() == 0) return message.getEncodedSize();
+
+		return Math.min(builder.getEncodedSize(), message.getEncodedSize());
+	}
+
+
+	/**
+	 * @param message The message to minimize.
+	 * @return New immutable message or the given message if it is not made smaller.
+	 */
+	public static NfcMessage minimize(NfcMessage message){
+		NfcMessage.Builder builder = plan(message);
+		if(builder.getRecordCount() == 0 || builder.getEncodedSize() >= message.getEncodedSize()) return message;
+
+		return builder.build();
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	/**
+	 * Adds the minimized records to a builder, which tracks their encoded size. Payloads are added as buffers,
+	 * so they are only copied if the message is built. Returns an empty builder if an ID is no valid UTF-8
+	 * and would change by re-encoding.
+	 */
+	private static NfcMessage.Builder plan(NfcMessage message){
+		NfcMessage.Builder builder = new NfcMessage.Builder();
+		for(NdefRecordView record : message.getRecordViews()){
+			String id = record.getIdString(CHARSET);
+			if(!record.idEquals(id.getBytes(CHARSET))) return new NfcMessage.Builder();
+
+			builder.addRecord(id, record.getTnf(), record.copyType(), payload(record));
+		}
+		return builder;
+	}
+
+	private static ByteBuffer payload(NdefRecordView record){
+		ByteBuffer payload = record.getPayload();
+		if(record.getTnf() != NdefCodec.TNF_WELL_KNOWN || !record.typeEquals(UriCodec.TYPE)) return payload;
+
+		try {
+			ByteBuffer abbreviated = UriCodec.INSTANCE.encode(UriCodec.INSTANCE.decode(record.getType(), payload));
+			return abbreviated.remaining() < payload.remaining() ? abbreviated : payload;
+		} catch (IOException e) {
+			return payload;
+		}
+	}
+}
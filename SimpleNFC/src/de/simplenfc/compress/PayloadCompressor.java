@@ -0,0 +1,322 @@
+package de.simplenfc.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.NfcRecord;
+import de.simplenfc.entity.exceptions.LowCapacityException;
+import de.simplenfc.ndef.NdefCodec;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Compresses the payloads of {@link NfcRecord}s to fit messages onto tags with low capacity.
+ * <p>
+ * Only records of the types {@link NfcRecord#STRING_RECORD}, {@link NfcRecord#MAP_RECORD} and
+ * {@link NfcRecord#STRUCT_RECORD} are compressed, and only if that makes them smaller. A compressed
+ * record keeps TNF and ID, its type is prefixed with {@link #COMPRESSED_TYPE_PREFIX} and its payload is
+ * <pre>method (1 byte) | dictionary-id (4 bytes, DEFLATE with dictionary only) | original length (varint) | data</pre>
+ * {@link NfcRecord} inflates such records transparently.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class PayloadCompressor {
+	public static final String COMPRESSED_TYPE_PREFIX = "z:";
+
+	private static final int METHOD_LZ = 1;
+	private static final int METHOD_DEFLATE = 2;
+	private static final int METHOD_DEFLATE_DICTIONARY = 3;
+	private static final int MAX_ORIGINAL_LENGTH = 1 << 20;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final byte[] PREFIX = COMPRESSED_TYPE_PREFIX.getBytes(CHARSET);
+
+	private static final byte[][] COMPRESSIBLE_TYPES = {
+		NfcRecord.STRING_RECORD.getBytes(CHARSET), NfcRecord.MAP_RECORD.getBytes(CHARSET), NfcRecord.STRUCT_RECORD.getBytes(CHARSET)
+	};
+
+	private static final HashMap<Integer, byte[]> sDictionaries = new HashMap<Integer, byte[]>();
+	private static volatile Dictionary sDictionary;
+
+
+	private PayloadCompressor(){}
+
+
+	/**
+	 * Sets the preset dictionary for DEFLATE. Compressed records reference the dictionary by its
+	 * Adler-32 checksum, so every reading application has to set the same dictionary. Dictionaries
+	 * set before stay available for inflating.
+	 * @param dictionary Bytes which are likely to occur in payloads, e.g. frequent keys and values.
+	 */
+	public static void setDictionary(byte[] dictionary){
+		Adler32 adler = new Adler32();
+		adler.update(dictionary);
+		int id = (int) adler.getValue();
+
+		synchronized (sDictionaries) {
+			sDictionaries.put(id, dictionary.clone());
+		}
+		sDictionary = new Dictionary(id, dictionary.clone());
+	}
+
+
+	/**
+	 * Returns the given message if it fits, otherwise the cheapest compressed variant that fits. Unless compression
+	 * is {@link Compression#NONE}, the message is minimized by {@link MessageMinimizer} before its payloads are compressed.
+	 * The fast compressor is preferred over DEFLATE in {@link Compression#AUTO}.
+	 * @param message The message to write.
+	 * @param capacity Capacity of the tag in bytes.
+	 * @param compression Allowed compression.
+	 * @return Message which fits into the capacity.
+	 * @throws LowCapacityException If no allowed variant fits, with the size of the smallest one.
+	 */
+	public static NfcMessage fit(NfcMessage message, int capacity, Compression compression) throws LowCapacityException{
+		int size = message.getByteBuffer().remaining();
+		if(size <= capacity) return message;
+
+		int smallest = size;
+		if(compression != Compression.NONE){
+			message = MessageMinimizer.minimize(message);
+			size = message.getByteBuffer().remaining();
+			if(size <= capacity) return message;
+			smallest = Math.min(smallest, size);
+		}
+		if(compression == Compression.FAST || compression == Compression.AUTO){
+			NfcMessage compressed = compress(message, Compression.FAST);
+			int compressedSize = compressed.getByteBuffer().remaining();
+			if(compressedSize <= capacity) return compressed;
+			smallest = Math.min(smallest, compressedSize);
+		}
+		if(compression == Compression.DEFLATE || compression == Compression.AUTO){
+			NfcMessage compressed = compress(message, Compression.DEFLATE);
+			int compressedSize = compressed.getByteBuffer().remaining();
+			if(compressedSize <= capacity) return compressed;
+			smallest = Math.min(smallest, compressedSize);
+		}
+
+		throw new LowCapacityException(capacity, smallest);
+	}
+
+
+	/**
+	 * Compresses all compressible records of a message with the given method, if that makes them smaller.
+	 * @param message The message to compress.
+	 * @param compression {@link Compression#FAST} or {@link Compression#DEFLATE}, {@link Compression#AUTO} picks the smaller result per record.
+	 * @return New immutable message or the given message if no record got smaller.
+	 */
+	public static NfcMessage compress(NfcMessage message, Compression compression){
+		if(compression == Compression.NONE || compression == Compression.MINIMIZE) return message;
+
+		NdefRecordView[] records = message.getRecordViews();
+		NfcMessage.Builder builder = new NfcMessage.Builder();
+		boolean compressed = false;
+
+		for(NdefRecordView record : records){
+			byte[] type = record.copyType();
+			byte[] payload = null;
+
+			if(isCompressible(record)){
+				payload = compress(record.getPayload(), compression);
+				if(payload != null){
+					byte[] prefixed = new byte[PREFIX.length + type.length];
+					System.arraycopy(PREFIX, 0, prefixed, 0, PREFIX.length);
+					System.arraycopy(type, 0, prefixed, PREFIX.length, type.length);
+					type = prefixed;
+					compressed = true;
+				}
+			}
+			if(payload == null) payload = record.copyPayload();
+
+			builder.addRecord(record.copyId(), record.getTnf(), type, ByteBuffer.wrap(payload));
+		}
+
+		return compressed ? builder.build() : message;
+	}
+
+
+	/**
+	 * Checks whether a record was compressed by this class.
+	 * @param record The record to check.
+	 * @return True if the type of the record starts with {@link #COMPRESSED_TYPE_PREFIX}.
+	 */
+	public static boolean isCompressed(NdefRecordView record){
+		return record.getTnf() == NdefCodec.TNF_WELL_KNOWN && record.typeStartsWith(PREFIX);
+	}
+
+
+	/**
+	 * Inflates the payload of a compressed record.
+	 * @param payload Payload of the compressed record between position and limit. The position is not changed.
+	 * @return Buffer holding the original payload.
+	 * @throws IOException If the payload is malformed or references an unknown dictionary.
+	 */
+	public static ByteBuffer inflate(ByteBuffer payload) throws IOException{
+		ByteBuffer in = payload.duplicate();
+		if(!in.hasRemaining()) throw new IOException("Compressed payload is empty");
+
+		int method = in.get() & 0xFF;
+		byte[] dictionary = null;
+		if(method == METHOD_DEFLATE_DICTIONARY){
+			if(in.remaining() < 4) throw new IOException("Compressed payload is truncated");
+			int id = (in.get() & 0xFF) << 24 | (in.get() & 0xFF) << 16 | (in.get() & 0xFF) << 8 | (in.get() & 0xFF);
+			synchronized (sDictionaries) {
+				dictionary = sDictionaries.get(id);
+			}
+			if(dictionary == null) throw new IOException("Unknown compression dictionary " + Integer.toHexString(id));
+		}
+
+		int originalLength = readVarint(in);
+		if(originalLength < 0 || originalLength > MAX_ORIGINAL_LENGTH) throw new IOException("Compressed payload has invalid length " + originalLength);
+
+		switch(method){
+		case METHOD_LZ:
+			return ByteBuffer.wrap(LzCompressor.decompress(in, originalLength));
+		case METHOD_DEFLATE:
+		case METHOD_DEFLATE_DICTIONARY:
+			return ByteBuffer.wrap(inflate(in, originalLength, dictionary));
+		default:
+			throw new IOException("Unknown compression method " + method);
+		}
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	private static boolean isCompressible(NdefRecordView record){
+		if(record.getTnf() != NdefCodec.TNF_WELL_KNOWN) return false;
+
+		for(byte[] type : COMPRESSIBLE_TYPES){
+			if(record.typeEquals(type)) return true;
+		}
+		return false;
+	}
+
+	private static byte[] compress(ByteBuffer payload, Compression compression){
+		int length = payload.remaining();
+		byte[] best = null;
+
+		if(compression == Compression.FAST || compression == Compression.AUTO){
+			best = envelope(METHOD_LZ, 0, length, LzCompressor.compress(payload));
+		}
+		if(compression == Compression.DEFLATE || compression == Compression.AUTO){
+			Dictionary dictionary = sDictionary;
+			byte[] deflated = dictionary != null
+					? envelope(METHOD_DEFLATE_DICTIONARY, dictionary.id, length, deflate(payload, dictionary.bytes))
+					: envelope(METHOD_DEFLATE, 0, length, deflate(payload, null));
+			if(best == null || deflated.length < best.length) best = deflated;
+		}
+
+		return best != null && best.length < length ? best : null;
+	}
+
+	private static byte[] deflate(ByteBuffer payload, byte[] dictionary){
+		byte[] input = new byte[payload.remaining()];
+		payload.duplicate().get(input);
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			if(dictionary != null) deflater.setDictionary(dictionary);
+			deflater.setInput(input);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+			byte[] buffer = new byte[256];
+			while(!deflater.finished()){
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(ByteBuffer in, int originalLength, byte[] dictionary) throws IOException{
+		byte[] input = new byte[in.remaining()];
+		in.get(input);
+		byte[] output = new byte[originalLength];
+
+		Inflater inflater = new Inflater(true);
+		try {
+			if(dictionary != null) inflater.setDictionary(dictionary);
+			// raw inflate may need one byte of padding to detect the end of the stream
+			byte[] padded = new byte[input.length + 1];
+			System.arraycopy(input, 0, padded, 0, input.length);
+			inflater.setInput(padded);
+
+			int position = 0;
+			while(position < originalLength){
+				int count = inflater.inflate(output, position, originalLength - position);
+				if(count == 0 && (inflater.finished() || inflater.needsInput())) break;
+				position += count;
+			}
+			if(position != originalLength) throw new IOException("Inflated payload has unexpected length " + position);
+			return output;
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed DEFLATE payload: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static byte[] envelope(int method, int dictionaryId, int originalLength, byte[] data){
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 10);
+		out.write(method);
+		if(method == METHOD_DEFLATE_DICTIONARY){
+			out.write(dictionaryId >>> 24);
+			out.write(dictionaryId >>> 16);
+			out.write(dictionaryId >>> 8);
+			out.write(dictionaryId);
+		}
+		for(int value = originalLength; ; value >>>= 7){
+			if(value < 0x80){
+				out.write(value);
+				break;
+			}
+			out.write(value & 0x7F | 0x80);
+		}
+		out.write(data, 0, data.length);
+		return out.toByteArray();
+	}
+
+	private static int readVarint(ByteBuffer in) throws IOException{
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7){
+			if(!in.hasRemaining()) throw new IOException("Compressed payload is truncated");
+			int b = in.get() & 0xFF;
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Malformed length in compressed payload");
+	}
+
+
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+
+	/**
+	 * Preset dictionary together with its ID, published as one immutable object so compressing threads never
+	 * pair a dictionary with the ID of another one.
+	 */
+	private static final class Dictionary{
+		final int id;
+		final byte[] bytes;
+
+		Dictionary(int id, byte[] bytes){
+			this.id = id;
+			this.bytes = bytes;
+		}
+	}
+}
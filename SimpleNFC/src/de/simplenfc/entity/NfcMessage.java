@@ -1,22 +1,36 @@
 package de.simplenfc.entity;
 
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import android.nfc.FormatException;
 import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.os.Parcel;
 import android.os.Parcelable;
+import de.simplenfc.cbor.Cbor;
+import de.simplenfc.codec.RecordCodec;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+import de.simplenfc.ndef.ByteBufferInputStream;
+import de.simplenfc.ndef.NdefCodec;
+import de.simplenfc.ndef.NdefRecordView;
 
 /**
  * The {@link NfcMessage} is the container for all {@link NfcRecord}s and simplifies the process
  * of creating the correct arguments. Simply add {@link Nfcrecord}s with a given ID
  * and it is ready to be written onto a tag. 
+ * <p>
+ * The message is kept in its encoded form and decoded by {@link NdefCodec}, records are
+ * views over the encoded bytes. A {@link NdefMessage} is only created if it is requested
+ * through {@link #getRAWMessage()}.
  * 
  * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
  * @author Dennis Becker (simplenfc@denbec.de)
@@ -26,8 +40,14 @@ import android.os.Parcelable;
 public class NfcMessage implements Parcelable{
 	public static final String KEY_MESSAGE = "nfc_message";
 	
-	private NdefMessage mMessage;
+	static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	private ByteBuffer mBuffer;
+	private NdefRecordView[] mRecords;
+	private RecordIndex mIndex;
+	private NdefMessage mRawMessage;
 	private String mId;
+	private boolean mImmutable;
 	
 	
 	/**
@@ -36,57 +56,103 @@ public class NfcMessage implements Parcelable{
 	 */
 	public NfcMessage(){
 		mId = null;
-		mMessage = new NdefMessage(new NdefRecord[]{});
+		mBuffer = ByteBuffer.allocate(0);
+		mRecords = new NdefRecordView[0];
 	}
 	
 	protected NfcMessage(Parcel in){
+		this();
 		byte bytes[] = in.createByteArray();
 		try {
-			mMessage = new NdefMessage(bytes);
-		} catch (FormatException e) {
+			this.setEncoded(ByteBuffer.wrap(bytes));
+		} catch (MalformedNdefException e) {
 			e.printStackTrace();
 		}
-		NdefRecord[] records = mMessage.getRecords();
-		mId = new String(records[records.length-1].getId());
+		if(mRecords.length > 0){
+			mId = mRecords[mRecords.length-1].getIdString(CHARSET);
+		}
 	}
 	
 	protected NfcMessage(NdefMessage msg){
-		mMessage = msg;
-		mId = new String(mMessage.getRecords()[0].getId());
+		try {
+			this.setEncoded(ByteBuffer.wrap(msg.toByteArray()));
+		} catch (MalformedNdefException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+		mRawMessage = msg;
+		mId = mRecords[0].getIdString(CHARSET);
+	}
+	
+	private NfcMessage(ByteBuffer encoded) throws MalformedNdefException{
+		this.setEncoded(encoded);
+		mId = mRecords.length > 0 ? mRecords[0].getIdString(CHARSET) : null;
+	}
+	
+	private NfcMessage(ByteBuffer encoded, String id){
+		mBuffer = encoded;
+		mId = id;
+		mImmutable = true;
+	}
+	
+	
+	/**
+	 * Decodes a {@link NfcMessage} from the bytes between position and limit of the given buffer.
+	 * The bytes are not copied, so the buffer must not be modified afterwards.
+	 * @param encoded Buffer holding an encoded NDEF-message.
+	 * @return The decoded {@link NfcMessage}.
+	 * @throws MalformedNdefException If the bytes are no valid NDEF-message.
+	 */
+	public static NfcMessage parse(ByteBuffer encoded) throws MalformedNdefException{
+		return new NfcMessage(encoded.slice());
+	}
+	
+	
+	/**
+	 * @see NfcMessage#parse(ByteBuffer)
+	 * @param encoded Array holding an encoded NDEF-message.
+	 * @return The decoded {@link NfcMessage}.
+	 * @throws MalformedNdefException If the bytes are no valid NDEF-message.
+	 */
+	public static NfcMessage parse(byte[] encoded) throws MalformedNdefException{
+		return new NfcMessage(ByteBuffer.wrap(encoded));
 	}
 	
 	
 	/**
-	 * Adds a String-record to the message.
+	 * Adds a String-record to the message. Every call re-encodes the whole message, use
+	 * {@link NfcMessage.Builder} to create messages with many records.
 	 * @param id An ID as String.
 	 * @param content The content of the new record as a String.
+	 * @throws UnsupportedOperationException If the message was created by a {@link NfcMessage.Builder}.
 	 */
 	public void addRecord(String id, String content){
-		 ArrayList<NdefRecord> records = new ArrayList<NdefRecord>(Arrays.asList(mMessage.getRecords()));
-		 //new NdefRecord(tnf, type, id, payload)
-		 records.add(new NdefRecord(NdefRecord.TNF_WELL_KNOWN, NfcRecord.STRING_RECORD.getBytes(), id.getBytes(), content.getBytes()));
-		 mMessage = new NdefMessage(records.toArray(new NdefRecord[]{}));
+		 this.appendRecord(NdefRecord.TNF_WELL_KNOWN, NfcRecord.STRING_RECORD.getBytes(), id.getBytes(), ByteBuffer.wrap(content.getBytes()));
 	}
 	
 	
 	/**
-	 * Adds a {@link HashMap}-record to the message.
+	 * Adds a {@link HashMap}-record to the message. The map is encoded as compact CBOR-record
+	 * of type {@link NfcRecord#STRUCT_RECORD}.
 	 * @param id An ID as String.
 	 * @param map The content of the new record as a {@link HashMap}.
-	 * @throws IOException May be thrown while converting the HashMap into ByteStream.
-	 * @throws ClassNotFoundException May be thrown while converting the HashMap into ByteStream.
+	 * @throws IOException Kept for compatibility, not thrown anymore.
+	 * @throws ClassNotFoundException Kept for compatibility, not thrown anymore.
 	 */
 	public void addRecord(String id, HashMap<String, String> map) throws IOException, ClassNotFoundException{
-		 ArrayList<NdefRecord> records = new ArrayList<NdefRecord>(Arrays.asList(mMessage.getRecords()));
-		 //new NdefRecord(tnf, type, id, payload)
-		 
-		 ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-		 ObjectOutputStream objectOut = new ObjectOutputStream(byteOut);
-		 objectOut.writeObject(map);
-		 objectOut.close();
-		 
-		 records.add(new NdefRecord(NdefRecord.TNF_WELL_KNOWN, NfcRecord.MAP_RECORD.getBytes(), id.getBytes(), byteOut.toByteArray()));
-		 mMessage = new NdefMessage(records.toArray(new NdefRecord[]{}));
+		 this.addRecord(id, (Map<String, ?>) map);
+	}
+	
+	
+	/**
+	 * Adds a structured record to the message. The map is encoded as compact CBOR-record of type
+	 * {@link NfcRecord#STRUCT_RECORD}, values may be Strings, numbers, booleans, byte-arrays,
+	 * lists and maps.
+	 * @param id An ID as String.
+	 * @param map The content of the new record.
+	 * @throws IllegalArgumentException If the map contains unsupported values.
+	 */
+	public void addRecord(String id, Map<String, ?> map){
+		 this.appendRecord(NdefRecord.TNF_WELL_KNOWN, NfcRecord.STRUCT_RECORD.getBytes(), id.getBytes(), ByteBuffer.wrap(Cbor.encode(map)));
 	}
 	
 	
@@ -98,10 +164,19 @@ public class NfcMessage implements Parcelable{
 	 * @param payload byte array, containing zero to (2 ** 32 - 1) bytes, must not be null.
 	 */
 	public void addRecord(String id, short TNF, byte[] type, byte[] payload){
-		 ArrayList<NdefRecord> records = new ArrayList<NdefRecord>(Arrays.asList(mMessage.getRecords()));
-		 //new NdefRecord(tnf, type, id, payload)
-		 records.add(new NdefRecord(TNF, type, id.getBytes(), payload));
-		 mMessage = new NdefMessage(records.toArray(new NdefRecord[]{}));
+		 this.appendRecord(TNF, type, id.getBytes(), ByteBuffer.wrap(payload));
+	}
+	
+	
+	/**
+	 * Adds a record whose payload is copied once from the given buffer into the encoded message.
+	 * @param id An ID as String.
+	 * @param TNF a 3-bit TNF constant.
+	 * @param type byte array, containing zero to 255 bytes, must not be null.
+	 * @param payload Payload between position and limit, its position is not changed.
+	 */
+	public void addRecord(String id, short TNF, byte[] type, ByteBuffer payload){
+		 this.appendRecord(TNF, type, id.getBytes(), payload);
 	}
 	
 	
@@ -110,17 +185,27 @@ public class NfcMessage implements Parcelable{
 	 * @return All Records as {@link NfcRecord}s.
 	 */
 	public HashMap<String, NfcRecord> getRecords(){
-		NdefRecord[] rawRecords = mMessage.getRecords();
-		int length = rawRecords.length;
-		HashMap<String, NfcRecord> simpleRecords = new HashMap<String, NfcRecord>(length);
-		NfcRecord simpleRecord = null;
-		
-		for(int i=1; i<length; i++){
-			simpleRecord = new NfcRecord(rawRecords[i]);
-			simpleRecords.put(simpleRecord.getID(), simpleRecord);
-		}
-		
-		return simpleRecords;
+		return new HashMap<String, NfcRecord>(this.index().byId);
+	}
+	
+	
+	/**
+	 * Returns all {@link NfcRecord}s of the message in order of appearance. The list is created
+	 * once per message and cannot be modified.
+	 * @return All Records as {@link NfcRecord}s.
+	 */
+	public List<NfcRecord> getRecordList(){
+		return this.index().ordered;
+	}
+	
+	
+	/**
+	 * Returns a single {@link NfcRecord} with given ID. The lookup does not allocate.
+	 * @param id The ID of the {@link NfcRecord} to return as a String.
+	 * @return The {@link NfcRecord} or null if not found.
+	 */
+	public NfcRecord getRecordById(String id){
+		return this.index().byId.get(id);
 	}
 	
 	
@@ -128,16 +213,11 @@ public class NfcMessage implements Parcelable{
 	 * Returns a single {@NdefRecord} with given ID, if not found, return null.
 	 * @param id The ID of the {@link NfcRecord} to return as a String.
 	 * @return {@link NdefRecord}.
-	 * @deprecated Hier müssen wir noch mal reinschauen, sollte eigentlich ein {@link NfcRecord} sein.
+	 * @deprecated Use {@link #getRecordById(String)} instead.
 	 */
 	public NdefRecord getRecord(String id){
-		NdefRecord[] rawRecords = mMessage.getRecords();
-		int length = rawRecords.length;
-		for(int i=1; i<length; i++){
-			if(new String(rawRecords[i].getId()).equals(id)) return rawRecords[i];
-		}
-		
-		return null;
+		NfcRecord record = this.getRecordById(id);
+		return record != null ? record.getRAWRecord() : null;
 	}
 	
 	
@@ -147,15 +227,16 @@ public class NfcMessage implements Parcelable{
 	 */
 	@Override
 	public String toString() {
-		NdefRecord[] records = mMessage.getRecords();
+		NdefRecordView[] records = this.records();
 		int length = records.length;
-		String IDs = "";
+		StringBuilder builder = new StringBuilder(32 + length * 8);
+		builder.append("SimpleNFCMessage '").append(mId).append("' mit ").append(length).append(" records (");
 		for(int i=0; i<length; i++){
-			IDs += new String(records[i].getId());
-			if(i != length-1) IDs += ", ";
+			builder.append(records[i].getIdString(CHARSET));
+			if(i != length-1) builder.append(", ");
 		}
 		
-		return "SimpleNFCMessage '" + mId + "' mit " + records.length + " records (" + IDs+")";
+		return builder.append(')').toString();
 	}
 	
 
@@ -164,7 +245,84 @@ public class NfcMessage implements Parcelable{
 	 * @return Return a simple {@link NdefMessage} without the comfort of a {@link NfcMessage}
 	 */
 	public NdefMessage getRAWMessage(){
-		return mMessage;
+		if(mRawMessage == null){
+			if(mBuffer.limit() == 0){
+				mRawMessage = new NdefMessage(new NdefRecord[]{});
+			}else{
+				try {
+					// NdefMessage copies the records, so an array holding exactly the message is passed as it is
+					boolean exact = mBuffer.hasArray() && mBuffer.arrayOffset() == 0 && mBuffer.array().length == mBuffer.limit();
+					mRawMessage = new NdefMessage(exact ? mBuffer.array() : this.toByteArray());
+				} catch (FormatException e) {
+					throw new IllegalStateException(e.getMessage());
+				}
+			}
+		}
+		return mRawMessage;
+	}
+	
+	
+	/**
+	 * @return A copy of the encoded message. A message without records is encoded as a single empty record.
+	 */
+	public byte[] toByteArray(){
+		if(mBuffer.limit() == 0) return NdefCodec.emptyMessage();
+		
+		byte[] bytes = new byte[mBuffer.limit()];
+		mBuffer.duplicate().get(bytes);
+		return bytes;
+	}
+	
+	
+	/**
+	 * @return Read-only buffer over the encoded message. No bytes are copied.
+	 */
+	public ByteBuffer getByteBuffer(){
+		if(mBuffer.limit() == 0) return ByteBuffer.wrap(NdefCodec.emptyMessage()).asReadOnlyBuffer();
+		
+		return mBuffer.asReadOnlyBuffer();
+	}
+	
+	
+	/**
+	 * @return Stream over the encoded message, which reads it directly without copying it.
+	 */
+	public InputStream openInputStream(){
+		return new ByteBufferInputStream(this.getByteBuffer());
+	}
+	
+	
+	/**
+	 * @return Number of bytes of the encoded message, without encoding or copying it.
+	 */
+	public int getEncodedSize(){
+		if(mBuffer.limit() == 0) return NdefCodec.EMPTY_MESSAGE_LENGTH;
+		
+		return mBuffer.limit();
+	}
+	
+	
+	/**
+	 * Returns an immutable snapshot of this message. Adding a record encodes the message into a new
+	 * buffer, so the snapshot shares the current bytes and decoded records without copying them.
+	 * @return This message if it is immutable, otherwise an immutable snapshot.
+	 */
+	public NfcMessage snapshot(){
+		if(mImmutable) return this;
+		
+		NfcMessage snapshot = new NfcMessage(mBuffer, mId);
+		snapshot.mRecords = mRecords;
+		snapshot.mIndex = mIndex;
+		snapshot.mRawMessage = mRawMessage;
+		return snapshot;
+	}
+	
+	
+	/**
+	 * @return Views of all records including the first one, in order of appearance.
+	 */
+	public NdefRecordView[] getRecordViews(){
+		return this.records().clone();
 	}
 	
 	
@@ -176,6 +334,242 @@ public class NfcMessage implements Parcelable{
 	}
 
 	
+	/**
+	 * Collects records and builds an immutable {@link NfcMessage} in a single pass. The encoded size
+	 * is tracked while records are added, so {@link #build()} encodes all records into exactly one
+	 * array of the final size.
+	 * 
+	 * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+	 * @author Dennis Becker (simplenfc@denbec.de)
+	 * @version 1.0
+	 *
+	 */
+	public static class Builder{
+		private final ArrayList<PendingRecord> mPendingRecords = new ArrayList<PendingRecord>();
+		private int mEncodedSize;
+		
+		
+		/**
+		 * Adds a String-record to the message.
+		 * @param id An ID as String.
+		 * @param content The content of the new record as a String.
+		 * @return This builder.
+		 */
+		public Builder addRecord(String id, String content){
+			return this.addRecord(id, NdefRecord.TNF_WELL_KNOWN, NfcRecord.STRING_RECORD.getBytes(), content.getBytes());
+		}
+		
+		
+		/**
+		 * Adds a structured record to the message, see {@link NfcMessage#addRecord(String, Map)}.
+		 * @param id An ID as String.
+		 * @param map The content of the new record.
+		 * @return This builder.
+		 * @throws IllegalArgumentException If the map contains unsupported values.
+		 */
+		public Builder addRecord(String id, Map<String, ?> map){
+			return this.addRecord(id, NdefRecord.TNF_WELL_KNOWN, NfcRecord.STRUCT_RECORD.getBytes(), Cbor.encode(map));
+		}
+		
+		
+		/**
+		 * Compatibility to NdefRecords.
+		 * @param id An ID as String.
+		 * @param TNF a 3-bit TNF constant.
+		 * @param type byte array, containing zero to 255 bytes, must not be null.
+		 * @param payload byte array, containing zero to (2 ** 32 - 1) bytes, must not be null.
+		 * @return This builder.
+		 */
+		public Builder addRecord(String id, short TNF, byte[] type, byte[] payload){
+			return this.add(new PendingRecord(id, TNF, type, ByteBuffer.wrap(payload), null, null, payload.length));
+		}
+		
+		
+		/**
+		 * Adds a record whose payload is copied from the buffer straight into the encoded message by {@link #build()}.
+		 * The buffer must not be modified until the message is built.
+		 * @param id An ID as String.
+		 * @param TNF a 3-bit TNF constant.
+		 * @param type byte array, containing zero to 255 bytes, must not be null.
+		 * @param payload Payload between position and limit, its position is not changed.
+		 * @return This builder.
+		 */
+		public Builder addRecord(String id, short TNF, byte[] type, ByteBuffer payload){
+			return this.add(new PendingRecord(id, TNF, type, payload.duplicate(), null, null, payload.remaining()));
+		}
+		
+		
+		/**
+		 * Adds a record with an ID given as bytes, which are written as they are, e.g. to copy a record whose ID
+		 * is no valid UTF-8. The buffer must not be modified until the message is built.
+		 * @param id The ID field, must not be null.
+		 * @param TNF a 3-bit TNF constant.
+		 * @param type byte array, containing zero to 255 bytes, must not be null.
+		 * @param payload Payload between position and limit, its position is not changed.
+		 * @return This builder.
+		 */
+		public Builder addRecord(byte[] id, short TNF, byte[] type, ByteBuffer payload){
+			return this.add(new PendingRecord(id, TNF, type, payload.duplicate(), payload.remaining()));
+		}
+		
+		
+		/**
+		 * Adds a record whose payload is encoded by the given codec, e.g. a {@link de.simplenfc.codec.TextCodec}.
+		 * @param id An ID as String.
+		 * @param TNF a 3-bit TNF constant.
+		 * @param type byte array, containing zero to 255 bytes, must not be null.
+		 * @param content The content of the new record.
+		 * @param codec Codec which encodes the content.
+		 * @return This builder.
+		 * @throws IllegalArgumentException If the content can not be encoded.
+		 */
+		public <T> Builder addRecord(String id, short TNF, byte[] type, T content, RecordCodec<T> codec){
+			return this.addRecord(id, TNF, type, codec.encode(content));
+		}
+		
+		
+		/**
+		 * Adds a record whose payload is read by {@link #build()} straight into the encoded message, without an
+		 * intermediate array. The stream is not closed and can only be built once.
+		 * @param id An ID as String.
+		 * @param TNF a 3-bit TNF constant.
+		 * @param type byte array, containing zero to 255 bytes, must not be null.
+		 * @param payload Stream holding at least length bytes.
+		 * @param length Declared length of the payload.
+		 * @return This builder.
+		 */
+		public Builder addRecord(String id, short TNF, byte[] type, InputStream payload, int length){
+			return this.add(new PendingRecord(id, TNF, type, null, payload, null, length));
+		}
+		
+		
+		/**
+		 * Adds a record whose payload is read by {@link #build()} straight into the encoded message, see
+		 * {@link #addRecord(String, short, byte[], InputStream, int)}.
+		 * @param id An ID as String.
+		 * @param TNF a 3-bit TNF constant.
+		 * @param type byte array, containing zero to 255 bytes, must not be null.
+		 * @param payload Blocking channel holding at least length bytes.
+		 * @param length Declared length of the payload.
+		 * @return This builder.
+		 */
+		public Builder addRecord(String id, short TNF, byte[] type, ReadableByteChannel payload, int length){
+			return this.add(new PendingRecord(id, TNF, type, null, null, payload, length));
+		}
+		
+		
+		/**
+		 * @return Number of records added so far.
+		 */
+		public int getRecordCount(){
+			return mPendingRecords.size();
+		}
+		
+		
+		/**
+		 * @return Size of the encoded message in bytes, if it was built now.
+		 */
+		public int getEncodedSize(){
+			return mEncodedSize;
+		}
+		
+		
+		/**
+		 * Encodes all added records into a new immutable {@link NfcMessage}. The ID of the message
+		 * is the ID of the first record. The builder may be reused afterwards, unless it holds records of streams.
+		 * @return The immutable {@link NfcMessage}.
+		 * @throws IllegalStateException If reading the payload of a stream fails or the stream ends before its declared length.
+		 */
+		public NfcMessage build(){
+			int count = mPendingRecords.size();
+			ByteBuffer encoded = ByteBuffer.wrap(new byte[mEncodedSize]);
+			
+			for(int i=0; i<count; i++){
+				PendingRecord record = mPendingRecords.get(i);
+				if(record.payload != null){
+					NdefCodec.writeRecord(encoded, record.tnf, record.type, record.rawId, record.payload, i == 0, i == count-1);
+				}else{
+					NdefCodec.writeRecordHeader(encoded, record.tnf, record.type, record.rawId, record.length, i == 0, i == count-1);
+					try {
+						record.read(encoded);
+					} catch (IOException e) {
+						throw new IllegalStateException("Payload of record '"+record.id+"' could not be read: "+e.getMessage(), e);
+					}
+				}
+			}
+			encoded.flip();
+			
+			return new NfcMessage(encoded, count > 0 ? mPendingRecords.get(0).id : null);
+		}
+		
+		
+		private Builder add(PendingRecord record){
+			if(record.length < 0) throw new IllegalArgumentException("length must not be negative");
+			
+			mPendingRecords.add(record);
+			mEncodedSize += NdefCodec.recordSize(record.type.length, record.rawId.length, record.length);
+			return this;
+		}
+	}
+	
+	
+	private static final class PendingRecord{
+		final String id;
+		final short tnf;
+		final byte[] type;
+		final byte[] rawId;
+		final ByteBuffer payload;
+		final InputStream stream;
+		final ReadableByteChannel channel;
+		final int length;
+		
+		PendingRecord(String id, short tnf, byte[] type, ByteBuffer payload, InputStream stream, ReadableByteChannel channel, int length){
+			this.id = id;
+			this.tnf = tnf;
+			this.type = type;
+			this.rawId = id.getBytes();
+			this.payload = payload;
+			this.stream = stream;
+			this.channel = channel;
+			this.length = length;
+		}
+		
+		PendingRecord(byte[] rawId, short tnf, byte[] type, ByteBuffer payload, int length){
+			this.id = new String(rawId, CHARSET);
+			this.tnf = tnf;
+			this.type = type;
+			this.rawId = rawId;
+			this.payload = payload;
+			this.stream = null;
+			this.channel = null;
+			this.length = length;
+		}
+		
+		/**
+		 * Reads exactly {@link #length} bytes of the stream or channel into the array of the encoded message.
+		 */
+		void read(ByteBuffer out) throws IOException{
+			int end = out.position() + length;
+			if(stream != null){
+				byte[] array = out.array();
+				int offset = out.arrayOffset();
+				while(out.position() < end){
+					int read = stream.read(array, offset + out.position(), end - out.position());
+					if(read < 0) throw new EOFException((end - out.position())+" bytes missing");
+					out.position(out.position() + read);
+				}
+			}else{
+				ByteBuffer target = out.duplicate();
+				target.limit(end);
+				while(target.hasRemaining()){
+					if(channel.read(target) < 0) throw new EOFException(target.remaining()+" bytes missing");
+				}
+				out.position(end);
+			}
+		}
+	}
+	
+	
 	/**
 	 * Interface to declare objects which could parse {@link NfcMessages} from {@link NdefMessage}s.
 	 * 
@@ -231,6 +625,49 @@ public class NfcMessage implements Parcelable{
 	 */
 	@Override
 	public void writeToParcel(Parcel dest, int flags) {
-		dest.writeByteArray(mMessage.toByteArray());
+		if(mBuffer.limit() > 0 && mBuffer.hasArray()){
+			dest.writeByteArray(mBuffer.array(), mBuffer.arrayOffset(), mBuffer.limit());
+		}else{
+			dest.writeByteArray(this.toByteArray());
+		}
+	}
+	
+	
+	private void setEncoded(ByteBuffer encoded) throws MalformedNdefException{
+		mRecords = NdefCodec.decode(encoded);
+		mBuffer = encoded;
+		mRawMessage = null;
+		mIndex = null;
+	}
+	
+	private RecordIndex index(){
+		RecordIndex index = mIndex;
+		if(index == null){
+			mIndex = index = new RecordIndex(this.records());
+		}
+		return index;
+	}
+	
+	private NdefRecordView[] records(){
+		if(mRecords == null){
+			try {
+				mRecords = NdefCodec.decode(mBuffer);
+			} catch (MalformedNdefException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+		}
+		return mRecords;
+	}
+	
+	private void appendRecord(short tnf, byte[] type, byte[] id, ByteBuffer payload){
+		if(mImmutable) throw new UnsupportedOperationException("NfcMessage built by NfcMessage.Builder is immutable.");
+		
+		NdefRecordView[] records = this.records();
+		NdefRecordView last = records.length > 0 ? records[records.length-1] : null;
+		try {
+			this.setEncoded(NdefCodec.appendRecord(mBuffer, last, tnf, type, id, payload));
+		} catch (MalformedNdefException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
 	}
 }
@@ -1,14 +1,30 @@
 package de.simplenfc.entity;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.StreamCorruptedException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import android.nfc.NdefRecord;
+import de.simplenfc.cbor.Cbor;
+import de.simplenfc.codec.CodecRegistry;
+import de.simplenfc.compress.PayloadCompressor;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+import de.simplenfc.ndef.ByteBufferInputStream;
+import de.simplenfc.ndef.NdefCodec;
+import de.simplenfc.ndef.NdefRecordView;
 /**
  * Replacement for the NdefRecord class, including type of content and ID.
+ * ID, type and content are decoded once on first access and cached afterwards. The cached content
+ * is shared between all callers and must not be modified. Records compressed by {@link PayloadCompressor}
+ * are inflated transparently, type and payload are those of the original record.
+ * <p>
+ * The content is decoded by the {@link de.simplenfc.codec.RecordCodec} registered for TNF and type at the
+ * {@link CodecRegistry}, which covers NFC Forum Text, URI, MIME and External records besides the own records of the library.
  * 
  * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
  * @author Dennis Becker (simplenfc@denbec.de)
@@ -18,8 +34,18 @@ import android.nfc.NdefRecord;
 public class NfcRecord {
 	public static final String STRING_RECORD = "string";
 	public static final String MAP_RECORD = "map";
+	public static final String STRUCT_RECORD = "cbor";
 	
-	protected NdefRecord mRecord;
+	private static final Object NOT_DECODED = new Object();
+	private static final int COMPRESSED_PREFIX_LENGTH = PayloadCompressor.COMPRESSED_TYPE_PREFIX.length();
+	
+	protected NdefRecordView mRecord;
+	private boolean mCompressed;
+	private ByteBuffer mInflated;
+	private String mId;
+	private String mType;
+	private Object mContent = NOT_DECODED;
+	private Map<String, Object> mMap;
 	
 	
 	/**
@@ -27,7 +53,22 @@ public class NfcRecord {
 	 * @param record A typical NdefRecord.
 	 */
 	public NfcRecord(NdefRecord record){
+		try {
+			this.mRecord = NdefCodec.decode(NdefCodec.encodeRecord(record.getTnf(), record.getType(), record.getId(), record.getPayload()))[0];
+		} catch (MalformedNdefException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+		this.mCompressed = PayloadCompressor.isCompressed(mRecord);
+	}
+	
+	
+	/**
+	 * Constructs new NfcRecord over an already decoded record.
+	 * @param record View of the record inside its message.
+	 */
+	public NfcRecord(NdefRecordView record){
 		this.mRecord = record;
+		this.mCompressed = PayloadCompressor.isCompressed(record);
 	}
 	
 	
@@ -35,41 +76,162 @@ public class NfcRecord {
 	 * @return ID of record.
 	 */
 	public String getID(){
-		return new String(this.mRecord.getId());
+		if(mId == null){
+			mId = this.mRecord.getIdString(NfcMessage.CHARSET);
+		}
+		return mId;
 	}
 	
 	/**
 	 * @return Type of record.
 	 */
 	public String getType(){
-		return new String(this.mRecord.getType());
+		if(mType == null){
+			String type = this.mRecord.getTypeString(NfcMessage.CHARSET);
+			mType = mCompressed ? type.substring(COMPRESSED_PREFIX_LENGTH) : type;
+		}
+		return mType;
+	}
+	
+	/**
+	 * Compares the type of the record byte by byte, without decoding it.
+	 * @param type Expected type, e.g. {@link #STRING_RECORD}.
+	 * @return True if the record has the given type.
+	 */
+	public boolean isType(String type){
+		if(mType != null) return mType.equals(type);
+		return this.typeEquals(type.getBytes(NfcMessage.CHARSET));
 	}
 	
 	/**
-	 * Returns the content of the record, based on its type.
-	 * @return Returns either HashMap or String, based on type of record
+	 * Returns the content of the record, decoded by the codec of its TNF and type. Structured records are returned as decoded
+	 * by {@link Cbor#decode(java.nio.ByteBuffer)}, maps as {@link java.util.LinkedHashMap}, Text records as
+	 * {@link de.simplenfc.codec.TextContent}, URI records as String, MIME and External records as {@link de.simplenfc.codec.TypedContent}.
+	 * The content is decoded once. Each call returns a new copy of maps, lists and byte arrays, which may be modified,
+	 * the values inside them are shared by all calls. Use {@link #getMap()} to read a map without copying it.
+	 * @return Returns the content, based on TNF and type of record, or null if it is malformed.
 	 */
 	@SuppressWarnings("unchecked")
 	public Object getContent(){
-		if(this.getType().equals(MAP_RECORD)){
-			ByteArrayInputStream byteIn = new ByteArrayInputStream(mRecord.getPayload());
-			ObjectInputStream objectIn;
-			HashMap<String, String> map = null;
+		Object content = this.content();
+		if(content instanceof Map) return new LinkedHashMap<Object, Object>((Map<Object, Object>) content);
+		if(content instanceof List) return new ArrayList<Object>((List<Object>) content);
+		if(content instanceof byte[]) return ((byte[]) content).clone();
+		return content;
+	}
+	
+	/**
+	 * @return The content if it is a String, otherwise null.
+	 */
+	public String getString(){
+		Object content = this.content();
+		return content instanceof String ? (String) content : null;
+	}
+	
+	/**
+	 * @return The content of map- and structured records if it is a map, otherwise null. The map can not be modified,
+	 * since the decoded content is shared by all calls.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> getMap(){
+		if(mMap == null){
+			Object content = this.content();
+			if(!(content instanceof Map)) return null;
+			mMap = Collections.unmodifiableMap((Map<String, Object>) content);
+		}
+		return mMap;
+	}
+	
+	/**
+	 * @return True if the record is stored compressed on the tag.
+	 */
+	public boolean isCompressed(){
+		return mCompressed;
+	}
+	
+	/**
+	 * @return A copy of the raw payload.
+	 */
+	public byte[] getBytes(){
+		if(!mCompressed) return this.mRecord.copyPayload();
+		
+		ByteBuffer payload = this.payload();
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * @return Read-only buffer over the raw payload, no bytes are copied for unchunked records.
+	 */
+	public ByteBuffer getPayloadBuffer(){
+		return this.payload();
+	}
+	
+	/**
+	 * Opens a stream over the raw payload, which reads the encoded message directly. Other than
+	 * {@link #getPayloadBuffer()} chunked records are not reassembled, so no bytes are copied.
+	 * @return Stream over the raw payload.
+	 */
+	public InputStream openPayloadStream(){
+		if(!mCompressed) return this.mRecord.openPayloadStream();
+		
+		return new ByteBufferInputStream(this.payload());
+	}
+	
+	/**
+	 * Return a simple {@link NdefRecord} without the comfort of a {@link NfcRecord}.
+	 * Compressed records are returned as stored on the tag.
+	 * @return A new {@link NdefRecord} with copies of type, ID and payload.
+	 */
+	public NdefRecord getRAWRecord(){
+		return new NdefRecord(mRecord.getTnf(), mRecord.copyType(), mRecord.copyId(), mRecord.copyPayload());
+	}
+	
+	/**
+	 * @return View of the record inside its encoded message.
+	 */
+	public NdefRecordView getRecordView(){
+		return mRecord;
+	}
+	
+	
+	private boolean typeEquals(byte[] type){
+		return mCompressed ? this.mRecord.typeEquals(COMPRESSED_PREFIX_LENGTH, type) : this.mRecord.typeEquals(type);
+	}
+	
+	private ByteBuffer payload(){
+		if(!mCompressed) return this.mRecord.getPayload();
+		
+		if(mInflated == null){
 			try {
-				objectIn = new ObjectInputStream(byteIn);
-				map = (HashMap<String, String>) objectIn.readObject();
-				objectIn.close();
-			} catch (StreamCorruptedException e) {
-				e.printStackTrace();
+				mInflated = PayloadCompressor.inflate(this.mRecord.getPayload());
 			} catch (IOException e) {
 				e.printStackTrace();
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
+				mInflated = ByteBuffer.allocate(0);
 			}
-			
-			return map;
-		}else{
-			return new String(this.mRecord.getPayload());
+		}
+		return mInflated.asReadOnlyBuffer();
+	}
+	
+	private Object content(){
+		if(mContent == NOT_DECODED){
+			mContent = this.decodeContent();
+		}
+		return mContent;
+	}
+	
+	private Object decodeContent(){
+		ByteBuffer type = this.mRecord.getType();
+		if(mCompressed){
+			type.position(COMPRESSED_PREFIX_LENGTH);
+		}
+		
+		try {
+			return CodecRegistry.getInstance().decode(this.mRecord.getTnf(), type, this.payload());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package de.simplenfc.entity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Immutable index over the {@link NfcRecord}s of a {@link NfcMessage}. It is built once per message,
+ * so lookups by ID neither decode IDs again nor create new {@link NfcRecord}s.
+ * The first record of a message (the record binding it to an application) is not indexed.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+final class RecordIndex {
+	final List<NfcRecord> ordered;
+	final Map<String, NfcRecord> byId;
+	
+	
+	RecordIndex(NdefRecordView[] records){
+		int length = records.length;
+		NfcRecord[] simpleRecords = new NfcRecord[Math.max(0, length-1)];
+		HashMap<String, NfcRecord> map = new HashMap<String, NfcRecord>(length * 4 / 3 + 1);
+		
+		for(int i=1; i<length; i++){
+			NfcRecord record = new NfcRecord(records[i]);
+			simpleRecords[i-1] = record;
+			map.put(record.getID(), record);
+		}
+		
+		this.ordered = Collections.unmodifiableList(Arrays.asList(simpleRecords));
+		this.byId = Collections.unmodifiableMap(map);
+	}
+}
@@ -0,0 +1,30 @@
+package de.simplenfc.entity.exceptions;
+
+/**
+ * Exception thrown, if bytes could not be decoded as a NDEF-message.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class MalformedNdefException extends Exception {
+	private static final long serialVersionUID = 1L;
+	private String mReason;
+
+	/**
+	 * Construct a MalformedNdefException with the reason why decoding failed.
+	 * @param reason Short english description of the violated rule.
+	 */
+	public MalformedNdefException(String reason){
+		this.mReason = reason;
+	}
+
+	/**
+	 * @return English description of exception, including the violated rule.
+	 */
+	@Override
+	public String getMessage() {
+		return "Malformed NDEF-message: " + mReason;
+	}
+}
@@ -0,0 +1,23 @@
+package de.simplenfc.entity.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown, if a tag read back after writing does not hold the written message.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class VerificationException extends IOException {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * @return English description of exception
+	 */
+	@Override
+	public String getMessage() {
+		return "Tag does not hold the written message.";
+	}
+}
@@ -0,0 +1,202 @@
+package de.simplenfc.event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import de.simplenfc.Nfc;
+import de.simplenfc.metrics.NfcMetrics;
+import de.simplenfc.metrics.Stage;
+
+/**
+ * In-process replacement for broadcasts from the {@link de.simplenfc.activity.NfcConnector} to the receivers
+ * registered by {@link Nfc}. Intents are handed to the receivers as they are, so the {@link de.simplenfc.entity.NfcMessage}s
+ * and exceptions inside their extras are neither parceled nor serialized, and no IPC is involved.
+ * <p>
+ * Receivers are called on the main thread in order of posting. The queue of undelivered intents is bounded,
+ * if it overflows the oldest intents are dropped. Intents without a matching receiver are not queued,
+ * the sender falls back to a system broadcast for them.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class NfcEventBus {
+	public static final int DEFAULT_QUEUE_CAPACITY = 32;
+	
+	private static final String TAG = "NfcEventBus";
+	private static NfcEventBus INSTANCE;
+	
+	private final Executor mExecutor;
+	private final ArrayList<Registration> mRegistrations = new ArrayList<Registration>();
+	private final ArrayDeque<Posted> mQueue = new ArrayDeque<Posted>();
+	private int mCapacity = DEFAULT_QUEUE_CAPACITY;
+	private boolean mScheduled;
+	
+	private final Runnable mDrain = new Runnable() {
+		@Override
+		public void run() {
+			NfcEventBus.this.drain();
+		}
+	};
+	
+	
+	private NfcEventBus(){
+		this(new Executor() {
+			private final Handler mHandler = new Handler(Looper.getMainLooper());
+			
+			@Override
+			public void execute(Runnable command) {
+				mHandler.post(command);
+			}
+		});
+	}
+	
+	/**
+	 * Constructs a bus which delivers on the given executor instead of the main thread.
+	 * @param executor Executor running the deliveries one after another.
+	 */
+	NfcEventBus(Executor executor){
+		mExecutor = executor;
+	}
+	
+	
+	/**
+	 * @return The process-wide event bus.
+	 */
+	public static synchronized NfcEventBus getInstance(){
+		if(INSTANCE == null){
+			INSTANCE = new NfcEventBus();
+		}
+		return INSTANCE;
+	}
+	
+	
+	/**
+	 * @param capacity Maximum number of undelivered intents.
+	 */
+	public synchronized void setQueueCapacity(int capacity){
+		mCapacity = capacity;
+	}
+	
+	
+	/**
+	 * Registers a receiver for intents with the given action. Registering the same receiver again replaces its registration.
+	 * @param context Context passed to the receiver, usually the activity which registers it.
+	 * @param receiver The receiver.
+	 * @param action Action of the intents to receive.
+	 */
+	public synchronized void register(Context context, BroadcastReceiver receiver, String action){
+		this.unregister(receiver);
+		mRegistrations.add(new Registration(context, receiver, action));
+	}
+	
+	
+	/**
+	 * Unregisters a receiver. Does nothing if it is not registered.
+	 * @param receiver The receiver.
+	 */
+	public synchronized void unregister(BroadcastReceiver receiver){
+		for(int i=mRegistrations.size()-1; i>=0; i--){
+			if(mRegistrations.get(i).receiver == receiver){
+				mRegistrations.remove(i);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Queues an intent for all receivers registered for its action.
+	 * @param intent The intent to deliver.
+	 * @return True if a receiver is registered, otherwise false and the intent is not queued.
+	 */
+	public synchronized boolean post(Intent intent){
+		if(!this.hasReceiver(intent.getAction())) return false;
+		
+		mQueue.add(new Posted(intent, NfcMetrics.start()));
+		while(mQueue.size() > mCapacity){
+			Posted dropped = mQueue.poll();
+			Log.w(TAG, "queue full, dropped "+dropped.intent.getAction());
+		}
+		
+		if(!mScheduled){
+			mScheduled = true;
+			mExecutor.execute(mDrain);
+		}
+		return true;
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private void drain(){
+		while(true){
+			Posted posted;
+			Registration[] registrations;
+			synchronized (this) {
+				posted = mQueue.poll();
+				if(posted == null){
+					mScheduled = false;
+					return;
+				}
+				registrations = mRegistrations.toArray(new Registration[mRegistrations.size()]);
+			}
+			
+			Intent intent = posted.intent;
+			if(Nfc.DEBUG)Log.v(TAG, "\tdeliver "+intent.getAction());
+			for(Registration registration : registrations){
+				if(registration.action.equals(intent.getAction()) && this.isRegistered(registration)){
+					registration.receiver.onReceive(registration.context, intent);
+				}
+			}
+			NfcMetrics.stop(Stage.DELIVERY, posted.start);
+		}
+	}
+	
+	private boolean hasReceiver(String action){
+		for(Registration registration : mRegistrations){
+			if(registration.action.equals(action)) return true;
+		}
+		return false;
+	}
+	
+	private synchronized boolean isRegistered(Registration registration){
+		return mRegistrations.contains(registration);
+	}
+	
+	
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+	
+	private static final class Posted{
+		final Intent intent;
+		final long start;
+		
+		Posted(Intent intent, long start){
+			this.intent = intent;
+			this.start = start;
+		}
+	}
+	
+	private static final class Registration{
+		final Context context;
+		final BroadcastReceiver receiver;
+		final String action;
+		
+		Registration(Context context, BroadcastReceiver receiver, String action){
+			this.context = context;
+			this.receiver = receiver;
+			this.action = action;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package de.simplenfc.filter;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import android.nfc.NdefMessage;
+import android.os.Parcelable;
+import android.util.Log;
+import de.simplenfc.Nfc;
+
+/**
+ * Suppresses repeated reads of the same tag. A tag which stays in the field or is presented again shortly
+ * after is dispatched only once: reads are keyed by the UID of the tag and a CRC32 of its NDEF-content, a
+ * read is a duplicate if the same key was seen within the window. Every duplicate extends the window, so a
+ * tag lying on the reader is suppressed until it is removed for at least the window.
+ * <p>
+ * The keys are kept in a bounded LRU, the least recently seen tags are dropped first.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class ReadDeduplicator {
+	public static final long DEFAULT_WINDOW_MILLIS = 2000;
+	public static final int DEFAULT_CAPACITY = 32;
+	
+	private static final String TAG = "ReadDeduplicator";
+	private static ReadDeduplicator INSTANCE;
+	
+	private final LinkedHashMap<Long, Long> mSeen;
+	private volatile boolean mEnabled = true;
+	private long mWindowMillis = DEFAULT_WINDOW_MILLIS;
+	private int mCapacity = DEFAULT_CAPACITY;
+	private long mHits;
+	private long mMisses;
+	
+	
+	private ReadDeduplicator(){
+		mSeen = new LinkedHashMap<Long, Long>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+				return size() > mCapacity;
+			}
+		};
+	}
+	
+	
+	/**
+	 * @return The process-wide deduplicator used by {@link de.simplenfc.activity.NfcConnector}.
+	 */
+	public static synchronized ReadDeduplicator getInstance(){
+		if(INSTANCE == null){
+			INSTANCE = new ReadDeduplicator();
+		}
+		return INSTANCE;
+	}
+	
+	
+	/**
+	 * @param enabled False to dispatch every read.
+	 */
+	public synchronized void setEnabled(boolean enabled){
+		mEnabled = enabled;
+		if(!enabled) mSeen.clear();
+	}
+	
+	/**
+	 * @param windowMillis Time after the last read of a tag, within which further reads are duplicates.
+	 */
+	public synchronized void setWindow(long windowMillis){
+		mWindowMillis = windowMillis;
+	}
+	
+	/**
+	 * @param capacity Maximum number of remembered tags.
+	 */
+	public synchronized void setCapacity(int capacity){
+		mCapacity = capacity;
+		while(mSeen.size() > capacity){
+			mSeen.remove(mSeen.keySet().iterator().next());
+		}
+	}
+	
+	/**
+	 * @return Number of suppressed reads.
+	 */
+	public synchronized long getHits(){
+		return mHits;
+	}
+	
+	/**
+	 * @return Number of dispatched reads.
+	 */
+	public synchronized long getMisses(){
+		return mMisses;
+	}
+	
+	/**
+	 * Forgets all tags and resets the counters.
+	 */
+	public synchronized void clear(){
+		mSeen.clear();
+		mHits = 0;
+		mMisses = 0;
+	}
+	
+	
+	/**
+	 * Checks a read and remembers it.
+	 * @param uid UID of the tag, may be null.
+	 * @param rawMessages {@link NdefMessage}s read from the tag.
+	 * @return True if the same content was read from the same tag within the window.
+	 */
+	public boolean isDuplicate(byte[] uid, Parcelable[] rawMessages){
+		if(!mEnabled) return false;
+		
+		CRC32 crc = new CRC32();
+		for(Parcelable message : rawMessages){
+			crc.update(((NdefMessage) message).toByteArray());
+		}
+		return this.isDuplicate(hash(uid) << 32 | crc.getValue());
+	}
+	
+	/**
+	 * Checks a read and remembers it, like {@link #isDuplicate(byte[], Parcelable[])} for a single message.
+	 * @param uid UID of the tag, may be null.
+	 * @param encoded The encoded NDEF-message read from the tag, between position and limit.
+	 * @return True if the same content was read from the same tag within the window.
+	 */
+	public boolean isDuplicate(byte[] uid, ByteBuffer encoded){
+		if(!mEnabled) return false;
+		
+		CRC32 crc = new CRC32();
+		if(encoded.hasArray()){
+			crc.update(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+		}else{
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.duplicate().get(bytes);
+			crc.update(bytes);
+		}
+		return this.isDuplicate(hash(uid) << 32 | crc.getValue());
+	}
+	
+	
+	private boolean isDuplicate(long key){
+		long now = System.nanoTime() / 1000000;
+		
+		synchronized (this) {
+			Long last = mSeen.put(key, now);
+			if(last != null && now - last < mWindowMillis){
+				mHits++;
+				if(Nfc.DEBUG)Log.v(TAG, "\tsuppress duplicate read, hits: "+mHits);
+				return true;
+			}
+			mMisses++;
+			return false;
+		}
+	}
+	
+	private static long hash(byte[] uid){
+		if(uid == null) return 0;
+		
+		CRC32 crc = new CRC32();
+		crc.update(uid);
+		return crc.getValue();
+	}
+}
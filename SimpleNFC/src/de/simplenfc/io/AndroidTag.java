@@ -0,0 +1,173 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.Tag;
+import android.nfc.tech.MifareUltralight;
+import android.nfc.tech.Ndef;
+import android.nfc.tech.NdefFormatable;
+import android.nfc.tech.TagTechnology;
+import android.os.Build;
+import de.simplenfc.entity.NfcMessage;
+
+/**
+ * {@link TagHandle} of a {@link Tag} discovered by the device, delegating to the technologies of the platform.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class AndroidTag implements TagHandle {
+	private static final int VERSION_JELLY_BEAN = 16;
+	
+	private final Tag mTag;
+
+
+	/**
+	 * @param tag Tag from {@link android.nfc.NfcAdapter#EXTRA_TAG}.
+	 */
+	public AndroidTag(Tag tag){
+		mTag = tag;
+	}
+
+
+	@Override
+	public byte[] getId() {
+		return mTag.getId();
+	}
+
+	@Override
+	public NdefTech getNdef() {
+		Ndef ndef = Ndef.get(mTag);
+		return ndef == null ? null : new AndroidNdef(ndef);
+	}
+
+	@Override
+	public NdefFormatableTech getNdefFormatable() {
+		NdefFormatable format = NdefFormatable.get(mTag);
+		return format == null ? null : new AndroidNdefFormatable(format);
+	}
+
+	@Override
+	public Type2Tech getType2() {
+		MifareUltralight type2 = MifareUltralight.get(mTag);
+		return type2 == null ? null : new AndroidType2(type2);
+	}
+
+
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+
+	private static abstract class AndroidTech<X extends TagTechnology> implements TagTech{
+		final X mTech;
+
+		AndroidTech(X tech){
+			mTech = tech;
+		}
+
+		@Override
+		public void connect() throws IOException {
+			mTech.connect();
+		}
+
+		@Override
+		public void close() throws IOException {
+			mTech.close();
+		}
+
+		@Override
+		public boolean isConnected() {
+			return mTech.isConnected();
+		}
+	}
+
+	private static final class AndroidNdef extends AndroidTech<Ndef> implements NdefTech{
+
+		AndroidNdef(Ndef ndef){
+			super(ndef);
+		}
+
+		@Override
+		public boolean isWritable() {
+			return mTech.isWritable();
+		}
+
+		@Override
+		public int getMaxSize() {
+			return mTech.getMaxSize();
+		}
+
+		@Override
+		public ByteBuffer getCachedMessage() {
+			return encode(mTech.getCachedNdefMessage());
+		}
+
+		@Override
+		public ByteBuffer readMessage() throws IOException, FormatException {
+			return encode(mTech.getNdefMessage());
+		}
+
+		/**
+		 * Compares the read records with the records of the message, which are cached by the message once it
+		 * was written. Records compare by value only since Jelly Bean, before the read message is encoded.
+		 */
+		@Override
+		public boolean verifyMessage(NfcMessage message) throws IOException, FormatException {
+			NdefMessage read = mTech.getNdefMessage();
+			if(read == null) return false;
+			
+			if(Build.VERSION.SDK_INT >= VERSION_JELLY_BEAN){
+				return read.equals(message.getRAWMessage());
+			}
+			return encode(read).equals(message.getByteBuffer());
+		}
+
+		@Override
+		public void writeMessage(NfcMessage message) throws IOException, FormatException {
+			mTech.writeNdefMessage(message.getRAWMessage());
+		}
+
+		private static ByteBuffer encode(NdefMessage message){
+			return message == null ? null : ByteBuffer.wrap(message.toByteArray());
+		}
+	}
+
+	private static final class AndroidNdefFormatable extends AndroidTech<NdefFormatable> implements NdefFormatableTech{
+
+		AndroidNdefFormatable(NdefFormatable format){
+			super(format);
+		}
+
+		@Override
+		public void format(NfcMessage message) throws IOException, FormatException {
+			mTech.format(message == null ? null : message.getRAWMessage());
+		}
+	}
+
+	private static final class AndroidType2 extends AndroidTech<MifareUltralight> implements Type2Tech{
+
+		AndroidType2(MifareUltralight type2){
+			super(type2);
+		}
+
+		@Override
+		public byte[] readPages(int pageOffset) throws IOException {
+			return mTech.readPages(pageOffset);
+		}
+
+		@Override
+		public void writePage(int pageOffset, byte[] data) throws IOException {
+			mTech.writePage(pageOffset, data);
+		}
+
+		@Override
+		public byte[] transceive(byte[] data) throws IOException {
+			return mTech.transceive(data);
+		}
+	}
+}
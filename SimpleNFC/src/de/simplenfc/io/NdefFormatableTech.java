@@ -0,0 +1,25 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+
+import android.nfc.FormatException;
+import de.simplenfc.entity.NfcMessage;
+
+/**
+ * Formatting of a tag which has no NDEF data area yet, see {@link android.nfc.tech.NdefFormatable}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface NdefFormatableTech extends TagTech {
+	
+	/**
+	 * Formats the tag as NDEF and writes the first message.
+	 * @param message The message to write, may be null for an empty tag.
+	 * @throws IOException If the communication with the tag fails or the message does not fit.
+	 * @throws FormatException If the message is malformed.
+	 */
+	public void format(NfcMessage message) throws IOException, FormatException;
+}
@@ -0,0 +1,61 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.nfc.FormatException;
+import de.simplenfc.entity.NfcMessage;
+
+/**
+ * NDEF operations of a formatted tag, see {@link android.nfc.tech.Ndef}. Messages are exchanged in their
+ * encoded form, so implementations need not create {@link android.nfc.NdefMessage}s.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface NdefTech extends TagTech {
+	
+	/**
+	 * @return True if the tag can be written. Does not require a connection.
+	 */
+	public boolean isWritable();
+	
+	/**
+	 * @return Maximum size of an encoded NDEF-message in bytes. Does not require a connection.
+	 */
+	public int getMaxSize();
+	
+	/**
+	 * @return The encoded NDEF-message read on discovery of the tag, or null if the tag was empty.
+	 * Does not require a connection.
+	 */
+	public ByteBuffer getCachedMessage();
+	
+	/**
+	 * Reads the current NDEF-message.
+	 * @return The encoded NDEF-message, or null if the tag is empty.
+	 * @throws IOException If the communication with the tag fails.
+	 * @throws FormatException If the content of the tag is malformed.
+	 */
+	public ByteBuffer readMessage() throws IOException, FormatException;
+	
+	/**
+	 * Reads the current NDEF-message and compares it with a message. Unlike {@link #readMessage()} the read
+	 * message is not encoded again.
+	 * @param message The expected message.
+	 * @return True if the tag holds the message.
+	 * @throws IOException If the communication with the tag fails.
+	 * @throws FormatException If the content of the tag is malformed.
+	 */
+	public boolean verifyMessage(NfcMessage message) throws IOException, FormatException;
+	
+	/**
+	 * Overwrites the NDEF-message of the tag.
+	 * @param message The message to write.
+	 * @throws IOException If the communication with the tag fails, the message is too large or the tag is read-only.
+	 * @throws FormatException If the message is malformed.
+	 */
+	public void writeMessage(NfcMessage message) throws IOException, FormatException;
+}
@@ -0,0 +1,80 @@
+package de.simplenfc.io;
+
+import de.simplenfc.compress.MessageMinimizer;
+import de.simplenfc.entity.NfcMessage;
+
+/**
+ * Maximum NDEF-message sizes of common tags, as reported by {@link NdefTech#getMaxSize()}. They allow to check
+ * whether a message fits before the tag is presented, instead of failing with a
+ * {@link de.simplenfc.entity.exceptions.LowCapacityException} while it is in the field.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public enum TagCapacity {
+	/** MIFARE Ultralight, 48 bytes of user memory. */
+	MIFARE_ULTRALIGHT(46),
+	/** NTAG213, 144 bytes of user memory. */
+	NTAG213(137),
+	/** NTAG215, 504 bytes of user memory. */
+	NTAG215(492),
+	/** NTAG216, 888 bytes of user memory. */
+	NTAG216(868),
+	/** Type 4 tag with an NDEF-file of 8 KB, e.g. MIFARE DESFire EV1 or NTAG 424 DNA applications. */
+	TYPE4_8K(8190);
+	
+	private final int mMaxSize;
+	
+	
+	private TagCapacity(int maxSize){
+		mMaxSize = maxSize;
+	}
+	
+	
+	/**
+	 * @return Maximum size of a NDEF-message in bytes.
+	 */
+	public int getMaxSize(){
+		return mMaxSize;
+	}
+	
+	/**
+	 * @param size Encoded size of a message, e.g. {@link NfcMessage.Builder#getEncodedSize()}.
+	 * @return True if a message of the given size fits.
+	 */
+	public boolean fits(int size){
+		return size <= mMaxSize;
+	}
+	
+	/**
+	 * Checks whether a message fits as it is, see {@link NfcMessage#getEncodedSize()}.
+	 * @param message The message.
+	 * @return True if the message fits.
+	 */
+	public boolean fits(NfcMessage message){
+		return this.fits(message.getEncodedSize());
+	}
+	
+	/**
+	 * Checks whether a message fits after {@link MessageMinimizer#minimize(NfcMessage)}, which is applied
+	 * by all compressions except {@link de.simplenfc.compress.Compression#NONE}.
+	 * @param message The message.
+	 * @return True if the minimized message fits.
+	 */
+	public boolean fitsMinimized(NfcMessage message){
+		return this.fits(MessageMinimizer.getMinimizedSize(message));
+	}
+	
+	/**
+	 * @param size Encoded size of a message.
+	 * @return The smallest tag a message of the given size fits on, or null if it fits on none.
+	 */
+	public static TagCapacity smallestFor(int size){
+		for(TagCapacity capacity : values()){
+			if(capacity.fits(size)) return capacity;
+		}
+		return null;
+	}
+}
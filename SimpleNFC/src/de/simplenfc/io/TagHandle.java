@@ -0,0 +1,34 @@
+package de.simplenfc.io;
+
+/**
+ * A discovered tag and the technologies it supports, the library's counterpart of {@link android.nfc.Tag}.
+ * {@link TagTask}s work on this interface, so they run against {@link AndroidTag} on a device and against
+ * <code>de.simplenfc.sim.SimulatedTag</code> of the tools source folder on the JVM.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface TagHandle {
+	
+	/**
+	 * @return The UID of the tag.
+	 */
+	public byte[] getId();
+	
+	/**
+	 * @return NDEF operations, or null if the tag is not NDEF formatted.
+	 */
+	public NdefTech getNdef();
+	
+	/**
+	 * @return Formatting operations, or null if the tag cannot be formatted.
+	 */
+	public NdefFormatableTech getNdefFormatable();
+	
+	/**
+	 * @return Page access, or null if the tag is no Type 2 tag.
+	 */
+	public Type2Tech getType2();
+}
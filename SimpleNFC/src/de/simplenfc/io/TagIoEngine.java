@@ -0,0 +1,244 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.nfc.TagLostException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import de.simplenfc.Nfc;
+
+/**
+ * Executes {@link TagTask}s on a dedicated worker thread, one at a time, so tag I/O never blocks the main thread.
+ * <ul>
+ * <li>Every task has a timeout. When it expires the connected technology is closed, which aborts blocking I/O.</li>
+ * <li>A task failing with {@link TagLostException} is retried with exponential backoff, as long as the number of retries allows.</li>
+ * <li>Connected technologies are closed after every attempt.</li>
+ * <li>{@link #cancelAll()} aborts running and queued tasks.</li>
+ * </ul>
+ * Results are delivered on the main thread. Timeouts and cancellations are reported as {@link InterruptedIOException}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TagIoEngine {
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+	public static final int DEFAULT_RETRIES = 3;
+	public static final long DEFAULT_BACKOFF_MILLIS = 50;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 400;
+	
+	private static final String TAG = "TagIoEngine";
+	private static TagIoEngine INSTANCE;
+	
+	private final ExecutorService mWorker = Executors.newSingleThreadExecutor(new NamedThreadFactory("SimpleNFC-tag-io"));
+	private final ScheduledExecutorService mWatchdog = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("SimpleNFC-tag-watchdog"));
+	private Handler mHandler;
+	private final HashSet<TagTask<?>> mTasks = new HashSet<TagTask<?>>();
+	private volatile long mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private volatile int mRetries = DEFAULT_RETRIES;
+	private volatile long mBackoffMillis = DEFAULT_BACKOFF_MILLIS;
+	private volatile long mMaxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+	
+	
+	private TagIoEngine(){}
+	
+	
+	/**
+	 * @return The process-wide engine.
+	 */
+	public static synchronized TagIoEngine getInstance(){
+		if(INSTANCE == null){
+			INSTANCE = new TagIoEngine();
+		}
+		return INSTANCE;
+	}
+	
+	
+	/**
+	 * @param timeoutMillis Time a task may take from its start including all retries.
+	 */
+	public void setTimeout(long timeoutMillis){
+		mTimeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * @param retries Number of retries after a {@link TagLostException}, 0 to disable retries.
+	 */
+	public void setRetries(int retries){
+		mRetries = retries;
+	}
+	
+	/**
+	 * @param backoffMillis Delay before the first retry, doubled for every further retry.
+	 * @param maxBackoffMillis Upper bound of the delay.
+	 */
+	public void setBackoff(long backoffMillis, long maxBackoffMillis){
+		mBackoffMillis = backoffMillis;
+		mMaxBackoffMillis = maxBackoffMillis;
+	}
+	
+	
+	/**
+	 * Queues a task.
+	 * @param task The task to execute.
+	 * @param callback Called on the main thread with the result, exactly once. May be null.
+	 */
+	public <T> void execute(final TagTask<T> task, final Callback<T> callback){
+		synchronized (mTasks) {
+			mTasks.add(task);
+		}
+		
+		mWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				TagIoEngine.this.runTask(task, callback);
+			}
+		});
+	}
+	
+	
+	/**
+	 * Executes a task on the calling thread, with the same timeout and retries as {@link #execute(TagTask, Callback)}.
+	 * Needs no main thread, e.g. for the simulated tag of the tests, which runs on the JVM.
+	 * @param task The task to execute.
+	 * @return The result of the task.
+	 * @throws Exception Exception of the last attempt, {@link InterruptedIOException} on timeout or cancellation.
+	 */
+	public <T> T executeNow(final TagTask<T> task) throws Exception{
+		synchronized (mTasks) {
+			mTasks.add(task);
+		}
+		
+		ScheduledFuture<?> watchdog = mWatchdog.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if(Nfc.DEBUG)Log.v(TAG, "\ttask timed out");
+				task.cancel(true);
+			}
+		}, mTimeoutMillis, TimeUnit.MILLISECONDS);
+		
+		try {
+			return this.attempt(task);
+		} catch (Exception e) {
+			if(task.isCancelled()){
+				throw new InterruptedIOException(task.isTimedOut() ? "Tag operation timed out after "+mTimeoutMillis+" ms." : "Tag operation cancelled.");
+			}
+			throw e;
+		} finally {
+			watchdog.cancel(false);
+			synchronized (mTasks) {
+				mTasks.remove(task);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Cancels all running and queued tasks. Their callbacks receive an {@link InterruptedIOException}.
+	 */
+	public void cancelAll(){
+		synchronized (mTasks) {
+			for(TagTask<?> task : mTasks){
+				task.cancel(false);
+			}
+		}
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private <T> void runTask(TagTask<T> task, Callback<T> callback){
+		try {
+			T result = this.executeNow(task);
+			this.deliver(callback, result, null);
+		} catch (Exception e) {
+			this.deliver(callback, null, e);
+		}
+	}
+	
+	private <T> T attempt(TagTask<T> task) throws Exception{
+		long backoff = mBackoffMillis;
+		for(int attempt = 0; ; attempt++){
+			if(task.isCancelled()) throw new IOException("Tag operation cancelled.");
+			
+			try {
+				return task.run();
+			} catch (TagLostException e) {
+				if(attempt >= mRetries || task.isCancelled()) throw e;
+				
+				if(Nfc.DEBUG)Log.v(TAG, "\ttag lost, retry "+(attempt+1)+" in "+backoff+" ms");
+				Thread.sleep(backoff);
+				backoff = Math.min(backoff * 2, mMaxBackoffMillis);
+			} finally {
+				task.close();
+			}
+		}
+	}
+	
+	private <T> void deliver(final Callback<T> callback, final T result, final Exception e){
+		if(callback == null) return;
+		
+		synchronized (this) {
+			if(mHandler == null) mHandler = new Handler(Looper.getMainLooper());
+		}
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				if(e == null){
+					callback.onSuccess(result);
+				}else{
+					callback.onFailure(e);
+				}
+			}
+		});
+	}
+	
+	
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+	
+	/**
+	 * Receives the result of a {@link TagTask} on the main thread.
+	 * @param <T> Result of the task.
+	 */
+	public interface Callback<T>{
+		
+		/**
+		 * @param result Result of the task.
+		 */
+		public void onSuccess(T result);
+		
+		/**
+		 * @param e Exception of the last attempt, {@link InterruptedIOException} on timeout or cancellation.
+		 */
+		public void onFailure(Exception e);
+	}
+	
+	private static final class NamedThreadFactory implements ThreadFactory{
+		private final String mName;
+		
+		NamedThreadFactory(String name){
+			mName = name;
+		}
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, mName);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package de.simplenfc.io;
+
+import java.nio.ByteBuffer;
+
+import de.simplenfc.metrics.NfcMetrics;
+import de.simplenfc.metrics.Stage;
+
+/**
+ * Reads the NDEF-message of a tag on the worker thread of the {@link TagIoEngine}. The message read by the
+ * platform on discovery is used if there is one, tags discovered without the NDEF check of the platform are
+ * read page by page by the {@link Type2Writer}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TagReader extends TagTask<ByteBuffer> {
+	private final TagHandle mTag;
+
+
+	/**
+	 * @param tag The tag to read.
+	 */
+	public TagReader(TagHandle tag){
+		mTag = tag;
+	}
+
+
+	/**
+	 * @return The encoded NDEF-message, or null if the tag is empty or holds no NDEF data.
+	 */
+	@Override
+	protected ByteBuffer run() throws Exception {
+		NdefTech ndef = mTag.getNdef();
+		if(ndef != null) return ndef.getCachedMessage();
+
+		Type2Tech type2 = mTag.getType2();
+		if(type2 == null) return null;
+
+		long start = NfcMetrics.start();
+		ByteBuffer message = Type2Writer.read(this.connect(type2));
+		NfcMetrics.stop(Stage.READ, start);
+		return message;
+	}
+}
@@ -0,0 +1,80 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.simplenfc.metrics.NfcMetrics;
+import de.simplenfc.metrics.Stage;
+
+/**
+ * A single operation on a tag, executed by the {@link TagIoEngine} on its worker thread. Technologies must be
+ * connected through {@link #connect(TagTech)}, so the engine can close them after every attempt and abort
+ * blocking I/O on timeout or cancellation.
+ *
+ * @param <T> Result of the operation.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public abstract class TagTask<T> {
+	private final AtomicReference<TagTech> mTech = new AtomicReference<TagTech>();
+	private volatile boolean mCancelled;
+	private volatile boolean mTimedOut;
+	
+	
+	/**
+	 * Executes the operation. Called again on retry, so it must not depend on state of a failed attempt.
+	 * @return The result.
+	 * @throws Exception Any exception of the operation, {@link android.nfc.TagLostException} leads to a retry.
+	 */
+	protected abstract T run() throws Exception;
+	
+	
+	/**
+	 * Connects a technology of the tag. It is closed by the engine after the attempt.
+	 * @param tech Technology to connect.
+	 * @return The connected technology.
+	 * @throws IOException If the connection fails or the task was cancelled.
+	 */
+	protected final <X extends TagTech> X connect(X tech) throws IOException{
+		if(mCancelled) throw new IOException("Tag operation cancelled.");
+		
+		this.close();
+		mTech.set(tech);
+		long start = NfcMetrics.start();
+		tech.connect();
+		NfcMetrics.stop(Stage.CONNECT, start);
+		return tech;
+	}
+	
+	/**
+	 * @return True if the task was cancelled or timed out.
+	 */
+	protected final boolean isCancelled(){
+		return mCancelled;
+	}
+	
+	
+	final boolean isTimedOut(){
+		return mTimedOut;
+	}
+	
+	final void cancel(boolean timeout){
+		mTimedOut = timeout;
+		mCancelled = true;
+		this.close();
+	}
+	
+	final void close(){
+		TagTech tech = mTech.getAndSet(null);
+		if(tech != null){
+			try {
+				tech.close();
+			} catch (IOException e) {
+				// the connection is gone anyway
+			}
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+
+/**
+ * Connection to one technology of a tag, the library's counterpart of {@link android.nfc.tech.TagTechnology}.
+ * Only one technology of a tag can be connected at a time.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface TagTech {
+	
+	/**
+	 * Enables I/O operations on the tag.
+	 * @throws IOException If the tag left the field.
+	 */
+	public void connect() throws IOException;
+	
+	/**
+	 * Disables I/O operations on the tag.
+	 * @throws IOException If closing fails, the connection is gone anyway.
+	 */
+	public void close() throws IOException;
+	
+	/**
+	 * @return True if {@link #connect()} was called and the connection was not closed.
+	 */
+	public boolean isConnected();
+}
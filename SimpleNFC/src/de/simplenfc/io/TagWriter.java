@@ -0,0 +1,105 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.nfc.FormatException;
+import de.simplenfc.compress.Compression;
+import de.simplenfc.compress.PayloadCompressor;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.exceptions.LowCapacityException;
+import de.simplenfc.entity.exceptions.NDEFException;
+import de.simplenfc.entity.exceptions.ReadOnlyException;
+import de.simplenfc.metrics.NfcMetrics;
+import de.simplenfc.metrics.Stage;
+
+/**
+ * Writes a message to a tag on the worker thread of the {@link TagIoEngine}. Compresses the message
+ * if it exceeds the capacity of the tag, unformatted tags are formatted with the message.
+ * <p>
+ * Type 2 tags are written by the {@link Type2Writer}, which writes only changed pages. Depending on the {@link WritePolicy} the write is skipped if the NDEF-message read on discovery of the
+ * tag equals the message as it would be written, i.e. after compression, and the tag is read back after writing.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class TagWriter extends TagTask<WriteOutcome> {
+	private final TagHandle mTag;
+	private final NfcMessage mMessage;
+	private final Compression mCompression;
+	private final WritePolicy mPolicy;
+
+
+	/**
+	 * @param tag The tag to write.
+	 * @param message The message to write, should be immutable.
+	 * @param compression Compression allowed if the message exceeds the capacity of the tag.
+	 * @param policy Whether identical content is skipped and the written content is verified.
+	 */
+	public TagWriter(TagHandle tag, NfcMessage message, Compression compression, WritePolicy policy){
+		mTag = tag;
+		mMessage = message;
+		mCompression = compression;
+		mPolicy = policy;
+	}
+
+
+	@Override
+	protected WriteOutcome run() throws IOException, FormatException, ReadOnlyException, LowCapacityException, NDEFException{
+		NdefTech ndef = mTag.getNdef();
+		if (ndef != null) {
+			NfcMetrics.messageSize(mMessage.getEncodedSize(), ndef.getMaxSize());
+			NfcMessage message = mMessage;
+			if(mMessage.getEncodedSize() > ndef.getMaxSize()){
+				message = PayloadCompressor.fit(mMessage, ndef.getMaxSize(), mCompression);
+			}
+			if(mPolicy.skipsIfIdentical() && contentEquals(ndef.getCachedMessage(), message)){
+				return WriteOutcome.SKIPPED;
+			}
+			if (!ndef.isWritable()) {
+				throw new ReadOnlyException();
+			}
+
+			Type2Tech type2 = Type2Writer.isEnabled() ? mTag.getType2() : null;
+			long start = NfcMetrics.start();
+			if(type2 == null || Type2Writer.write(this.connect(type2), message.getByteBuffer()) < 0){
+				this.connect(ndef).writeMessage(message);
+			}
+			NfcMetrics.stop(Stage.WRITE, start);
+
+			if(mPolicy.verifies()){
+				if(!ndef.isConnected()) this.connect(ndef);
+				start = NfcMetrics.start();
+				boolean equal = ndef.verifyMessage(message);
+				NfcMetrics.stop(Stage.READ, start);
+				return equal ? WriteOutcome.VERIFIED : WriteOutcome.MISMATCH;
+			}
+		} else {
+			NdefFormatableTech format = mTag.getNdefFormatable();
+			if (format != null) {
+				long start = NfcMetrics.start();
+				this.connect(format).format(mMessage);
+				NfcMetrics.stop(Stage.WRITE, start);
+			} else {
+				throw new NDEFException();
+			}
+		}
+		return WriteOutcome.WRITTEN;
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	/**
+	 * Compares a read NDEF-message with the encoded bytes of a message, without copying the latter.
+	 */
+	private static boolean contentEquals(ByteBuffer read, NfcMessage message){
+		if(read == null) return false;
+
+		return read.equals(message.getByteBuffer());
+	}
+}
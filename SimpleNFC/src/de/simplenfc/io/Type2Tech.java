@@ -0,0 +1,39 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+
+/**
+ * Page access to a NFC Forum Type 2 tag, see {@link android.nfc.tech.MifareUltralight}. A page has 4 bytes.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface Type2Tech extends TagTech {
+	public static final int PAGE_SIZE = 4;
+	
+	/**
+	 * Reads 4 pages (16 bytes), starting at the given page.
+	 * @param pageOffset Index of the first page.
+	 * @return The 16 read bytes.
+	 * @throws IOException If the communication with the tag fails.
+	 */
+	public byte[] readPages(int pageOffset) throws IOException;
+	
+	/**
+	 * Writes one page.
+	 * @param pageOffset Index of the page.
+	 * @param data The 4 bytes to write.
+	 * @throws IOException If the communication with the tag fails or the page is locked.
+	 */
+	public void writePage(int pageOffset, byte[] data) throws IOException;
+	
+	/**
+	 * Sends a raw command to the tag.
+	 * @param data The command.
+	 * @return The response.
+	 * @throws IOException If the communication with the tag fails or the tag answers with a NAK.
+	 */
+	public byte[] transceive(byte[] data) throws IOException;
+}
@@ -0,0 +1,297 @@
+package de.simplenfc.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import android.util.Log;
+import de.simplenfc.Nfc;
+
+/**
+ * Differential writer for NFC Forum Type 2 tags. Instead of rewriting the whole NDEF-TLV like
+ * {@link android.nfc.tech.Ndef#writeNdefMessage(android.nfc.NdefMessage)}, it reads the data area, builds the
+ * target memory image and writes only the 4-byte pages that differ.
+ * <p>
+ * Following the NDEF write procedure of the Type 2 specification, the length of the NDEF-TLV is set to 0
+ * first, then the changed pages are written and the final length is written last. A reader never sees a
+ * length which does not match the value.
+ * <p>
+ * Pages are read with FAST_READ where the tag supports it, otherwise with READ. {@link #read(Type2Tech)} reads
+ * the NDEF-message the same way, for tags discovered without the NDEF check of the platform.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class Type2Writer {
+	private static final String TAG = "Type2Writer";
+	
+	private static final int PAGE_SIZE = Type2Tech.PAGE_SIZE;
+	private static final int CC_PAGE = 3;
+	private static final int DATA_PAGE = 4;
+	private static final int CC_MAGIC = 0xE1;
+	private static final byte CMD_FAST_READ = 0x3A;
+	private static final int FAST_READ_PAGES = 32;
+	private static final int READ_PAGES = 4;
+	
+	private static final int TLV_NULL = 0x00;
+	private static final int TLV_NDEF = 0x03;
+	private static final int TLV_TERMINATOR = 0xFE;
+	private static final int TLV_LONG_LENGTH = 0xFF;
+	
+	private static volatile boolean sEnabled = true;
+	
+	private final Type2Tech mTag;
+	private boolean mFastRead = true;
+	
+	
+	private Type2Writer(Type2Tech tag){
+		mTag = tag;
+	}
+	
+	
+	/**
+	 * @param enabled False to always write the whole NDEF-message.
+	 */
+	public static void setEnabled(boolean enabled){
+		sEnabled = enabled;
+	}
+	
+	/**
+	 * @return True if differential writes are used for Type 2 tags.
+	 */
+	public static boolean isEnabled(){
+		return sEnabled;
+	}
+	
+	
+	/**
+	 * Writes an encoded NDEF-message to a connected Type 2 tag, changing only pages that differ.
+	 * @param tag Connected tag.
+	 * @param message Encoded NDEF-message between position and limit.
+	 * @return Number of written pages, or -1 if the tag has no writable NDEF data area or the message does not fit,
+	 * in that case nothing was written.
+	 * @throws IOException If the communication with the tag fails.
+	 */
+	public static int write(Type2Tech tag, ByteBuffer message) throws IOException{
+		return new Type2Writer(tag).write(message);
+	}
+	
+	
+	/**
+	 * Reads the NDEF-message of a connected Type 2 tag, reading only the pages up to its end.
+	 * @param tag Connected tag.
+	 * @return The encoded NDEF-message, or null if the tag has no NDEF data area or is empty.
+	 * @throws IOException If the communication with the tag fails.
+	 */
+	public static ByteBuffer read(Type2Tech tag) throws IOException{
+		return new Type2Writer(tag).read();
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private int write(ByteBuffer message) throws IOException{
+		byte[] cc = mTag.readPages(CC_PAGE);
+		if((cc[0] & 0xFF) != CC_MAGIC || cc[3] != 0) return -1;
+		
+		int dataSize = (cc[2] & 0xFF) * 8;
+		int length = message.remaining();
+		int lengthSize = length < TLV_LONG_LENGTH ? 1 : 3;
+		
+		// only the pages covered by the new image are read, assuming short TLVs in front of the NDEF-TLV
+		byte[] current = read(DATA_PAGE, pagesFor(Math.min(dataSize, length + 4 * PAGE_SIZE)), null);
+		int tlv = findNdefTlv(current);
+		if(tlv < 0 && current.length < dataSize){
+			current = read(DATA_PAGE, dataSize / PAGE_SIZE, current);
+			tlv = findNdefTlv(current);
+		}
+		if(tlv < 0) return -1;
+		
+		int end = tlv + 1 + lengthSize + length;
+		if(end > dataSize) return -1;
+		if(Math.min(end + 1, dataSize) > current.length){
+			current = read(DATA_PAGE, pagesFor(Math.min(end + 1, dataSize)), current);
+		}
+		
+		byte[] target = current.clone();
+		target[tlv] = TLV_NDEF;
+		putLength(target, tlv + 1, lengthSize, length);
+		message.duplicate().get(target, tlv + 1 + lengthSize, length);
+		if(end < dataSize) target[end] = (byte) TLV_TERMINATOR;
+		
+		byte[] empty = target.clone();
+		putLength(empty, tlv + 1, lengthSize, 0);
+		
+		int firstLengthPage = (tlv + 1) / PAGE_SIZE;
+		int lastLengthPage = (tlv + lengthSize) / PAGE_SIZE;
+		int pages = current.length / PAGE_SIZE;
+		
+		boolean dataChanged = false;
+		for(int page=0; page<pages; page++){
+			if((page < firstLengthPage || page > lastLengthPage) && !pageEquals(current, target, page)){
+				dataChanged = true;
+				break;
+			}
+		}
+		
+		int written = 0;
+		if(dataChanged){
+			// invalidate the message while its value is changed
+			for(int page=firstLengthPage; page<=lastLengthPage; page++){
+				if(!pageEquals(current, empty, page)){
+					writePage(empty, page);
+					System.arraycopy(empty, page * PAGE_SIZE, current, page * PAGE_SIZE, PAGE_SIZE);
+					written++;
+				}
+			}
+			for(int page=0; page<pages; page++){
+				if((page < firstLengthPage || page > lastLengthPage) && !pageEquals(current, target, page)){
+					writePage(target, page);
+					written++;
+				}
+			}
+		}
+		for(int page=firstLengthPage; page<=lastLengthPage; page++){
+			if(!pageEquals(current, target, page)){
+				writePage(target, page);
+				written++;
+			}
+		}
+		
+		if(Nfc.DEBUG)Log.v(TAG, "\t"+written+" of "+((end + PAGE_SIZE - 1) / PAGE_SIZE)+" pages written");
+		return written;
+	}
+	
+	private ByteBuffer read() throws IOException{
+		byte[] cc = mTag.readPages(CC_PAGE);
+		if((cc[0] & 0xFF) != CC_MAGIC || (cc[3] & 0xF0) != 0) return null;
+		
+		// READ of the CC returns the first 3 pages of the data area as well
+		int dataSize = (cc[2] & 0xFF) * 8;
+		byte[] data = Arrays.copyOfRange(cc, PAGE_SIZE, PAGE_SIZE + Math.min(3 * PAGE_SIZE, dataSize));
+		int tlv = findNdefTlv(data);
+		if(tlv < 0 && data.length < dataSize){
+			data = read(DATA_PAGE, dataSize / PAGE_SIZE, data);
+			tlv = findNdefTlv(data);
+		}
+		if(tlv < 0) return null;
+		
+		if(tlv + 4 > data.length && data.length < dataSize){
+			data = read(DATA_PAGE, pagesFor(Math.min(tlv + 4, dataSize)), data);
+		}
+		if(tlv + 1 >= data.length) return null;
+		
+		int length = data[tlv + 1] & 0xFF;
+		int lengthSize = 1;
+		if(length == TLV_LONG_LENGTH){
+			if(tlv + 3 >= data.length) return null;
+			length = (data[tlv + 2] & 0xFF) << 8 | (data[tlv + 3] & 0xFF);
+			lengthSize = 3;
+		}
+		int value = tlv + 1 + lengthSize;
+		if(length == 0 || value + length > dataSize) return null;
+		if(value + length > data.length){
+			data = read(DATA_PAGE, pagesFor(value + length), data);
+		}
+		
+		if(Nfc.DEBUG)Log.v(TAG, "\t"+(data.length / PAGE_SIZE)+" pages read");
+		return ByteBuffer.wrap(data, value, length).slice();
+	}
+	
+	/**
+	 * Reads pages, continuing after the pages already read.
+	 */
+	private byte[] read(int firstPage, int count, byte[] known) throws IOException{
+		byte[] data = new byte[count * PAGE_SIZE];
+		int page = 0;
+		if(known != null){
+			System.arraycopy(known, 0, data, 0, known.length);
+			page = known.length / PAGE_SIZE;
+		}
+		
+		while(mFastRead && page < count){
+			int pages = Math.min(FAST_READ_PAGES, count - page);
+			byte[] response;
+			try {
+				response = mTag.transceive(new byte[]{ CMD_FAST_READ, (byte) (firstPage + page), (byte) (firstPage + page + pages - 1) });
+			} catch (IOException e) {
+				response = null;
+			}
+			if(response == null || response.length < pages * PAGE_SIZE){
+				// tags without FAST_READ answer with a NAK, which requires a new activation
+				mFastRead = false;
+				mTag.close();
+				mTag.connect();
+				break;
+			}
+			System.arraycopy(response, 0, data, page * PAGE_SIZE, pages * PAGE_SIZE);
+			page += pages;
+		}
+		
+		while(page < count){
+			byte[] response = mTag.readPages(firstPage + page);
+			int pages = Math.min(READ_PAGES, count - page);
+			System.arraycopy(response, 0, data, page * PAGE_SIZE, pages * PAGE_SIZE);
+			page += pages;
+		}
+		return data;
+	}
+	
+	private static int pagesFor(int bytes){
+		return (bytes + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+	
+	/**
+	 * @return Offset of the NDEF-TLV in the data area, or -1 if there is none.
+	 */
+	private static int findNdefTlv(byte[] data){
+		int offset = 0;
+		while(offset < data.length){
+			int type = data[offset] & 0xFF;
+			if(type == TLV_NDEF) return offset;
+			if(type == TLV_TERMINATOR) return -1;
+			if(type == TLV_NULL){
+				offset++;
+				continue;
+			}
+			
+			if(offset + 1 >= data.length) return -1;
+			int length = data[offset + 1] & 0xFF;
+			int lengthSize = 1;
+			if(length == TLV_LONG_LENGTH){
+				if(offset + 3 >= data.length) return -1;
+				length = (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+				lengthSize = 3;
+			}
+			offset += 1 + lengthSize + length;
+		}
+		return -1;
+	}
+	
+	private static void putLength(byte[] image, int offset, int lengthSize, int length){
+		if(lengthSize == 1){
+			image[offset] = (byte) length;
+		}else{
+			image[offset] = (byte) TLV_LONG_LENGTH;
+			image[offset + 1] = (byte) (length >>> 8);
+			image[offset + 2] = (byte) length;
+		}
+	}
+	
+	private static boolean pageEquals(byte[] a, byte[] b, int page){
+		for(int i=page * PAGE_SIZE; i<(page + 1) * PAGE_SIZE; i++){
+			if(a[i] != b[i]) return false;
+		}
+		return true;
+	}
+	
+	private void writePage(byte[] image, int page) throws IOException{
+		byte[] data = new byte[PAGE_SIZE];
+		System.arraycopy(image, page * PAGE_SIZE, data, 0, PAGE_SIZE);
+		mTag.writePage(DATA_PAGE + page, data);
+	}
+}
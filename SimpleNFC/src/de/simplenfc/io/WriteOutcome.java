@@ -0,0 +1,20 @@
+package de.simplenfc.io;
+
+/**
+ * Outcome of a successful write, see {@link de.simplenfc.listener.NfcWriteOutcomeListener}.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public enum WriteOutcome {
+	/** The tag already held the message and was not written. */
+	SKIPPED,
+	/** The message was written. */
+	WRITTEN,
+	/** The message was written and read back identically. */
+	VERIFIED,
+	/** The message was written, but the tag returned different content. */
+	MISMATCH
+}
@@ -0,0 +1,44 @@
+package de.simplenfc.io;
+
+/**
+ * Policy of a write, see {@link de.simplenfc.Nfc#writeToTag(de.simplenfc.entity.NfcMessage, de.simplenfc.listener.NfcWriteListener, de.simplenfc.compress.Compression, WritePolicy)}.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public enum WritePolicy {
+	/** Always writes the message. */
+	OVERWRITE(false, false),
+	/** Skips the write if the tag already holds exactly the message. */
+	SKIP_IF_IDENTICAL(true, false),
+	/** Reads the tag back after writing and compares it with the message. */
+	VERIFY(false, true),
+	/** Combines {@link #SKIP_IF_IDENTICAL} and {@link #VERIFY}. */
+	SKIP_IF_IDENTICAL_AND_VERIFY(true, true);
+	
+	private final boolean mSkipIfIdentical;
+	private final boolean mVerify;
+	
+	
+	private WritePolicy(boolean skipIfIdentical, boolean verify){
+		mSkipIfIdentical = skipIfIdentical;
+		mVerify = verify;
+	}
+	
+	
+	/**
+	 * @return True if identical tags are not written.
+	 */
+	public boolean skipsIfIdentical(){
+		return mSkipIfIdentical;
+	}
+	
+	/**
+	 * @return True if written tags are read back.
+	 */
+	public boolean verifies(){
+		return mVerify;
+	}
+}
@@ -0,0 +1,34 @@
+package de.simplenfc.listener;
+
+/**
+ * Interface for the NfcBatchListener. Methods for handling the progress of a batch of writes.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface NfcBatchListener {
+	
+	/**
+	 * Writing the message with the given index succeeded.
+	 * @param index Index of the written message, starting with 0.
+	 */
+	public void onNfcMessageWritten(int index);
+	
+	
+	/**
+	 * Writing the message with the given index failed, it will be written to the next tag.
+	 * @param index Index of the message, starting with 0.
+	 * @param e Thrown exception, e.g. {@link de.simplenfc.entity.exceptions.ReadOnlyException}.
+	 */
+	public void onNfcException(int index, Exception e);
+	
+	
+	/**
+	 * All messages have been written, the batch is finished.
+	 * @param written Number of written tags.
+	 * @param failed Number of failed attempts.
+	 */
+	public void onNfcBatchFinished(int written, int failed);
+}
@@ -4,7 +4,6 @@ import java.io.IOException;
 
 import android.nfc.FormatException;
 
-import de.simplenfc.R;
 import de.simplenfc.entity.exceptions.LowCapacityException;
 import de.simplenfc.entity.exceptions.NDEFException;
 import de.simplenfc.entity.exceptions.NfcDisabledException;
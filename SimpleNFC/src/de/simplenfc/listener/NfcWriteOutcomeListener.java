@@ -0,0 +1,21 @@
+package de.simplenfc.listener;
+
+import de.simplenfc.io.WriteOutcome;
+
+/**
+ * Extension of the {@link NfcWriteListener}, which receives the {@link WriteOutcome} of a write instead of
+ * {@link NfcWriteListener#onNfcMessageWritten()}.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface NfcWriteOutcomeListener extends NfcWriteListener {
+	
+	/**
+	 * Called if the write completed.
+	 * @param outcome Whether the tag was skipped, written or verified, or held different content after writing.
+	 */
+	public void onNfcMessageWritten(WriteOutcome outcome);
+}
@@ -0,0 +1,30 @@
+package de.simplenfc.listener.adapter;
+
+import de.simplenfc.listener.NfcBatchListener;
+
+/**
+ * Adapter for the interface {@link NfcBatchListener}. All implemented methods
+ * are stubs without any function.
+ * 
+ */
+public abstract class NfcBatchAdapter implements NfcBatchListener {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNfcMessageWritten(int index) {}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNfcException(int index, Exception e) {}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNfcBatchFinished(int written, int failed) {}
+
+}
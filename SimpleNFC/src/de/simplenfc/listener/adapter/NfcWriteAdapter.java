@@ -13,9 +13,12 @@ import de.simplenfc.entity.exceptions.LowCapacityException;
 import de.simplenfc.entity.exceptions.NDEFException;
 import de.simplenfc.entity.exceptions.NfcDisabledException;
 import de.simplenfc.entity.exceptions.ReadOnlyException;
+import de.simplenfc.entity.exceptions.VerificationException;
+import de.simplenfc.io.WriteOutcome;
 import de.simplenfc.listener.NfcWriteListener;
+import de.simplenfc.listener.NfcWriteOutcomeListener;
 
-public abstract class NfcWriteAdapter implements NfcWriteListener {
+public abstract class NfcWriteAdapter implements NfcWriteOutcomeListener {
 
 	/**
 	 * {@inheritDoc}
@@ -59,4 +62,17 @@ public abstract class NfcWriteAdapter implements NfcWriteListener {
 	@Override
 	public void onNfcMessageWritten() {}
 
+	/**
+	 * Calls {@link #onNfcMessageWritten()}, or {@link #onNfcException(IOException)} with a
+	 * {@link VerificationException} on {@link WriteOutcome#MISMATCH}.
+	 */
+	@Override
+	public void onNfcMessageWritten(WriteOutcome outcome) {
+		if(outcome == WriteOutcome.MISMATCH){
+			this.onNfcException(new VerificationException());
+		}else{
+			this.onNfcMessageWritten();
+		}
+	}
+
 }
@@ -0,0 +1,121 @@
+package de.simplenfc.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative values with logarithmic buckets. Every power of two is split into 16 buckets,
+ * so percentiles are accurate to about 6 percent at constant memory.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class Histogram {
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+	
+	private final long[] mCounts = new long[BUCKETS];
+	private long mCount;
+	private long mSum;
+	private long mMin = Long.MAX_VALUE;
+	private long mMax;
+	
+	
+	/**
+	 * @param value Value to record, negative values are recorded as 0.
+	 */
+	public synchronized void record(long value){
+		if(value < 0) value = 0;
+		
+		mCounts[index(value)]++;
+		mCount++;
+		mSum += value;
+		if(value < mMin) mMin = value;
+		if(value > mMax) mMax = value;
+	}
+	
+	/**
+	 * @return Number of recorded values.
+	 */
+	public synchronized long getCount(){
+		return mCount;
+	}
+	
+	/**
+	 * @return Smallest recorded value, 0 if empty.
+	 */
+	public synchronized long getMin(){
+		return mCount == 0 ? 0 : mMin;
+	}
+	
+	/**
+	 * @return Largest recorded value, 0 if empty.
+	 */
+	public synchronized long getMax(){
+		return mMax;
+	}
+	
+	/**
+	 * @return Mean of the recorded values, 0 if empty.
+	 */
+	public synchronized double getMean(){
+		return mCount == 0 ? 0 : (double) mSum / mCount;
+	}
+	
+	/**
+	 * @param percentile Percentile between 0 and 100, e.g. 99.
+	 * @return Upper bound of the bucket holding the percentile, at most the largest recorded value. 0 if empty.
+	 */
+	public synchronized long getPercentile(double percentile){
+		if(mCount == 0) return 0;
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+		long seen = 0;
+		for(int i=0; i<BUCKETS; i++){
+			seen += mCounts[i];
+			if(seen >= rank) return Math.min(upperBound(i), mMax);
+		}
+		return mMax;
+	}
+	
+	/**
+	 * Removes all recorded values.
+	 */
+	public synchronized void reset(){
+		Arrays.fill(mCounts, 0);
+		mCount = 0;
+		mSum = 0;
+		mMin = Long.MAX_VALUE;
+		mMax = 0;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "Histogram(count: "+mCount+", min: "+this.getMin()+", p50: "+this.getPercentile(50)+", p90: "+this.getPercentile(90)
+				+", p99: "+this.getPercentile(99)+", max: "+mMax+")";
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private static int index(long value){
+		if(value < SUB_BUCKETS) return (int) value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	private static long upperBound(int index){
+		if(index < SUB_BUCKETS) return index;
+		
+		int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = index % SUB_BUCKETS;
+		long lower = (SUB_BUCKETS | sub) << (exponent - SUB_BITS);
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
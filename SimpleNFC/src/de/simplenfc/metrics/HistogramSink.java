@@ -0,0 +1,99 @@
+package de.simplenfc.metrics;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link MetricsSink} which keeps a {@link Histogram} per {@link Stage}, counters per exception type and
+ * histograms of message sizes and of the headroom left on the tag. An application reads and resets it
+ * periodically, e.g. to upload percentiles together with the device model.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class HistogramSink implements MetricsSink {
+	private final EnumMap<Stage, Histogram> mTimings = new EnumMap<Stage, Histogram>(Stage.class);
+	private final HashMap<String, Long> mExceptions = new HashMap<String, Long>();
+	private final Histogram mSizes = new Histogram();
+	private final Histogram mHeadroom = new Histogram();
+	
+	
+	/**
+	 * Constructs an empty sink.
+	 */
+	public HistogramSink(){
+		for(Stage stage : Stage.values()){
+			mTimings.put(stage, new Histogram());
+		}
+	}
+	
+	
+	@Override
+	public void onTiming(Stage stage, long nanos) {
+		mTimings.get(stage).record(nanos);
+	}
+	
+	@Override
+	public void onException(Class<? extends Exception> type) {
+		String name = type.getSimpleName();
+		synchronized (mExceptions) {
+			Long count = mExceptions.get(name);
+			mExceptions.put(name, count == null ? 1 : count + 1);
+		}
+	}
+	
+	@Override
+	public void onMessageSize(int size, int capacity) {
+		mSizes.record(size);
+		mHeadroom.record(capacity - size);
+	}
+	
+	
+	/**
+	 * @param stage The stage.
+	 * @return Durations of the stage in nanoseconds.
+	 */
+	public Histogram getTimings(Stage stage){
+		return mTimings.get(stage);
+	}
+	
+	/**
+	 * @return Copy of the number of exceptions by simple class name.
+	 */
+	public Map<String, Long> getExceptionCounts(){
+		synchronized (mExceptions) {
+			return new HashMap<String, Long>(mExceptions);
+		}
+	}
+	
+	/**
+	 * @return Encoded sizes of written messages in bytes.
+	 */
+	public Histogram getMessageSizes(){
+		return mSizes;
+	}
+	
+	/**
+	 * @return Bytes left on the tag after writing, 0 for messages which had to be compressed to fit.
+	 */
+	public Histogram getHeadroom(){
+		return mHeadroom;
+	}
+	
+	/**
+	 * Removes all measurements.
+	 */
+	public void reset(){
+		for(Histogram histogram : mTimings.values()){
+			histogram.reset();
+		}
+		synchronized (mExceptions) {
+			mExceptions.clear();
+		}
+		mSizes.reset();
+		mHeadroom.reset();
+	}
+}
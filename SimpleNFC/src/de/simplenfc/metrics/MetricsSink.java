@@ -0,0 +1,30 @@
+package de.simplenfc.metrics;
+
+/**
+ * Receives the measurements of {@link NfcMetrics}. Methods are called on the thread of the measured stage,
+ * including the main thread, so they should only record and return.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public interface MetricsSink {
+	
+	/**
+	 * @param stage The measured stage.
+	 * @param nanos Duration of the stage in nanoseconds.
+	 */
+	public void onTiming(Stage stage, long nanos);
+	
+	/**
+	 * @param type Type of an exception reported to the application.
+	 */
+	public void onException(Class<? extends Exception> type);
+	
+	/**
+	 * @param size Encoded size of a message written to a tag, in bytes.
+	 * @param capacity Capacity of the tag in bytes.
+	 */
+	public void onMessageSize(int size, int capacity);
+}
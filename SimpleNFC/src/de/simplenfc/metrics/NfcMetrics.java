@@ -0,0 +1,82 @@
+package de.simplenfc.metrics;
+
+/**
+ * Entry point for measurements of the library. Without a sink nothing is measured: {@link #start()} returns
+ * without reading the clock and the other methods return immediately.
+ * <pre>
+ * long start = NfcMetrics.start();
+ * ...
+ * NfcMetrics.stop(Stage.WRITE, start);
+ * </pre>
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class NfcMetrics {
+	private static final long NOT_STARTED = 0;
+	
+	private static volatile MetricsSink sSink;
+	
+	
+	private NfcMetrics(){}
+	
+	
+	/**
+	 * @param sink Sink for all further measurements, e.g. a {@link HistogramSink}, or null to stop measuring.
+	 */
+	public static void setSink(MetricsSink sink){
+		sSink = sink;
+	}
+	
+	/**
+	 * @return The current sink or null.
+	 */
+	public static MetricsSink getSink(){
+		return sSink;
+	}
+	
+	
+	/**
+	 * @return Start time of a stage for {@link #stop(Stage, long)}.
+	 */
+	public static long start(){
+		return sSink == null ? NOT_STARTED : System.nanoTime();
+	}
+	
+	/**
+	 * Records the duration of a stage.
+	 * @param stage The stage.
+	 * @param start Value of {@link #start()} at the beginning of the stage.
+	 */
+	public static void stop(Stage stage, long start){
+		MetricsSink sink = sSink;
+		if(sink == null || start == NOT_STARTED) return;
+		
+		sink.onTiming(stage, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Counts an exception reported to the application.
+	 * @param e The exception.
+	 */
+	public static void exception(Exception e){
+		MetricsSink sink = sSink;
+		if(sink == null || e == null) return;
+		
+		sink.onException(e.getClass());
+	}
+	
+	/**
+	 * Records the size of a message written to a tag.
+	 * @param size Encoded size of the message in bytes.
+	 * @param capacity Capacity of the tag in bytes.
+	 */
+	public static void messageSize(int size, int capacity){
+		MetricsSink sink = sSink;
+		if(sink == null) return;
+		
+		sink.onMessageSize(size, capacity);
+	}
+}
@@ -0,0 +1,24 @@
+package de.simplenfc.metrics;
+
+/**
+ * Stages of a tap for which {@link NfcMetrics} records timings.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public enum Stage {
+	/** From the discovery intent arriving at the {@link de.simplenfc.activity.NfcConnector} until its result is dispatched. */
+	DISPATCH,
+	/** Connecting a technology of the tag. */
+	CONNECT,
+	/** Reading a message from the tag, e.g. for verification. */
+	READ,
+	/** Writing or formatting the tag, including the connection of the written technology. */
+	WRITE,
+	/** Parsing the read NDEF-messages. */
+	PARSE,
+	/** From posting a result to the {@link de.simplenfc.event.NfcEventBus} until its receivers returned. */
+	DELIVERY
+}
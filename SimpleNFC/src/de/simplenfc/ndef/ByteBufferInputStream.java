@@ -0,0 +1,90 @@
+package de.simplenfc.ndef;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} over the bytes between position and limit of one or more buffers, read in order.
+ * The buffers are read directly, so no bytes are copied into an intermediate array. Positions of the
+ * given buffers are not changed, but they must not be modified while the stream is in use.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer[] mBuffers;
+	private int mCurrent;
+
+
+	/**
+	 * @param buffers Buffers which are read one after another.
+	 */
+	public ByteBufferInputStream(ByteBuffer... buffers){
+		mBuffers = new ByteBuffer[buffers.length];
+		for(int i=0; i<buffers.length; i++){
+			mBuffers[i] = buffers[i].duplicate();
+		}
+	}
+
+
+	@Override
+	public int read() {
+		ByteBuffer buffer = this.current();
+		if(buffer == null) return -1;
+
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if(len == 0) return 0;
+
+		int count = 0;
+		ByteBuffer buffer;
+		while(count < len && (buffer = this.current()) != null){
+			int length = Math.min(len - count, buffer.remaining());
+			buffer.get(b, off + count, length);
+			count += length;
+		}
+		return count == 0 ? -1 : count;
+	}
+
+	@Override
+	public long skip(long n) {
+		long count = 0;
+		ByteBuffer buffer;
+		while(count < n && (buffer = this.current()) != null){
+			int length = (int) Math.min(n - count, buffer.remaining());
+			buffer.position(buffer.position() + length);
+			count += length;
+		}
+		return count;
+	}
+
+	@Override
+	public int available() {
+		long available = 0;
+		for(int i=mCurrent; i<mBuffers.length; i++){
+			available += mBuffers[i].remaining();
+		}
+		return (int) Math.min(available, Integer.MAX_VALUE);
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	/**
+	 * @return The first buffer with remaining bytes or null at the end of the stream.
+	 */
+	private ByteBuffer current(){
+		while(mCurrent < mBuffers.length){
+			if(mBuffers[mCurrent].hasRemaining()) return mBuffers[mCurrent];
+			mCurrent++;
+		}
+		return null;
+	}
+}
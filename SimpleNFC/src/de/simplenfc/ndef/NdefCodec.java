@@ -0,0 +1,366 @@
+package de.simplenfc.ndef;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+
+/**
+ * Platform independent encoder and decoder for NDEF-messages as specified by the NFC Forum.
+ * Messages are read from and written to {@link ByteBuffer}s directly, decoded records are
+ * returned as {@link NdefRecordView}s over the original bytes. Supports the short-record,
+ * ID-length and chunk flags.
+ * <p>
+ * The encoder produces the same layout as android.nfc.NdefRecord: short-records are used
+ * for payloads up to 255 bytes and the ID-length field is only present for non-empty IDs.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class NdefCodec {
+	public static final short TNF_EMPTY = 0x00;
+	public static final short TNF_WELL_KNOWN = 0x01;
+	public static final short TNF_MIME_MEDIA = 0x02;
+	public static final short TNF_ABSOLUTE_URI = 0x03;
+	public static final short TNF_EXTERNAL_TYPE = 0x04;
+	public static final short TNF_UNKNOWN = 0x05;
+	public static final short TNF_UNCHANGED = 0x06;
+
+	static final int FLAG_MB = 0x80;
+	static final int FLAG_ME = 0x40;
+	static final int FLAG_CF = 0x20;
+	static final int FLAG_SR = 0x10;
+	static final int FLAG_IL = 0x08;
+	static final int TNF_MASK = 0x07;
+
+	private static final int MAX_SHORT_PAYLOAD = 0xFF;
+	/** Length of {@link #emptyMessage()}. */
+	public static final int EMPTY_MESSAGE_LENGTH = 3;
+
+	private static final byte[] EMPTY_MESSAGE = new byte[]{(byte) (FLAG_MB | FLAG_ME | FLAG_SR), 0x00, 0x00};
+	private static final NdefRecordView[] NO_RECORDS = new NdefRecordView[0];
+
+
+	private NdefCodec(){}
+
+
+	/* **************************************** */
+	/* ************** decoding **************** */
+	/* **************************************** */
+
+	/**
+	 * Decodes all records between position and limit of the given buffer. Neither position nor
+	 * limit of the buffer are changed and no record-data is copied.
+	 * @param buffer Buffer holding exactly one encoded NDEF-message.
+	 * @return Views of all records in order of appearance.
+	 * @throws MalformedNdefException If the bytes violate the NDEF-specification.
+	 */
+	public static NdefRecordView[] decode(ByteBuffer buffer) throws MalformedNdefException{
+		int offset = buffer.position();
+		int limit = buffer.limit();
+		if(offset == limit) return NO_RECORDS;
+
+		ArrayList<NdefRecordView> records = new ArrayList<NdefRecordView>();
+		boolean messageEnd = false;
+
+		while(offset < limit){
+			if(messageEnd) throw new MalformedNdefException("data after message end");
+
+			int recordOffset = offset;
+			int header = buffer.get(offset) & 0xFF;
+			short tnf = (short) (header & TNF_MASK);
+
+			if(records.isEmpty() && (header & FLAG_MB) == 0) throw new MalformedNdefException("first record without message begin");
+			if(!records.isEmpty() && (header & FLAG_MB) != 0) throw new MalformedNdefException("unexpected message begin");
+			if(tnf == TNF_UNCHANGED) throw new MalformedNdefException("unexpected TNF_UNCHANGED");
+			if(tnf == 0x07) throw new MalformedNdefException("reserved TNF");
+
+			int typeLength = unsigned(buffer, offset + 1, 1, limit);
+			int payloadLength;
+			int idLength = 0;
+			offset += 2;
+
+			if((header & FLAG_SR) != 0){
+				payloadLength = unsigned(buffer, offset, 1, limit);
+				offset += 1;
+			}else{
+				payloadLength = unsigned(buffer, offset, 4, limit);
+				offset += 4;
+			}
+			if((header & FLAG_IL) != 0){
+				idLength = unsigned(buffer, offset, 1, limit);
+				offset += 1;
+			}
+
+			int typeOffset = offset;
+			int idOffset = typeOffset + typeLength;
+			int payloadOffset = idOffset + idLength;
+			offset = checkBounds(payloadOffset, payloadLength, limit);
+
+			if(tnf == TNF_EMPTY && (typeLength != 0 || idLength != 0 || payloadLength != 0)){
+				throw new MalformedNdefException("TNF_EMPTY with data");
+			}
+
+			int lastHeaderOffset = recordOffset;
+			int[] chunks = null;
+			int totalPayloadLength = payloadLength;
+
+			if((header & FLAG_CF) != 0){
+				if((header & FLAG_ME) != 0) throw new MalformedNdefException("chunked record with message end");
+
+				ArrayList<Integer> segments = new ArrayList<Integer>();
+				segments.add(payloadOffset);
+				segments.add(payloadLength);
+
+				int chunkHeader;
+				do{
+					lastHeaderOffset = offset;
+					chunkHeader = unsigned(buffer, offset, 1, limit);
+					if((chunkHeader & TNF_MASK) != TNF_UNCHANGED) throw new MalformedNdefException("chunk without TNF_UNCHANGED");
+					if((chunkHeader & FLAG_MB) != 0) throw new MalformedNdefException("chunk with message begin");
+					if((chunkHeader & FLAG_IL) != 0) throw new MalformedNdefException("chunk with ID");
+					if(unsigned(buffer, offset + 1, 1, limit) != 0) throw new MalformedNdefException("chunk with type");
+					offset += 2;
+
+					int chunkLength;
+					if((chunkHeader & FLAG_SR) != 0){
+						chunkLength = unsigned(buffer, offset, 1, limit);
+						offset += 1;
+					}else{
+						chunkLength = unsigned(buffer, offset, 4, limit);
+						offset += 4;
+					}
+
+					segments.add(offset);
+					segments.add(chunkLength);
+					totalPayloadLength += chunkLength;
+					if(totalPayloadLength < 0) throw new MalformedNdefException("payload too large");
+					offset = checkBounds(offset, chunkLength, limit);
+				}while((chunkHeader & FLAG_CF) != 0);
+
+				header |= chunkHeader & FLAG_ME;
+				chunks = new int[segments.size()];
+				for(int i=0; i<chunks.length; i++){
+					chunks[i] = segments.get(i);
+				}
+			}
+
+			messageEnd = (header & FLAG_ME) != 0;
+			records.add(new NdefRecordView(buffer, tnf, recordOffset, offset - recordOffset, lastHeaderOffset,
+					typeOffset, typeLength, idOffset, idLength, payloadOffset, totalPayloadLength, chunks));
+		}
+
+		if(!messageEnd) throw new MalformedNdefException("missing message end");
+
+		return records.toArray(new NdefRecordView[records.size()]);
+	}
+
+
+	/* **************************************** */
+	/* ************** encoding **************** */
+	/* **************************************** */
+
+	/**
+	 * Calculates the number of bytes of an unchunked record without encoding it.
+	 * @param typeLength Length of the type field.
+	 * @param idLength Length of the ID field.
+	 * @param payloadLength Length of the payload.
+	 * @return Encoded size in bytes.
+	 */
+	public static int recordSize(int typeLength, int idLength, int payloadLength){
+		int size = 2 + typeLength + payloadLength;
+		size += payloadLength <= MAX_SHORT_PAYLOAD ? 1 : 4;
+		if(idLength > 0) size += 1 + idLength;
+		return size;
+	}
+
+	/**
+	 * Calculates the number of bytes of a record that is split into chunks of at most chunkSize bytes.
+	 * @param typeLength Length of the type field.
+	 * @param idLength Length of the ID field.
+	 * @param payloadLength Length of the payload.
+	 * @param chunkSize Maximum payload length of a single chunk.
+	 * @return Encoded size in bytes.
+	 */
+	public static int chunkedRecordSize(int typeLength, int idLength, int payloadLength, int chunkSize){
+		if(payloadLength <= chunkSize) return recordSize(typeLength, idLength, payloadLength);
+
+		int size = recordSize(typeLength, idLength, chunkSize);
+		for(int remaining = payloadLength - chunkSize; remaining > 0; remaining -= chunkSize){
+			size += recordSize(0, 0, Math.min(remaining, chunkSize));
+		}
+		return size;
+	}
+
+	/**
+	 * Writes a single unchunked record at the current position of the given buffer.
+	 * @param out Target buffer, must have at least {@link #recordSize(int, int, int)} bytes remaining.
+	 * @param tnf The 3-bit TNF.
+	 * @param type Type field, must not be null.
+	 * @param id ID field, must not be null.
+	 * @param payload Payload between position and limit, may be null. Its position is not changed.
+	 * @param messageBegin True for the first record of a message.
+	 * @param messageEnd True for the last record of a message.
+	 */
+	public static void writeRecord(ByteBuffer out, short tnf, byte[] type, byte[] id, ByteBuffer payload,
+			boolean messageBegin, boolean messageEnd){
+		int payloadLength = payload == null ? 0 : payload.remaining();
+		writeHeader(out, tnf, type, id, payloadLength, messageBegin, messageEnd, false);
+		if(payload != null) out.put(payload.duplicate());
+	}
+
+	/**
+	 * Writes the header, type and ID of a single unchunked record at the current position of the given buffer.
+	 * The caller has to put exactly payloadLength bytes of payload afterwards.
+	 * @param out Target buffer, must have at least {@link #recordSize(int, int, int)} bytes remaining.
+	 * @param tnf The 3-bit TNF.
+	 * @param type Type field, must not be null.
+	 * @param id ID field, must not be null.
+	 * @param payloadLength Length of the payload which follows.
+	 * @param messageBegin True for the first record of a message.
+	 * @param messageEnd True for the last record of a message.
+	 */
+	public static void writeRecordHeader(ByteBuffer out, short tnf, byte[] type, byte[] id, int payloadLength,
+			boolean messageBegin, boolean messageEnd){
+		writeHeader(out, tnf, type, id, payloadLength, messageBegin, messageEnd, false);
+	}
+
+	/**
+	 * Writes a record split into chunks of at most chunkSize payload bytes at the current position
+	 * of the given buffer.
+	 * @param out Target buffer, must have at least {@link #chunkedRecordSize(int, int, int, int)} bytes remaining.
+	 * @param tnf The 3-bit TNF.
+	 * @param type Type field, must not be null.
+	 * @param id ID field, must not be null.
+	 * @param payload Payload between position and limit. Its position is not changed.
+	 * @param chunkSize Maximum payload length of a single chunk, must be positive.
+	 * @param messageBegin True for the first record of a message.
+	 * @param messageEnd True for the last record of a message.
+	 */
+	public static void writeChunkedRecord(ByteBuffer out, short tnf, byte[] type, byte[] id, ByteBuffer payload,
+			int chunkSize, boolean messageBegin, boolean messageEnd){
+		if(chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+		if(payload.remaining() <= chunkSize){
+			writeRecord(out, tnf, type, id, payload, messageBegin, messageEnd);
+			return;
+		}
+
+		ByteBuffer chunk = payload.duplicate();
+		int end = chunk.limit();
+		boolean first = true;
+		while(chunk.position() < end){
+			int length = Math.min(chunkSize, end - chunk.position());
+			boolean last = chunk.position() + length == end;
+			chunk.limit(chunk.position() + length);
+
+			if(first){
+				writeHeader(out, tnf, type, id, length, messageBegin, false, true);
+			}else{
+				writeHeader(out, TNF_UNCHANGED, null, null, length, false, messageEnd && last, !last);
+			}
+			out.put(chunk);
+			chunk.limit(end);
+			first = false;
+		}
+	}
+
+	/**
+	 * Encodes a message consisting of a single record.
+	 * @param tnf The 3-bit TNF.
+	 * @param type Type field, must not be null.
+	 * @param id ID field, must not be null.
+	 * @param payload Payload, must not be null.
+	 * @return Buffer holding the encoded message, positioned at 0.
+	 */
+	public static ByteBuffer encodeRecord(short tnf, byte[] type, byte[] id, byte[] payload){
+		ByteBuffer out = ByteBuffer.allocate(recordSize(type.length, id.length, payload.length));
+		writeRecord(out, tnf, type, id, ByteBuffer.wrap(payload), true, true);
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Appends a record to an already encoded message. The existing records are copied as they are,
+	 * only the message-end flag of the former last record is cleared.
+	 * @param message Encoded message between position and limit, may be empty.
+	 * @param last View of the last record of the message or null if the message is empty.
+	 * @param tnf The 3-bit TNF.
+	 * @param type Type field, must not be null.
+	 * @param id ID field, must not be null.
+	 * @param payload Payload between position and limit, may be null.
+	 * @return New buffer holding the extended message, positioned at 0.
+	 */
+	public static ByteBuffer appendRecord(ByteBuffer message, NdefRecordView last, short tnf, byte[] type, byte[] id, ByteBuffer payload){
+		int payloadLength = payload == null ? 0 : payload.remaining();
+		ByteBuffer out = ByteBuffer.allocate(message.remaining() + recordSize(type.length, id.length, payloadLength));
+		out.put(message.duplicate());
+
+		if(last != null){
+			int headerOffset = last.mLastHeaderOffset - message.position();
+			out.put(headerOffset, (byte) (out.get(headerOffset) & ~FLAG_ME));
+		}
+
+		writeRecord(out, tnf, type, id, payload, last == null, true);
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * @return A new array holding the NDEF-message without records (a single TNF_EMPTY record).
+	 */
+	public static byte[] emptyMessage(){
+		return EMPTY_MESSAGE.clone();
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	private static void writeHeader(ByteBuffer out, short tnf, byte[] type, byte[] id, int payloadLength,
+			boolean messageBegin, boolean messageEnd, boolean chunked){
+		int typeLength = type == null ? 0 : type.length;
+		int idLength = id == null ? 0 : id.length;
+		if(typeLength > 0xFF) throw new IllegalArgumentException("type is longer than 255 bytes");
+		if(idLength > 0xFF) throw new IllegalArgumentException("id is longer than 255 bytes");
+
+		int header = tnf & TNF_MASK;
+		if(messageBegin) header |= FLAG_MB;
+		if(messageEnd) header |= FLAG_ME;
+		if(chunked) header |= FLAG_CF;
+		if(payloadLength <= MAX_SHORT_PAYLOAD) header |= FLAG_SR;
+		if(idLength > 0) header |= FLAG_IL;
+
+		out.put((byte) header);
+		out.put((byte) typeLength);
+		if(payloadLength <= MAX_SHORT_PAYLOAD){
+			out.put((byte) payloadLength);
+		}else{
+			out.put((byte) (payloadLength >>> 24));
+			out.put((byte) (payloadLength >>> 16));
+			out.put((byte) (payloadLength >>> 8));
+			out.put((byte) payloadLength);
+		}
+		if(idLength > 0) out.put((byte) idLength);
+		if(typeLength > 0) out.put(type);
+		if(idLength > 0) out.put(id);
+	}
+
+	private static int unsigned(ByteBuffer buffer, int offset, int length, int limit) throws MalformedNdefException{
+		if(offset + length > limit) throw new MalformedNdefException("unexpected end of data");
+
+		if(length == 1) return buffer.get(offset) & 0xFF;
+
+		int value = (buffer.get(offset) & 0xFF) << 24 | (buffer.get(offset + 1) & 0xFF) << 16
+				| (buffer.get(offset + 2) & 0xFF) << 8 | (buffer.get(offset + 3) & 0xFF);
+		if(value < 0) throw new MalformedNdefException("payload too large");
+		return value;
+	}
+
+	private static int checkBounds(int offset, int length, int limit) throws MalformedNdefException{
+		if(length < 0 || offset + length > limit || offset + length < 0) throw new MalformedNdefException("unexpected end of data");
+		return offset + length;
+	}
+}
@@ -0,0 +1,291 @@
+package de.simplenfc.ndef;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Read-only view of a single NDEF-record inside an encoded NDEF-message. The view only stores
+ * offsets into the buffer it was decoded from, so type, ID and payload are never copied unless
+ * one of the copy-methods is called. Chunked records are presented as one logical record.
+ * <p>
+ * Views are created by {@link NdefCodec#decode(ByteBuffer)}. The underlying buffer must not be
+ * modified as long as views over it are in use.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class NdefRecordView {
+	private static final byte[] EMPTY = new byte[0];
+
+	private final ByteBuffer mBuffer;
+	private final short mTnf;
+	private final int mOffset;
+	private final int mLength;
+	final int mLastHeaderOffset;
+	private final int mTypeOffset;
+	private final int mTypeLength;
+	private final int mIdOffset;
+	private final int mIdLength;
+	private final int mPayloadOffset;
+	private final int mPayloadLength;
+	private final int[] mChunks;
+
+
+	NdefRecordView(ByteBuffer buffer, short tnf, int offset, int length, int lastHeaderOffset,
+			int typeOffset, int typeLength, int idOffset, int idLength,
+			int payloadOffset, int payloadLength, int[] chunks){
+		mBuffer = buffer;
+		mTnf = tnf;
+		mOffset = offset;
+		mLength = length;
+		mLastHeaderOffset = lastHeaderOffset;
+		mTypeOffset = typeOffset;
+		mTypeLength = typeLength;
+		mIdOffset = idOffset;
+		mIdLength = idLength;
+		mPayloadOffset = payloadOffset;
+		mPayloadLength = payloadLength;
+		mChunks = chunks;
+	}
+
+
+	/**
+	 * @return The 3-bit TNF of the record.
+	 */
+	public short getTnf(){
+		return mTnf;
+	}
+
+	/**
+	 * @return True if the record was encoded as a sequence of chunks.
+	 */
+	public boolean isChunked(){
+		return mChunks != null;
+	}
+
+	/**
+	 * @return Absolute offset of the first header byte inside the underlying buffer.
+	 */
+	public int getOffset(){
+		return mOffset;
+	}
+
+	/**
+	 * @return Number of encoded bytes of the record including all chunks.
+	 */
+	public int getLength(){
+		return mLength;
+	}
+
+	/**
+	 * @return Length of the type field in bytes.
+	 */
+	public int getTypeLength(){
+		return mTypeLength;
+	}
+
+	/**
+	 * @return Length of the ID field in bytes.
+	 */
+	public int getIdLength(){
+		return mIdLength;
+	}
+
+	/**
+	 * @return Length of the (reassembled) payload in bytes.
+	 */
+	public int getPayloadLength(){
+		return mPayloadLength;
+	}
+
+
+	/**
+	 * @return Read-only buffer over the type field. No bytes are copied.
+	 */
+	public ByteBuffer getType(){
+		return slice(mTypeOffset, mTypeLength);
+	}
+
+	/**
+	 * @return Read-only buffer over the ID field. No bytes are copied.
+	 */
+	public ByteBuffer getId(){
+		return slice(mIdOffset, mIdLength);
+	}
+
+	/**
+	 * Returns the payload of the record. For unchunked records this is a read-only buffer over the
+	 * original bytes, chunked records have to be reassembled into a new buffer.
+	 * @return Read-only buffer over the payload.
+	 */
+	public ByteBuffer getPayload(){
+		if(mChunks == null) return slice(mPayloadOffset, mPayloadLength);
+
+		return ByteBuffer.wrap(copyPayload()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Opens a stream over the payload. Other than {@link #getPayload()} chunked records are read chunk by
+	 * chunk from the original bytes, so no bytes are copied.
+	 * @return Stream over the (reassembled) payload.
+	 */
+	public InputStream openPayloadStream(){
+		if(mChunks == null) return new ByteBufferInputStream(slice(mPayloadOffset, mPayloadLength));
+
+		ByteBuffer[] chunks = new ByteBuffer[mChunks.length / 2];
+		for(int i=0; i<chunks.length; i++){
+			chunks[i] = slice(mChunks[2*i], mChunks[2*i+1]);
+		}
+		return new ByteBufferInputStream(chunks);
+	}
+
+
+	/**
+	 * @return A copy of the type field.
+	 */
+	public byte[] copyType(){
+		return copy(mTypeOffset, mTypeLength);
+	}
+
+	/**
+	 * @return A copy of the ID field.
+	 */
+	public byte[] copyId(){
+		return copy(mIdOffset, mIdLength);
+	}
+
+	/**
+	 * @return A copy of the (reassembled) payload.
+	 */
+	public byte[] copyPayload(){
+		if(mChunks == null) return copy(mPayloadOffset, mPayloadLength);
+
+		byte[] payload = new byte[mPayloadLength];
+		ByteBuffer source = mBuffer.duplicate();
+		int position = 0;
+		for(int i=0; i<mChunks.length; i+=2){
+			source.limit(mChunks[i] + mChunks[i+1]);
+			source.position(mChunks[i]);
+			source.get(payload, position, mChunks[i+1]);
+			position += mChunks[i+1];
+		}
+		return payload;
+	}
+
+
+	/**
+	 * Compares the type field byte by byte without copying it.
+	 * @param type Expected type.
+	 * @return True if the type field equals the given bytes.
+	 */
+	public boolean typeEquals(byte[] type){
+		return regionEquals(mTypeOffset, mTypeLength, type);
+	}
+
+	/**
+	 * Compares the type field from the given offset to its end byte by byte without copying it.
+	 * @param from Offset inside the type field.
+	 * @param type Expected bytes.
+	 * @return True if the type field equals the given bytes from offset on.
+	 */
+	public boolean typeEquals(int from, byte[] type){
+		if(from > mTypeLength) return false;
+		return regionEquals(mTypeOffset + from, mTypeLength - from, type);
+	}
+
+	/**
+	 * Checks the beginning of the type field byte by byte without copying it.
+	 * @param prefix Expected prefix.
+	 * @return True if the type field starts with the given bytes.
+	 */
+	public boolean typeStartsWith(byte[] prefix){
+		if(prefix.length > mTypeLength) return false;
+		return regionEquals(mTypeOffset, prefix.length, prefix);
+	}
+
+	/**
+	 * Compares the ID field byte by byte without copying it.
+	 * @param id Expected ID.
+	 * @return True if the ID field equals the given bytes.
+	 */
+	public boolean idEquals(byte[] id){
+		return regionEquals(mIdOffset, mIdLength, id);
+	}
+
+
+	/**
+	 * @param charset Charset to decode the ID with.
+	 * @return The ID decoded as String.
+	 */
+	public String getIdString(Charset charset){
+		return decode(mIdOffset, mIdLength, charset);
+	}
+
+	/**
+	 * @param charset Charset to decode the type with.
+	 * @return The type decoded as String.
+	 */
+	public String getTypeString(Charset charset){
+		return decode(mTypeOffset, mTypeLength, charset);
+	}
+
+	/**
+	 * @param charset Charset to decode the payload with.
+	 * @return The payload decoded as String.
+	 */
+	public String getPayloadString(Charset charset){
+		if(mChunks == null) return decode(mPayloadOffset, mPayloadLength, charset);
+
+		return new String(copyPayload(), charset);
+	}
+
+
+	@Override
+	public String toString() {
+		return "NdefRecordView[tnf=" + mTnf + ", type=" + mTypeLength + "b, id=" + mIdLength
+				+ "b, payload=" + mPayloadLength + "b" + (mChunks != null ? ", chunked" : "") + "]";
+	}
+
+
+	private ByteBuffer slice(int offset, int length){
+		ByteBuffer slice = mBuffer.duplicate();
+		slice.limit(offset + length);
+		slice.position(offset);
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+	private byte[] copy(int offset, int length){
+		if(length == 0) return EMPTY;
+
+		byte[] bytes = new byte[length];
+		if(mBuffer.hasArray()){
+			System.arraycopy(mBuffer.array(), mBuffer.arrayOffset() + offset, bytes, 0, length);
+		}else{
+			for(int i=0; i<length; i++){
+				bytes[i] = mBuffer.get(offset + i);
+			}
+		}
+		return bytes;
+	}
+
+	private String decode(int offset, int length, Charset charset){
+		if(length == 0) return "";
+
+		if(mBuffer.hasArray()){
+			return new String(mBuffer.array(), mBuffer.arrayOffset() + offset, length, charset);
+		}
+		return new String(copy(offset, length), charset);
+	}
+
+	private boolean regionEquals(int offset, int length, byte[] expected){
+		if(expected == null || expected.length != length) return false;
+
+		for(int i=0; i<length; i++){
+			if(mBuffer.get(offset + i) != expected[i]) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,176 @@
+package de.simplenfc.reader;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Intent;
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NfcAdapter;
+import android.nfc.Tag;
+import android.os.Bundle;
+import android.util.Log;
+import de.simplenfc.Nfc;
+import de.simplenfc.activity.WriteRequest;
+import de.simplenfc.chunk.ChunkAssembler;
+import de.simplenfc.chunk.MessageChunker;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+import de.simplenfc.event.NfcEventBus;
+import de.simplenfc.filter.ReadDeduplicator;
+import de.simplenfc.io.AndroidTag;
+import de.simplenfc.io.TagIoEngine;
+import de.simplenfc.io.TagReader;
+import de.simplenfc.io.TagWriter;
+import de.simplenfc.io.WriteOutcome;
+import de.simplenfc.metrics.NfcMetrics;
+import de.simplenfc.metrics.Stage;
+import de.simplenfc.receiver.NfcConnectorStateReceiver;
+import de.simplenfc.receiver.NfcForegroundReceiver;
+
+/**
+ * Handles tags in the reader mode of the platform (API 19) instead of dispatching them to the
+ * {@link de.simplenfc.activity.NfcConnector}. Tags are delivered to {@link #onTagDiscovered(Tag)} on a thread of
+ * the platform, which does the tag I/O directly, so no activity is started and no intent is delivered.
+ * <p>
+ * A pending {@link WriteRequest} is written to the next tag, every other tag is read. Results are posted to the
+ * {@link NfcEventBus} with the same intents as the NfcConnector posts them, so they reach the receivers and
+ * listeners of {@link Nfc} unchanged.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+@TargetApi(19)
+public final class ReaderModeEngine implements NfcAdapter.ReaderCallback {
+	private static final String TAG = "ReaderModeEngine";
+	
+	private final Activity mActivity;
+	private final NfcAdapter mAdapter;
+	private final ReaderOptions mOptions;
+	private final AtomicReference<WriteRequest> mRequest = new AtomicReference<WriteRequest>();
+	
+	
+	/**
+	 * @param activity The resumed activity, reader mode is only active while it is in the foreground.
+	 * @param adapter The adapter of the device.
+	 * @param options Options of the reader mode.
+	 */
+	public ReaderModeEngine(Activity activity, NfcAdapter adapter, ReaderOptions options){
+		mActivity = activity;
+		mAdapter = adapter;
+		mOptions = options;
+	}
+	
+	
+	/**
+	 * Enables the reader mode. Has to be called while the activity is resumed.
+	 * @param request Request to write to the next tag, or null to read tags.
+	 */
+	public void enable(WriteRequest request){
+		if(Nfc.DEBUG)Log.v(TAG, "\tenable reader mode, flags: "+Integer.toHexString(mOptions.getFlags())+", write: "+(request != null));
+		
+		mRequest.set(request);
+		Bundle extras = new Bundle(1);
+		if(mOptions.getPresenceCheckDelay() >= 0){
+			extras.putInt(NfcAdapter.EXTRA_READER_PRESENCE_CHECK_DELAY, mOptions.getPresenceCheckDelay());
+		}
+		mAdapter.enableReaderMode(mActivity, this, mOptions.getFlags(), extras);
+	}
+	
+	/**
+	 * Disables the reader mode and drops a pending write request. Has to be called before the activity is paused.
+	 */
+	public void disable(){
+		mRequest.set(null);
+		mAdapter.disableReaderMode(mActivity);
+	}
+	
+	
+	@Override
+	public void onTagDiscovered(Tag tag) {
+		long received = NfcMetrics.start();
+		
+		WriteRequest request = mRequest.getAndSet(null);
+		if(request != null){
+			this.write(new AndroidTag(tag), request, received);
+		}else{
+			this.read(new AndroidTag(tag), received);
+		}
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private void write(AndroidTag tag, WriteRequest request, long received){
+		Intent intent = new Intent(NfcConnectorStateReceiver.ACTION_STATECHANGED);
+		Bundle b = new Bundle(2);
+		
+		try {
+			WriteOutcome outcome = TagIoEngine.getInstance().executeNow(new TagWriter(tag, request.getMessage(), request.getCompression(), request.getPolicy()));
+			if(Nfc.DEBUG)Log.v(TAG, "\tNdefMessage of "+request.getSize()+" bytes "+outcome.name().toLowerCase());
+			
+			b.putBoolean(NfcConnectorStateReceiver.EXTRA_WRITTEN, true);
+			b.putSerializable(NfcConnectorStateReceiver.EXTRA_OUTCOME, outcome);
+		} catch (Exception e) {
+			Log.e(TAG, String.valueOf(e.getMessage()));
+			NfcMetrics.exception(e);
+			b.putSerializable(NfcConnectorStateReceiver.getExceptionKey(e), e);
+		}
+		
+		this.dispatch(intent.putExtras(b), received);
+	}
+	
+	private void read(AndroidTag tag, long received){
+		ByteBuffer content;
+		try {
+			content = TagIoEngine.getInstance().executeNow(new TagReader(tag));
+		} catch (Exception e) {
+			Log.e(TAG, "read: "+e.getMessage());
+			return;
+		}
+		if(content == null || ReadDeduplicator.getInstance().isDuplicate(tag.getId(), content)) return;
+		
+		Intent intent = new Intent(NfcForegroundReceiver.ACTION_MESSAGE_RECEIVED);
+		Bundle b = new Bundle(1);
+		
+		long start = NfcMetrics.start();
+		try {
+			NfcMessage message = NfcMessage.parse(content);
+			NfcMetrics.stop(Stage.PARSE, start);
+			
+			if(MessageChunker.isChunk(message)){
+				message = ChunkAssembler.getInstance().offer(message);
+				if(message == null) return;
+			}
+			b.putParcelableArray(NfcForegroundReceiver.EXTRA_NFCMESSAGE, new NfcMessage[]{ message });
+		} catch (MalformedNdefException e) {
+			Log.e(TAG, e.getMessage());
+			
+			byte[] bytes = new byte[content.remaining()];
+			content.duplicate().get(bytes);
+			try {
+				b.putParcelableArray(NfcForegroundReceiver.EXTRA_NDEFMESSAGE, new NdefMessage[]{ new NdefMessage(bytes) });
+			} catch (FormatException malformed) {
+				return;
+			}
+		}
+		
+		this.dispatch(intent.putExtras(b), received);
+	}
+	
+	/**
+	 * Hands the intent to the receivers registered by {@link Nfc}, like the {@link de.simplenfc.activity.NfcConnector}.
+	 */
+	private void dispatch(Intent intent, long received){
+		NfcMetrics.stop(Stage.DISPATCH, received);
+		if(!NfcEventBus.getInstance().post(intent)){
+			mActivity.sendBroadcast(intent);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package de.simplenfc.reader;
+
+/**
+ * Options of the reader mode, see {@link de.simplenfc.Nfc#setReaderMode(ReaderOptions)}. The defaults poll for
+ * all NFC technologies, let the platform check for NDEF and use the presence check delay of the platform.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class ReaderOptions {
+	public static final int TECH_NFC_A = 0x1;
+	public static final int TECH_NFC_B = 0x2;
+	public static final int TECH_NFC_F = 0x4;
+	public static final int TECH_NFC_V = 0x8;
+	public static final int TECH_ALL = TECH_NFC_A | TECH_NFC_B | TECH_NFC_F | TECH_NFC_V;
+	
+	// values of NfcAdapter.FLAG_READER_*, which do not exist before API 19
+	private static final int FLAG_SKIP_NDEF_CHECK = 0x80;
+	private static final int FLAG_NO_PLATFORM_SOUNDS = 0x100;
+	
+	private int mTechnologies = TECH_ALL;
+	private boolean mSkipNdefCheck;
+	private boolean mPlatformSounds = true;
+	private int mPresenceCheckDelay = -1;
+	
+	
+	/**
+	 * @param technologies Technologies to poll for, combined of the TECH_ constants. Polling only for the
+	 * technology of the used tags shortens discovery.
+	 * @return These options.
+	 */
+	public ReaderOptions setTechnologies(int technologies){
+		if((technologies & TECH_ALL) == 0 || (technologies & ~TECH_ALL) != 0) throw new IllegalArgumentException("Invalid technologies "+technologies);
+		mTechnologies = technologies;
+		return this;
+	}
+	
+	/**
+	 * @param skip True to skip the NDEF check of the platform. Type 2 tags are then read page by page by the library,
+	 * which saves the round trips of the check. Other tags are not read.
+	 * @return These options.
+	 */
+	public ReaderOptions setSkipNdefCheck(boolean skip){
+		mSkipNdefCheck = skip;
+		return this;
+	}
+	
+	/**
+	 * @param sounds False to mute the sound of the platform on discovery, e.g. if the application gives feedback itself.
+	 * @return These options.
+	 */
+	public ReaderOptions setPlatformSounds(boolean sounds){
+		mPlatformSounds = sounds;
+		return this;
+	}
+	
+	/**
+	 * @param delayMillis Delay between the checks whether a tag is still in the field, -1 for the default of the platform.
+	 * A longer delay leaves more time to the tag I/O of the library.
+	 * @return These options.
+	 */
+	public ReaderOptions setPresenceCheckDelay(int delayMillis){
+		mPresenceCheckDelay = delayMillis;
+		return this;
+	}
+	
+	
+	/**
+	 * @return True if the NDEF check of the platform is skipped.
+	 */
+	public boolean skipsNdefCheck(){
+		return mSkipNdefCheck;
+	}
+	
+	/**
+	 * @return Delay of the presence check in milliseconds, -1 for the default of the platform.
+	 */
+	public int getPresenceCheckDelay(){
+		return mPresenceCheckDelay;
+	}
+	
+	/**
+	 * @return The flags for {@code NfcAdapter.enableReaderMode}.
+	 */
+	public int getFlags(){
+		int flags = mTechnologies;
+		if(mSkipNdefCheck) flags |= FLAG_SKIP_NDEF_CHECK;
+		if(!mPlatformSounds) flags |= FLAG_NO_PLATFORM_SOUNDS;
+		return flags;
+	}
+}
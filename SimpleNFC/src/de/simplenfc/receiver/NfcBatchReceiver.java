@@ -0,0 +1,63 @@
+package de.simplenfc.receiver;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import de.simplenfc.activity.NfcConnector;
+import de.simplenfc.listener.NfcBatchListener;
+
+/**
+ * BroadcastReceiver to receive the progress of a batch of writes from the {@link NfcConnector}.
+ * Stays registered for the whole batch.
+ * 
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class NfcBatchReceiver extends BroadcastReceiver {
+	public static final String ACTION_BATCH_PROGRESS = "simplenfc_batch_progress";
+	public static final String EXTRA_INDEX = "index";
+	public static final String EXTRA_EXCEPTION = "exception";
+	public static final String EXTRA_FINISHED = "batch_finished";
+	public static final String EXTRA_WRITTEN = "written";
+	public static final String EXTRA_FAILED = "failed";
+	
+	private NfcBatchListener mListener;
+	
+	
+	/**
+	 * Construct a NfcBatchReceiver.
+	 * 
+	 * @param listener {@link NfcBatchListener} to call on progress, may be null.
+	 */
+	public NfcBatchReceiver(NfcBatchListener listener){
+		this.mListener = listener;
+	}
+
+
+	/**
+	 * Called for every received Intent. See <a href="http://developer.android.com/reference/android/content/BroadcastReceiver.html#onReceive(android.content.Context, android.content.Intent)">Android-documentation</a>
+	 * 
+	 * @param context The context to use. Usually your Activity.
+	 * @param intent Received Intent. Contains index and exception or success of a single write.
+	 */
+	@Override
+	public void onReceive(Context context, Intent intent) {
+		if(mListener == null || !ACTION_BATCH_PROGRESS.equals(intent.getAction())) return;
+		
+		Bundle b = intent.getExtras();
+		int index = b.getInt(EXTRA_INDEX);
+		
+		if(b.containsKey(EXTRA_EXCEPTION)){
+			mListener.onNfcException(index, (Exception) b.getSerializable(EXTRA_EXCEPTION));
+		}else{
+			mListener.onNfcMessageWritten(index);
+		}
+		
+		if(b.getBoolean(EXTRA_FINISHED)){
+			mListener.onNfcBatchFinished(b.getInt(EXTRA_WRITTEN), b.getInt(EXTRA_FAILED));
+		}
+	}
+}
@@ -8,13 +8,16 @@ import android.content.Intent;
 import android.nfc.FormatException;
 import android.os.Bundle;
 
-import de.simplenfc.R;
 import de.simplenfc.activity.NfcConnector;
 import de.simplenfc.entity.exceptions.LowCapacityException;
 import de.simplenfc.entity.exceptions.NDEFException;
 import de.simplenfc.entity.exceptions.NfcDisabledException;
 import de.simplenfc.entity.exceptions.ReadOnlyException;
+import de.simplenfc.entity.exceptions.VerificationException;
+import de.simplenfc.event.NfcEventBus;
+import de.simplenfc.io.WriteOutcome;
 import de.simplenfc.listener.NfcWriteListener;
+import de.simplenfc.listener.NfcWriteOutcomeListener;
 
 /**
  * BroadcastReceiver to receive state changes from the {@link NfcConnector}. Receives Exception-messages and
@@ -34,6 +37,7 @@ public class NfcConnectorStateReceiver extends BroadcastReceiver {
 	public static final String EXTRA_EXCEPTION_LOWCAPACITY = "lowcapacityexception";
 	public static final String EXTRA_EXCEPTION_NDEF = "ndefexception";
 	public static final String EXTRA_WRITTEN = "tag_written";
+	public static final String EXTRA_OUTCOME = "write_outcome";
 	
 	private NfcWriteListener mListener;
 	
@@ -48,6 +52,20 @@ public class NfcConnectorStateReceiver extends BroadcastReceiver {
 	}
 
 
+	/**
+	 * @param e Exception of a failed write.
+	 * @return Key of the extra under which the exception is reported.
+	 */
+	public static String getExceptionKey(Exception e){
+		if(e instanceof NfcDisabledException) return EXTRA_EXCEPTION_NFCDISABLED;
+		if(e instanceof FormatException) return EXTRA_EXCEPTION_FORMAT;
+		if(e instanceof ReadOnlyException) return EXTRA_EXCEPTION_READONLY;
+		if(e instanceof LowCapacityException) return EXTRA_EXCEPTION_LOWCAPACITY;
+		if(e instanceof NDEFException) return EXTRA_EXCEPTION_NDEF;
+		return EXTRA_EXCEPTION_IO;
+	}
+	
+	
 	/**
 	 * Called for every received Intent. See <a href="http://developer.android.com/reference/android/content/BroadcastReceiver.html#onReceive(android.content.Context, android.content.Intent)">Android-documentation</a>
 	 * 
@@ -72,8 +90,16 @@ public class NfcConnectorStateReceiver extends BroadcastReceiver {
 			}else if(b.containsKey(EXTRA_EXCEPTION_NDEF)){
 				this.mListener.onNfcException((NDEFException)b.getSerializable(EXTRA_EXCEPTION_NDEF));
 			}else if(b.containsKey(EXTRA_WRITTEN)){
-				context.unregisterReceiver(this);
-				this.mListener.onNfcMessageWritten();
+				NfcEventBus.getInstance().unregister(this);
+				
+				WriteOutcome outcome = b.containsKey(EXTRA_OUTCOME) ? (WriteOutcome) b.getSerializable(EXTRA_OUTCOME) : WriteOutcome.WRITTEN;
+				if(this.mListener instanceof NfcWriteOutcomeListener){
+					((NfcWriteOutcomeListener) this.mListener).onNfcMessageWritten(outcome);
+				}else if(outcome == WriteOutcome.MISMATCH){
+					this.mListener.onNfcException(new VerificationException());
+				}else{
+					this.mListener.onNfcMessageWritten();
+				}
 			}
 		}
 	}
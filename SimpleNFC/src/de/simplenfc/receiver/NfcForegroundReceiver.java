@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.nfc.NdefMessage;
 import android.os.Bundle;
+import android.os.Parcelable;
 import de.simplenfc.activity.NfcConnector;
 import de.simplenfc.entity.NfcMessage;
 import de.simplenfc.listener.NfcForegroundListener;
@@ -49,9 +50,13 @@ public class NfcForegroundReceiver extends BroadcastReceiver {
 			Bundle b = intent.getExtras();
 			
 			if(b.containsKey(EXTRA_NFCMESSAGE)){
-				mListener.onNfcMessageReceived((NfcMessage) b.getParcelable(EXTRA_NFCMESSAGE));
+				for(Parcelable message : b.getParcelableArray(EXTRA_NFCMESSAGE)){
+					mListener.onNfcMessageReceived((NfcMessage) message);
+				}
 			}else if(b.containsKey(EXTRA_NDEFMESSAGE)){
-				mListener.onNdefMessageReceived((NdefMessage)b.getParcelable(EXTRA_NDEFMESSAGE));
+				for(Parcelable message : b.getParcelableArray(EXTRA_NDEFMESSAGE)){
+					mListener.onNdefMessageReceived((NdefMessage) message);
+				}
 			}
 		}
 	}
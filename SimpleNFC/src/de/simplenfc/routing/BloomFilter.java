@@ -0,0 +1,70 @@
+package de.simplenfc.routing;
+
+/**
+ * Bloom filter over byte-ranges. Uses double hashing of two 32-bit hashes, so a lookup never allocates.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+final class BloomFilter {
+	private static final int BITS_PER_KEY = 10;
+	private static final int HASHES = 7;
+	
+	private final long[] mBits;
+	private final int mSize;
+	
+	
+	/**
+	 * @param expectedKeys Number of keys which will be added, the false-positive rate is about 1% up to this number.
+	 */
+	BloomFilter(int expectedKeys){
+		int words = Math.max(1, (expectedKeys * BITS_PER_KEY + 63) / 64);
+		mBits = new long[words];
+		mSize = words * 64;
+	}
+	
+	
+	void add(byte[] key, int length){
+		int h1 = fnv(key, length);
+		int h2 = murmur(key, length);
+		for(int i=0; i<HASHES; i++){
+			int bit = ((h1 + i * h2) & 0x7FFFFFFF) % mSize;
+			mBits[bit >>> 6] |= 1L << bit;
+		}
+	}
+	
+	boolean mightContain(byte[] key, int length){
+		int h1 = fnv(key, length);
+		int h2 = murmur(key, length);
+		for(int i=0; i<HASHES; i++){
+			int bit = ((h1 + i * h2) & 0x7FFFFFFF) % mSize;
+			if((mBits[bit >>> 6] & 1L << bit) == 0) return false;
+		}
+		return true;
+	}
+	
+	
+	private static int fnv(byte[] key, int length){
+		int hash = 0x811C9DC5;
+		for(int i=0; i<length; i++){
+			hash ^= key[i] & 0xFF;
+			hash *= 0x01000193;
+		}
+		return hash;
+	}
+	
+	private static int murmur(byte[] key, int length){
+		int hash = 0x9747B28C ^ length;
+		for(int i=0; i<length; i++){
+			hash ^= key[i] & 0xFF;
+			hash *= 0x5BD1E995;
+			hash ^= hash >>> 15;
+		}
+		hash ^= hash >>> 13;
+		hash *= 0x5BD1E995;
+		hash ^= hash >>> 15;
+		return hash | 1;
+	}
+}
@@ -0,0 +1,272 @@
+package de.simplenfc.routing;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Immutable routing table from message IDs to handler classes, compiled from rules of the form
+ * <ul>
+ * <li><code>door</code> matches exactly the ID "door",</li>
+ * <li><code>door*</code> matches every ID starting with "door", <code>*</code> is only allowed at the end,</li>
+ * <li><code>door-?</code> matches "door-" followed by exactly one character,</li>
+ * <li><code>door\*</code> matches exactly the ID "door*", <code>\</code> makes the next character literal, see {@link #quote(String)}.</li>
+ * </ul>
+ * The rules are stored in a trie. If several rules match, literal characters win over <code>?</code> and
+ * <code>?</code> wins over <code>*</code>, comparing from the first character on, so longer prefixes win over shorter ones.
+ * <p>
+ * A Bloom filter over the literal part of all rules rejects most IDs that can not match without walking the
+ * trie or decoding the ID, see {@link #mightMatch(byte[])}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class RoutingTable {
+	public static final char PREFIX_WILDCARD = '*';
+	public static final char CHARACTER_WILDCARD = '?';
+	public static final char ESCAPE = '\\';
+	
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	/** Table without rules. */
+	public static final RoutingTable EMPTY = compile(new HashMap<String, Class<?>>());
+	
+	private final Node mRoot = new Node();
+	private final BloomFilter mExactFilter;
+	private final BloomFilter mPrefixFilter;
+	private final int[] mPrefixLengths;
+	private final boolean mMatchesAll;
+	private final int mSize;
+	
+	
+	private RoutingTable(Map<String, Class<?>> rules){
+		mExactFilter = new BloomFilter(rules.size());
+		mPrefixFilter = new BloomFilter(rules.size());
+		TreeSet<Integer> prefixLengths = new TreeSet<Integer>();
+		boolean matchesAll = false;
+		
+		for(Map.Entry<String, Class<?>> rule : rules.entrySet()){
+			String pattern = rule.getKey();
+			this.insert(pattern, rule.getValue());
+			
+			int wildcard = firstWildcard(pattern);
+			byte[] literal = unquote(pattern, wildcard < 0 ? pattern.length() : wildcard).getBytes(CHARSET);
+			if(wildcard < 0){
+				mExactFilter.add(literal, literal.length);
+			}else if(literal.length == 0){
+				matchesAll = true;
+			}else{
+				mPrefixFilter.add(literal, literal.length);
+				prefixLengths.add(literal.length);
+			}
+		}
+		
+		mPrefixLengths = new int[prefixLengths.size()];
+		int i = 0;
+		for(Integer length : prefixLengths){
+			mPrefixLengths[i++] = length;
+		}
+		mMatchesAll = matchesAll;
+		mSize = rules.size();
+	}
+	
+	
+	/**
+	 * Compiles a routing table.
+	 * @param rules Handler classes by rule.
+	 * @return The compiled table.
+	 * @throws IllegalArgumentException If a rule is invalid, see {@link #checkRule(String)}.
+	 */
+	public static RoutingTable compile(Map<String, Class<?>> rules){
+		return new RoutingTable(rules);
+	}
+	
+	
+	/**
+	 * Validates a rule.
+	 * @param pattern The rule.
+	 * @throws IllegalArgumentException If the rule contains <code>*</code> anywhere but at its end or ends with
+	 * a single <code>\</code>.
+	 */
+	public static void checkRule(String pattern){
+		for(int i=0; i<pattern.length(); i++){
+			char c = pattern.charAt(i);
+			if(c == ESCAPE && ++i == pattern.length()){
+				throw new IllegalArgumentException("'\\' must be followed by a character in rule " + pattern);
+			}
+			if(c == PREFIX_WILDCARD && i != pattern.length() - 1){
+				throw new IllegalArgumentException("'*' is only allowed at the end of rule " + pattern);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Escapes wildcards and escape characters, so the rule matches exactly the given ID.
+	 * @param id The message ID.
+	 * @return Rule matching only the ID.
+	 */
+	public static String quote(String id){
+		StringBuilder rule = null;
+		for(int i=0; i<id.length(); i++){
+			char c = id.charAt(i);
+			if(c == PREFIX_WILDCARD || c == CHARACTER_WILDCARD || c == ESCAPE){
+				if(rule == null) rule = new StringBuilder(id.length() + 4).append(id, 0, i);
+				rule.append(ESCAPE);
+			}
+			if(rule != null) rule.append(c);
+		}
+		return rule == null ? id : rule.toString();
+	}
+	
+	
+	/**
+	 * @return Number of rules.
+	 */
+	public int size(){
+		return mSize;
+	}
+	
+	
+	/**
+	 * Checks without decoding the ID whether a rule might match. There are no false negatives.
+	 * @param id Encoded (UTF-8) message ID.
+	 * @return False if no rule matches the ID, true if a rule probably matches.
+	 */
+	public boolean mightMatch(byte[] id){
+		if(mMatchesAll) return true;
+		if(id == null) id = new byte[0];
+		
+		if(mExactFilter.mightContain(id, id.length)) return true;
+		for(int length : mPrefixLengths){
+			if(length > id.length) break;
+			if(mPrefixFilter.mightContain(id, length)) return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * @param id Message ID.
+	 * @return The handler class of the most specific matching rule or null if no rule matches.
+	 */
+	public Class<?> route(String id){
+		if(id == null) id = "";
+		return match(mRoot, id, 0);
+	}
+	
+	
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+	
+	private void insert(String pattern, Class<?> handler){
+		checkRule(pattern);
+		
+		Node node = mRoot;
+		for(int i=0; i<pattern.length(); i++){
+			char c = pattern.charAt(i);
+			if(c == ESCAPE){
+				node = node.child(pattern.charAt(++i));
+			}else if(c == PREFIX_WILDCARD){
+				node.prefix = handler;
+				return;
+			}else if(c == CHARACTER_WILDCARD){
+				node = node.any();
+			}else{
+				node = node.child(c);
+			}
+		}
+		node.exact = handler;
+	}
+	
+	private static Class<?> match(Node node, String id, int position){
+		if(position == id.length()){
+			if(node.exact != null) return node.exact;
+		}else{
+			char c = id.charAt(position);
+			Node next = node.get(c);
+			Class<?> handler = next == null ? null : match(next, id, position + 1);
+			if(handler == null && node.any != null){
+				handler = match(node.any, id, position + 1);
+			}
+			if(handler != null) return handler;
+		}
+		return node.prefix;
+	}
+	
+	private static int firstWildcard(String pattern){
+		for(int i=0; i<pattern.length(); i++){
+			char c = pattern.charAt(i);
+			if(c == ESCAPE){
+				i++;
+			}else if(c == PREFIX_WILDCARD || c == CHARACTER_WILDCARD){
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static String unquote(String pattern, int end){
+		if(pattern.indexOf(ESCAPE) < 0) return pattern.substring(0, end);
+		
+		StringBuilder literal = new StringBuilder(end);
+		for(int i=0; i<end; i++){
+			char c = pattern.charAt(i);
+			literal.append(c == ESCAPE ? pattern.charAt(++i) : c);
+		}
+		return literal.toString();
+	}
+	
+	
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+	
+	/**
+	 * Trie node with children sorted by character. The child of <code>?</code> is kept apart, so a literal
+	 * <code>?</code> is a regular child.
+	 */
+	private static final class Node{
+		private static final Node[] NO_CHILDREN = new Node[0];
+		private static final char[] NO_KEYS = new char[0];
+		
+		char[] keys = NO_KEYS;
+		Node[] children = NO_CHILDREN;
+		Node any;
+		Class<?> exact;
+		Class<?> prefix;
+		
+		Node get(char c){
+			int index = Arrays.binarySearch(keys, c);
+			return index < 0 ? null : children[index];
+		}
+		
+		Node any(){
+			if(any == null) any = new Node();
+			return any;
+		}
+		
+		Node child(char c){
+			int index = Arrays.binarySearch(keys, c);
+			if(index >= 0) return children[index];
+			
+			index = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[keys.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+			newKeys[index] = c;
+			newChildren[index] = new Node();
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[index];
+		}
+	}
+}
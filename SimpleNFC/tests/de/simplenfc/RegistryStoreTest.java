@@ -0,0 +1,164 @@
+package de.simplenfc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import android.content.ContextWrapper;
+import de.simplenfc.routing.RoutingTable;
+
+/**
+ * Binary format, migration of the JSON-file and atomic commits of {@link RegistryStore}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class RegistryStoreTest {
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private FileContext mContext;
+
+	@Before
+	public void setUp(){
+		mContext = new FileContext(mFolder.getRoot());
+	}
+
+	@Test
+	public void savedRegistryIsLoaded() throws Exception {
+		HashMap<String, String> registry = new HashMap<String, String>();
+		registry.put("door*", "com.example.DoorActivity");
+		registry.put(RoutingTable.quote("a?"), "com.example.OtherActivity");
+
+		RegistryStore store = new RegistryStore(mContext);
+		load(store);
+		store.save(registry);
+		store.save(registry);
+		load(store);
+
+		assertEquals(registry, load(new RegistryStore(mContext)));
+	}
+
+	@Test
+	public void registryIsStoredBinary() throws Exception {
+		RegistryStore store = new RegistryStore(mContext);
+		load(store);
+		store.save(singleton("door", "com.example.DoorActivity"));
+		load(store);
+
+		DataInputStream in = new DataInputStream(new FileInputStream(file(RegistryStore.FILENAME)));
+		try {
+			assertEquals(0x534E4648, in.readInt());
+			assertEquals(1, in.readUnsignedByte());
+			assertEquals(1, in.readInt());
+			assertEquals("door", in.readUTF());
+			assertEquals("com.example.DoorActivity", in.readUTF());
+			assertEquals(-1, in.read());
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void commitReplacesFileWithoutLeavingTemporaryFile() throws Exception {
+		RegistryStore store = new RegistryStore(mContext);
+		load(store);
+		store.save(singleton("old", "com.example.OldActivity"));
+		load(store);
+		assertTrue(file(RegistryStore.FILENAME).exists());
+		store.save(singleton("new", "com.example.NewActivity"));
+		load(store);
+
+		assertEquals(singleton("new", "com.example.NewActivity"), load(new RegistryStore(mContext)));
+		assertFalse(file(RegistryStore.FILENAME + ".tmp").exists());
+	}
+
+	@Test
+	public void legacyJsonIsMigratedWithQuotedIds() throws Exception {
+		FileOutputStream out = new FileOutputStream(file(RegistryStore.LEGACY_FILENAME));
+		try {
+			out.write("{\"door\":\"com.example.DoorActivity\",\"a*\":\"com.example.OtherActivity\"}".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+
+		HashMap<String, String> expected = new HashMap<String, String>();
+		expected.put("door", "com.example.DoorActivity");
+		expected.put("a\\*", "com.example.OtherActivity");
+
+		assertEquals(expected, load(new RegistryStore(mContext)));
+		assertFalse(file(RegistryStore.LEGACY_FILENAME).exists());
+		assertTrue(file(RegistryStore.FILENAME).exists());
+		assertEquals(expected, load(new RegistryStore(mContext)));
+	}
+
+	@Test
+	public void missingRegistryIsEmpty() throws Exception {
+		assertTrue(load(new RegistryStore(mContext)).isEmpty());
+	}
+
+
+	private File file(String name){
+		return mContext.getFileStreamPath(name);
+	}
+
+	private static Map<String, String> load(RegistryStore store) throws Exception {
+		final AtomicReference<Map<String, String>> loaded = new AtomicReference<Map<String, String>>();
+		store.load(new RegistryStore.Callback() {
+			@Override
+			public void onLoaded(Map<String, String> registry) {
+				loaded.set(registry);
+			}
+		}).get();
+		return loaded.get();
+	}
+
+	private static Map<String, String> singleton(String id, String className){
+		HashMap<String, String> registry = new HashMap<String, String>();
+		registry.put(id, className);
+		return registry;
+	}
+
+
+	/**
+	 * Context whose private files are kept in a directory.
+	 */
+	private static final class FileContext extends ContextWrapper {
+		private final File mDir;
+
+		FileContext(File dir){
+			super(null);
+			mDir = dir;
+		}
+
+		@Override
+		public File getFileStreamPath(String name) {
+			return new File(mDir, name);
+		}
+
+		@Override
+		public boolean deleteFile(String name) {
+			return new File(mDir, name).delete();
+		}
+
+		@Override
+		public File getFilesDir() {
+			return mDir;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package de.simplenfc.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.simplenfc.compress.Compression;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.io.WritePolicy;
+
+/**
+ * Progress and prefetching of a {@link WriteBatch}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class WriteBatchTest {
+
+	@After
+	public void tearDown(){
+		WriteBatch.cancel();
+	}
+
+	@Test
+	public void messagesAreWrittenInOrder(){
+		ConcurrentLinkedQueue<NfcMessage> queue = new ConcurrentLinkedQueue<NfcMessage>();
+		NfcMessage first = message("1");
+		NfcMessage second = message("2");
+		queue.add(first);
+		queue.add(second);
+
+		WriteBatch batch = WriteBatch.start(WriteBatch.fromQueue(queue), Compression.NONE, WritePolicy.VERIFY);
+		assertSame(batch, WriteBatch.getActive());
+		assertEquals(WritePolicy.VERIFY, batch.getPolicy());
+		assertEquals(Compression.NONE, batch.getCompression());
+
+		assertSame(first, batch.getCurrent());
+		assertEquals(0, batch.getIndex());
+		assertEquals(1, queue.size());
+
+		batch.onWritten();
+		assertSame(second, batch.getCurrent());
+		assertEquals(1, batch.getIndex());
+
+		batch.onWritten();
+		assertTrue(batch.isFinished());
+		assertNull(batch.getCurrent());
+		assertEquals(2, batch.getWritten());
+		assertEquals(0, batch.getFailed());
+	}
+
+	@Test
+	public void failedWriteKeepsTheMessage(){
+		ConcurrentLinkedQueue<NfcMessage> queue = new ConcurrentLinkedQueue<NfcMessage>();
+		NfcMessage first = message("1");
+		queue.add(first);
+		WriteBatch batch = WriteBatch.start(WriteBatch.fromQueue(queue), Compression.NONE, WritePolicy.OVERWRITE);
+
+		batch.onFailed();
+		batch.onFailed();
+
+		assertSame(first, batch.getCurrent());
+		assertEquals(0, batch.getIndex());
+		assertEquals(2, batch.getFailed());
+		assertFalse(batch.isFinished());
+	}
+
+	@Test
+	public void messagesQueuedWhileRunningArePickedUp(){
+		ConcurrentLinkedQueue<NfcMessage> queue = new ConcurrentLinkedQueue<NfcMessage>();
+		queue.add(message("1"));
+		WriteBatch batch = WriteBatch.start(WriteBatch.fromQueue(queue), Compression.NONE, WritePolicy.OVERWRITE);
+
+		NfcMessage late = message("2");
+		queue.add(late);
+		batch.onWritten();
+
+		assertSame(late, batch.getCurrent());
+	}
+
+	@Test
+	public void emptySupplierFinishesImmediately(){
+		WriteBatch batch = WriteBatch.start(WriteBatch.fromQueue(new ConcurrentLinkedQueue<NfcMessage>()), Compression.NONE, WritePolicy.OVERWRITE);
+
+		assertTrue(batch.isFinished());
+	}
+
+	@Test
+	public void startReplacesAndCancelEndsTheActiveBatch(){
+		WriteBatch first = WriteBatch.start(WriteBatch.fromQueue(new ConcurrentLinkedQueue<NfcMessage>()), Compression.NONE, WritePolicy.OVERWRITE);
+		WriteBatch second = WriteBatch.start(WriteBatch.fromQueue(new ConcurrentLinkedQueue<NfcMessage>()), Compression.NONE, WritePolicy.OVERWRITE);
+
+		assertSame(second, WriteBatch.getActive());
+		assertFalse(first == WriteBatch.getActive());
+
+		WriteBatch.cancel();
+		assertNull(WriteBatch.getActive());
+	}
+
+
+	private static NfcMessage message(String content){
+		return new NfcMessage.Builder().addRecord("app", "first").addRecord("data", content).build();
+	}
+}
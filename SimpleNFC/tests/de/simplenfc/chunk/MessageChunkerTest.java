@@ -0,0 +1,68 @@
+package de.simplenfc.chunk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.simplenfc.entity.NfcMessage;
+
+/**
+ * Splitting by {@link MessageChunker} and reassembly by {@link ChunkAssembler}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class MessageChunkerTest {
+
+	@Test
+	public void chunksReassembleInAnyOrder() throws Exception {
+		NfcMessage message = message(0, 40);
+		NfcMessage[] chunks = MessageChunker.split(message, 137);
+		assertTrue(chunks.length > 1);
+
+		ChunkAssembler assembler = new ChunkAssembler();
+		NfcMessage result = null;
+		for(int i=chunks.length-1; i>=0; i--){
+			assertTrue(chunks[i].getEncodedSize() <= 137);
+			NfcMessage chunk = NfcMessage.parse(chunks[i].toByteArray());
+			assertTrue(MessageChunker.isChunk(chunk));
+			if(i > 0) assertNull(assembler.offer(chunk));
+			else result = assembler.offer(chunk);
+		}
+		assertEquals(message.getByteBuffer(), result.getByteBuffer());
+		assertEquals(0, assembler.getPendingCount());
+	}
+
+	@Test
+	public void incompleteMessagesAreBounded() throws Exception {
+		ChunkAssembler assembler = new ChunkAssembler();
+		for(int m=0; m<2*ChunkAssembler.DEFAULT_MAX_PENDING; m++){
+			NfcMessage[] chunks = MessageChunker.split(message(m, 20), 40);
+			assembler.offer(NfcMessage.parse(chunks[0].toByteArray()));
+		}
+		assertEquals(ChunkAssembler.DEFAULT_MAX_PENDING, assembler.getPendingCount());
+	}
+
+	@Test
+	public void oversizedMessagesAreIgnored() throws Exception {
+		ChunkAssembler assembler = new ChunkAssembler();
+		assembler.setMaxBufferedBytes(256);
+
+		NfcMessage[] chunks = MessageChunker.split(message(0, 20), 40);
+		assertNull(assembler.offer(NfcMessage.parse(chunks[0].toByteArray())));
+		assertEquals(0, assembler.getPendingCount());
+	}
+
+
+	private static NfcMessage message(int id, int records){
+		NfcMessage.Builder builder = new NfcMessage.Builder().addRecord("app" + id, "first");
+		for(int i=0; i<records; i++){
+			builder.addRecord("k" + i, "some configuration value number " + i);
+		}
+		return builder.build();
+	}
+}
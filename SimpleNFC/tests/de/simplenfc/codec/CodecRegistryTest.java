@@ -0,0 +1,124 @@
+package de.simplenfc.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.ndef.NdefCodec;
+
+/**
+ * Round-trips of the built-in {@link RecordCodec}s, directly and through {@link CodecRegistry}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class CodecRegistryTest {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	@Test
+	public void cborRoundTrip() throws Exception {
+		LinkedHashMap<String, Object> nested = new LinkedHashMap<String, Object>();
+		nested.put("flag", true);
+		nested.put("nothing", null);
+		nested.put("bytes", new byte[]{ 0, 1, (byte) 0xFF });
+
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		map.put("small", 23);
+		map.put("negative", -1000000);
+		map.put("large", Long.MAX_VALUE);
+		map.put("double", 1.5d);
+		map.put("text", "äöü €");
+		map.put("list", Arrays.asList(1, "two", 3.0d));
+		map.put("nested", nested);
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> decoded = (Map<String, Object>) CborCodec.INSTANCE.decode(null, CborCodec.INSTANCE.encode(map));
+		assertEquals(23L, ((Number) decoded.get("small")).longValue());
+		assertEquals(-1000000L, ((Number) decoded.get("negative")).longValue());
+		assertEquals(Long.MAX_VALUE, ((Number) decoded.get("large")).longValue());
+		assertEquals(1.5d, ((Number) decoded.get("double")).doubleValue(), 0);
+		assertEquals("äöü €", decoded.get("text"));
+		assertEquals(3, ((java.util.List<?>) decoded.get("list")).size());
+
+		Map<?, ?> decodedNested = (Map<?, ?>) decoded.get("nested");
+		assertEquals(Boolean.TRUE, decodedNested.get("flag"));
+		assertTrue(decodedNested.containsKey("nothing"));
+		assertArrayEquals(new byte[]{ 0, 1, (byte) 0xFF }, (byte[]) decodedNested.get("bytes"));
+	}
+
+	@Test
+	public void textRoundTrip() throws Exception {
+		TextContent text = TextCodec.INSTANCE.decode(null, TextCodec.INSTANCE.encode(new TextContent("de", "Grüße")));
+		assertEquals("de", text.getLanguage());
+		assertEquals("Grüße", text.getText());
+
+		TextContent utf16 = TextCodec.INSTANCE.decode(null, TextCodec.INSTANCE.encode(new TextContent("en", "hello", true)));
+		assertTrue(utf16.isUtf16());
+		assertEquals("hello", utf16.getText());
+	}
+
+	@Test
+	public void uriIsAbbreviated() throws Exception {
+		ByteBuffer encoded = UriCodec.INSTANCE.encode("https://www.example.com/path");
+		assertEquals(UriCodec.abbreviate("https://www.example.com/path"), encoded.get(encoded.position()));
+		assertEquals("https://www.", UriCodec.getPrefix(encoded.get(encoded.position())));
+		assertEquals("https://www.example.com/path", UriCodec.INSTANCE.decode(null, encoded));
+		assertEquals("urn:x", UriCodec.INSTANCE.decode(null, UriCodec.INSTANCE.encode("urn:x")));
+	}
+
+	@Test
+	public void registryDecodesRecordsOfMessage() throws Exception {
+		NfcMessage message = new NfcMessage.Builder()
+				.addRecord("app", "first")
+				.addRecord("text", NdefCodec.TNF_WELL_KNOWN, TextCodec.TYPE, new TextContent("en", "hello"), TextCodec.INSTANCE)
+				.addRecord("uri", NdefCodec.TNF_WELL_KNOWN, UriCodec.TYPE, "http://example.com", UriCodec.INSTANCE)
+				.addRecord("mime", NdefCodec.TNF_MIME_MEDIA, "text/plain".getBytes(CHARSET), "plain".getBytes(CHARSET))
+				.build();
+		NfcMessage parsed = NfcMessage.parse(message.toByteArray());
+
+		assertEquals("hello", ((TextContent) parsed.getRecordById("text").getContent()).getText());
+		assertEquals("http://example.com", parsed.getRecordById("uri").getContent());
+		TypedContent mime = (TypedContent) parsed.getRecordById("mime").getContent();
+		assertEquals("text/plain", mime.getType());
+		assertEquals(ByteBuffer.wrap("plain".getBytes(CHARSET)), mime.getPayload());
+	}
+
+	@Test
+	public void registeredCodecTakesPrecedence() throws Exception {
+		byte[] type = "example.com:upper".getBytes(CHARSET);
+		RecordCodec<String> upper = new RecordCodec<String>() {
+			@Override
+			public String decode(ByteBuffer type, ByteBuffer payload) {
+				byte[] bytes = new byte[payload.remaining()];
+				payload.duplicate().get(bytes);
+				return new String(bytes, CHARSET).toUpperCase();
+			}
+
+			@Override
+			public ByteBuffer encode(String content) {
+				return ByteBuffer.wrap(content.getBytes(CHARSET));
+			}
+		};
+
+		CodecRegistry.getInstance().register(NdefCodec.TNF_EXTERNAL_TYPE, type, upper);
+		try {
+			NfcMessage message = new NfcMessage.Builder().addRecord("app", "first")
+					.addRecord("x", NdefCodec.TNF_EXTERNAL_TYPE, type, "shout", upper).build();
+			assertEquals("SHOUT", NfcMessage.parse(message.toByteArray()).getRecordById("x").getContent());
+		} finally {
+			CodecRegistry.getInstance().unregister(NdefCodec.TNF_EXTERNAL_TYPE, type);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package de.simplenfc.compress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import de.simplenfc.codec.UriCodec;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.ndef.NdefCodec;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * {@link MessageMinimizer} on messages in a wasteful layout.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class MessageMinimizerTest {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	@Test
+	public void chunkedRecordsAndUrisAreMinimized() throws Exception {
+		byte[] payload = new byte[200];
+		byte[] uri = new byte[]{ 0 };
+		uri = concat(uri, "https://www.example.com".getBytes(CHARSET));
+
+		ByteBuffer out = ByteBuffer.allocate(NdefCodec.chunkedRecordSize(1, 3, payload.length, 10) + NdefCodec.recordSize(1, 1, uri.length));
+		NdefCodec.writeChunkedRecord(out, NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), "app".getBytes(CHARSET), ByteBuffer.wrap(payload), 10, true, false);
+		NdefCodec.writeRecord(out, NdefCodec.TNF_WELL_KNOWN, UriCodec.TYPE, "u".getBytes(CHARSET), ByteBuffer.wrap(uri), false, true);
+		out.flip();
+		NfcMessage message = NfcMessage.parse(out);
+
+		int size = MessageMinimizer.getMinimizedSize(message);
+		NfcMessage minimized = MessageMinimizer.minimize(message);
+		assertEquals(size, minimized.getEncodedSize());
+		assertTrue(size < message.getEncodedSize());
+
+		NdefRecordView[] records = minimized.getRecordViews();
+		assertEquals(2, records.length);
+		assertFalse(records[0].isChunked());
+		assertEquals(ByteBuffer.wrap(payload), records[0].getPayload());
+		assertEquals("https://www.example.com", minimized.getRecordById("u").getContent());
+	}
+
+	@Test
+	public void recordsAndIdsAreKept() throws Exception {
+		byte[] payload = new byte[10];
+		ByteBuffer out = ByteBuffer.allocate(3 * NdefCodec.chunkedRecordSize(1, 1, payload.length, 2) + NdefCodec.recordSize(0, 0, 0));
+		NdefCodec.writeChunkedRecord(out, NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), "a".getBytes(CHARSET), ByteBuffer.wrap(payload), 2, true, false);
+		NdefCodec.writeRecord(out, NdefCodec.TNF_EMPTY, new byte[0], new byte[0], null, false, false);
+		NdefCodec.writeChunkedRecord(out, NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), "b".getBytes(CHARSET), ByteBuffer.wrap(payload), 2, false, false);
+		NdefCodec.writeChunkedRecord(out, NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), "b".getBytes(CHARSET), ByteBuffer.wrap(payload), 2, false, true);
+		out.flip();
+		NfcMessage message = NfcMessage.parse(out);
+
+		NfcMessage minimized = MessageMinimizer.minimize(message);
+		assertTrue(minimized.getEncodedSize() < message.getEncodedSize());
+		NdefRecordView[] before = message.getRecordViews();
+		NdefRecordView[] after = minimized.getRecordViews();
+		assertEquals(before.length, after.length);
+		for(int i=0; i<before.length; i++){
+			assertEquals(before[i].getTnf(), after[i].getTnf());
+			assertEquals(before[i].getIdString(CHARSET), after[i].getIdString(CHARSET));
+			assertEquals(before[i].getPayload(), after[i].getPayload());
+		}
+	}
+
+	@Test
+	public void compactMessageIsReturnedAsIs() throws Exception {
+		NfcMessage message = new NfcMessage.Builder().addRecord("app", "first").addRecord("b", "second").build();
+		assertEquals(message.getEncodedSize(), MessageMinimizer.getMinimizedSize(message));
+		assertSame(message, MessageMinimizer.minimize(message));
+	}
+
+
+	private static byte[] concat(byte[] a, byte[] b){
+		byte[] result = new byte[a.length + b.length];
+		System.arraycopy(a, 0, result, 0, a.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+}
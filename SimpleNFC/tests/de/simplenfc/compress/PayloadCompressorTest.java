@@ -0,0 +1,112 @@
+package de.simplenfc.compress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import android.nfc.NdefRecord;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.NfcRecord;
+import de.simplenfc.entity.exceptions.LowCapacityException;
+import de.simplenfc.ndef.NdefRecordView;
+
+/**
+ * Round-trips of the compression modes of {@link PayloadCompressor}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class PayloadCompressorTest {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	@Test
+	public void fastRoundTrip() throws Exception {
+		assertRoundTrip(Compression.FAST);
+	}
+
+	@Test
+	public void deflateRoundTrip() throws Exception {
+		assertRoundTrip(Compression.DEFLATE);
+	}
+
+	@Test
+	public void deflateWithDictionaryRoundTrip() throws Exception {
+		PayloadCompressor.setDictionary("configuration value number ".getBytes(CHARSET));
+		assertRoundTrip(Compression.DEFLATE);
+	}
+
+	@Test
+	public void fitReturnsMessageWhichFits() throws Exception {
+		NfcMessage message = message();
+		assertSame(message, PayloadCompressor.fit(message, message.getEncodedSize(), Compression.AUTO));
+
+		NfcMessage fitted = PayloadCompressor.fit(message, 300, Compression.AUTO);
+		assertTrue(fitted.getEncodedSize() <= 300);
+		assertContent(fitted);
+	}
+
+	@Test(expected = LowCapacityException.class)
+	public void fitWithoutCompressionFails() throws Exception {
+		PayloadCompressor.fit(message(), 100, Compression.NONE);
+	}
+
+
+	@Test
+	public void invalidUtf8IdIsKept() throws Exception {
+		byte[] id = { (byte) 0xC3, 0x28 };
+		StringBuilder content = new StringBuilder();
+		for(int i=0; i<20; i++) content.append("configuration value number ").append(i).append(' ');
+		NfcMessage message = new NfcMessage.Builder().addRecord("app", "first")
+				.addRecord(id, NdefRecord.TNF_WELL_KNOWN, NfcRecord.STRING_RECORD.getBytes(CHARSET), ByteBuffer.wrap(content.toString().getBytes(CHARSET)))
+				.build();
+
+		NfcMessage compressed = PayloadCompressor.compress(message, Compression.DEFLATE);
+		NdefRecordView record = compressed.getRecordViews()[1];
+		assertTrue(PayloadCompressor.isCompressed(record));
+		assertEquals(ByteBuffer.wrap(id), record.getId());
+	}
+
+	@Test(expected = IOException.class)
+	public void negativeLengthIsRejected() throws Exception {
+		PayloadCompressor.inflate(ByteBuffer.wrap(new byte[]{ 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08, 0 }));
+	}
+
+	@Test(expected = IOException.class)
+	public void oversizedLengthIsRejected() throws Exception {
+		PayloadCompressor.inflate(ByteBuffer.wrap(new byte[]{ 1, (byte) 0xFF, (byte) 0xFF, 0x7F, 0 }));
+	}
+
+
+	private static void assertRoundTrip(Compression compression) throws Exception {
+		NfcMessage message = message();
+		NfcMessage compressed = PayloadCompressor.compress(message, compression);
+		assertTrue(compressed.getEncodedSize() < message.getEncodedSize());
+
+		boolean anyCompressed = false;
+		for(NdefRecordView record : compressed.getRecordViews()){
+			anyCompressed |= PayloadCompressor.isCompressed(record);
+		}
+		assertTrue(anyCompressed);
+		assertContent(NfcMessage.parse(compressed.toByteArray()));
+	}
+
+	private static void assertContent(NfcMessage message){
+		StringBuilder expected = new StringBuilder();
+		for(int i=0; i<20; i++) expected.append("configuration value number ").append(i).append(' ');
+		assertEquals(expected.toString(), message.getRecordById("config").getString());
+	}
+
+	private static NfcMessage message(){
+		StringBuilder content = new StringBuilder();
+		for(int i=0; i<20; i++) content.append("configuration value number ").append(i).append(' ');
+		return new NfcMessage.Builder().addRecord("app", "first").addRecord("config", content.toString()).build();
+	}
+}
@@ -0,0 +1,115 @@
+package de.simplenfc.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import android.nfc.NdefMessage;
+
+/**
+ * Round-trips of {@link NfcMessage} through its encoded form and the platform's {@link NdefMessage}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class NfcMessageTest {
+
+	@Test
+	public void builderMatchesIncrementalMessage() throws Exception {
+		NfcMessage message = new NfcMessage();
+		message.addRecord("app", "first");
+		message.addRecord("b", "second");
+
+		NfcMessage built = new NfcMessage.Builder().addRecord("app", "first").addRecord("b", "second").build();
+		assertEquals(message.getByteBuffer(), built.getByteBuffer());
+		assertEquals(built.getEncodedSize(), built.getByteBuffer().remaining());
+	}
+
+	@Test
+	public void parsedMessageReadsAsBefore() throws Exception {
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "door");
+		map.put("count", 3);
+		map.put("values", Arrays.asList("a", "b"));
+
+		NfcMessage message = new NfcMessage.Builder()
+				.addRecord("app", "content")
+				.addRecord("config", map)
+				.addRecord("raw", (short) 2, "application/x".getBytes(), new byte[]{ 1, 2, 3 })
+				.build();
+		NfcMessage parsed = NfcMessage.parse(message.toByteArray());
+
+		assertEquals("app", parsed.getID());
+		Map<String, Object> content = parsed.getRecordById("config").getMap();
+		assertEquals("door", content.get("name"));
+		assertEquals(3L, ((Number) content.get("count")).longValue());
+		assertEquals(Arrays.asList("a", "b"), content.get("values"));
+		assertArrayEquals(new byte[]{ 1, 2, 3 }, parsed.getRecordById("raw").getBytes());
+		assertNull(parsed.getRecordById("missing"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void mapCanNotBeModified() throws Exception {
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "door");
+		NfcRecord record = new NfcMessage.Builder().addRecord("app", "first").addRecord("config", map).build().getRecordById("config");
+
+		assertSame(record.getMap(), record.getMap());
+		record.getMap().put("name", "window");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void contentIsCopiedPerCall() throws Exception {
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "door");
+		NfcRecord record = new NfcMessage.Builder().addRecord("app", "first").addRecord("config", map).build().getRecordById("config");
+
+		((Map<String, Object>) record.getContent()).put("name", "window");
+		assertEquals("door", ((Map<String, Object>) record.getContent()).get("name"));
+		assertEquals("door", record.getMap().get("name"));
+	}
+
+	@Test
+	public void platformMessageParsesToSameBytes() throws Exception {
+		NfcMessage message = new NfcMessage.Builder().addRecord("app", "content").addRecord("x", "y").build();
+		NdefMessage raw = message.getRAWMessage();
+
+		NfcMessage parsed = NfcMessage.PARSER.parseFromNdefMessage(raw);
+		assertEquals(message.getByteBuffer(), parsed.getByteBuffer());
+		assertEquals(ByteBuffer.wrap(raw.toByteArray()), message.getByteBuffer());
+	}
+
+	@Test
+	public void streamedPayloadEqualsArrayPayload() throws Exception {
+		byte[] payload = new byte[1000];
+		for(int i=0; i<payload.length; i++) payload[i] = (byte) i;
+
+		NfcMessage streamed = new NfcMessage.Builder().addRecord("app", "first")
+				.addRecord("data", (short) 2, "application/x".getBytes(), new ByteArrayInputStream(payload), payload.length)
+				.build();
+		NfcMessage copied = new NfcMessage.Builder().addRecord("app", "first")
+				.addRecord("data", (short) 2, "application/x".getBytes(), payload).build();
+		assertEquals(copied.getByteBuffer(), streamed.getByteBuffer());
+
+		InputStream in = streamed.getRecordById("data").openPayloadStream();
+		byte[] read = new byte[payload.length];
+		int count = 0;
+		int n;
+		while((n = in.read(read, count, read.length - count)) > 0) count += n;
+		assertEquals(payload.length, count);
+		assertArrayEquals(payload, read);
+	}
+}
@@ -0,0 +1,145 @@
+package de.simplenfc.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Delivery order, filtering and registration changes of {@link NfcEventBus}, delivered on a manually run executor.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class NfcEventBusTest {
+	private static final String WRITTEN = "de.simplenfc.WRITTEN";
+	private static final String READ = "de.simplenfc.READ";
+
+	private final ArrayList<Runnable> mScheduled = new ArrayList<Runnable>();
+	private NfcEventBus mBus;
+
+	@Before
+	public void setUp(){
+		mBus = new NfcEventBus(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				mScheduled.add(command);
+			}
+		});
+	}
+
+	@Test
+	public void intentsAreDeliveredInOrderWithoutCopying(){
+		RecordingReceiver receiver = new RecordingReceiver();
+		mBus.register(null, receiver, WRITTEN);
+		Intent first = intent(WRITTEN, "first");
+
+		assertTrue(mBus.post(first));
+		assertTrue(mBus.post(intent(WRITTEN, "second")));
+		assertTrue(receiver.received.isEmpty());
+		assertEquals(1, mScheduled.size());
+
+		this.runScheduled();
+		assertEquals(Arrays.asList("first", "second"), receiver.received);
+		assertSame(first, receiver.intents.get(0));
+	}
+
+	@Test
+	public void intentWithoutReceiverIsNotQueued(){
+		mBus.register(null, new RecordingReceiver(), READ);
+
+		assertFalse(mBus.post(intent(WRITTEN, "lost")));
+		assertTrue(mScheduled.isEmpty());
+	}
+
+	@Test
+	public void onlyReceiversOfTheActionAreCalled(){
+		RecordingReceiver written = new RecordingReceiver();
+		RecordingReceiver read = new RecordingReceiver();
+		mBus.register(null, written, WRITTEN);
+		mBus.register(null, read, READ);
+
+		mBus.post(intent(READ, "tag"));
+		this.runScheduled();
+
+		assertTrue(written.received.isEmpty());
+		assertEquals(Arrays.asList("tag"), read.received);
+	}
+
+	@Test
+	public void registeringAgainReplacesTheAction(){
+		RecordingReceiver receiver = new RecordingReceiver();
+		mBus.register(null, receiver, WRITTEN);
+		mBus.register(null, receiver, READ);
+
+		assertFalse(mBus.post(intent(WRITTEN, "old")));
+		mBus.post(intent(READ, "new"));
+		this.runScheduled();
+
+		assertEquals(Arrays.asList("new"), receiver.received);
+	}
+
+	@Test
+	public void receiverUnregisteredBeforeDeliveryIsNotCalled(){
+		RecordingReceiver receiver = new RecordingReceiver();
+		mBus.register(null, receiver, WRITTEN);
+
+		mBus.post(intent(WRITTEN, "pending"));
+		mBus.unregister(receiver);
+		this.runScheduled();
+
+		assertTrue(receiver.received.isEmpty());
+	}
+
+	@Test
+	public void postAfterDrainSchedulesAgain(){
+		RecordingReceiver receiver = new RecordingReceiver();
+		mBus.register(null, receiver, WRITTEN);
+
+		mBus.post(intent(WRITTEN, "first"));
+		this.runScheduled();
+		mBus.post(intent(WRITTEN, "second"));
+		assertEquals(1, mScheduled.size());
+		this.runScheduled();
+
+		assertEquals(Arrays.asList("first", "second"), receiver.received);
+	}
+
+
+	private void runScheduled(){
+		ArrayList<Runnable> scheduled = new ArrayList<Runnable>(mScheduled);
+		mScheduled.clear();
+		for(Runnable runnable : scheduled){
+			runnable.run();
+		}
+	}
+
+	private static Intent intent(String action, String name){
+		return new Intent(action).putExtra("name", name);
+	}
+
+
+	private static final class RecordingReceiver extends BroadcastReceiver {
+		final ArrayList<String> received = new ArrayList<String>();
+		final ArrayList<Intent> intents = new ArrayList<Intent>();
+
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			received.add(intent.getStringExtra("name"));
+			intents.add(intent);
+		}
+	}
+}
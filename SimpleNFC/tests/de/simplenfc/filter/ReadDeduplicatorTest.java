@@ -0,0 +1,109 @@
+package de.simplenfc.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Window, keying and LRU-bound of {@link ReadDeduplicator}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class ReadDeduplicatorTest {
+	private static final byte[] UID = {0x04, 0x11, 0x22, 0x33};
+	private static final byte[] OTHER_UID = {0x04, 0x44, 0x55, 0x66};
+
+	private ReadDeduplicator mDeduplicator;
+
+	@Before
+	public void setUp(){
+		mDeduplicator = ReadDeduplicator.getInstance();
+		mDeduplicator.setEnabled(true);
+		mDeduplicator.setWindow(ReadDeduplicator.DEFAULT_WINDOW_MILLIS);
+		mDeduplicator.setCapacity(ReadDeduplicator.DEFAULT_CAPACITY);
+		mDeduplicator.clear();
+	}
+
+	@After
+	public void tearDown(){
+		setUp();
+	}
+
+	@Test
+	public void repeatedReadIsSuppressed(){
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+		assertTrue(mDeduplicator.isDuplicate(UID, content("a")));
+		assertTrue(mDeduplicator.isDuplicate(UID, content("a")));
+
+		assertEquals(2, mDeduplicator.getHits());
+		assertEquals(1, mDeduplicator.getMisses());
+	}
+
+	@Test
+	public void otherTagOrContentIsDispatched(){
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+		assertFalse(mDeduplicator.isDuplicate(OTHER_UID, content("a")));
+		assertFalse(mDeduplicator.isDuplicate(UID, content("b")));
+		assertFalse(mDeduplicator.isDuplicate(null, content("a")));
+		assertTrue(mDeduplicator.isDuplicate(null, content("a")));
+	}
+
+	@Test
+	public void readAfterWindowIsDispatched() throws Exception {
+		mDeduplicator.setWindow(20);
+
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+		Thread.sleep(40);
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+	}
+
+	@Test
+	public void leastRecentlySeenTagIsDropped(){
+		mDeduplicator.setCapacity(2);
+
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+		assertFalse(mDeduplicator.isDuplicate(UID, content("b")));
+		assertTrue(mDeduplicator.isDuplicate(UID, content("a")));
+		assertFalse(mDeduplicator.isDuplicate(UID, content("c")));
+
+		assertTrue(mDeduplicator.isDuplicate(UID, content("a")));
+		assertFalse(mDeduplicator.isDuplicate(UID, content("b")));
+	}
+
+	@Test
+	public void disabledDispatchesEveryRead(){
+		mDeduplicator.setEnabled(false);
+
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+		assertFalse(mDeduplicator.isDuplicate(UID, content("a")));
+	}
+
+	@Test
+	public void onlyContentBetweenPositionAndLimitCounts(){
+		ByteBuffer padded = ByteBuffer.wrap(new byte[]{9, 'a', 9});
+		padded.position(1);
+		padded.limit(2);
+
+		assertFalse(mDeduplicator.isDuplicate(UID, padded));
+		assertTrue(mDeduplicator.isDuplicate(UID, content("a")));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(1);
+		direct.put((byte) 'a');
+		direct.flip();
+		assertTrue(mDeduplicator.isDuplicate(UID, direct));
+	}
+
+
+	private static ByteBuffer content(String content){
+		return ByteBuffer.wrap(content.getBytes());
+	}
+}
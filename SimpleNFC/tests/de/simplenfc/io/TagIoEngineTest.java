@@ -0,0 +1,193 @@
+package de.simplenfc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.nfc.TagLostException;
+
+/**
+ * Timeout, retries and cancellation of {@link TagIoEngine#executeNow(TagTask)}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class TagIoEngineTest {
+	private TagIoEngine mEngine;
+
+	@Before
+	public void setUp(){
+		mEngine = TagIoEngine.getInstance();
+		mEngine.setBackoff(0, 0);
+		mEngine.setRetries(TagIoEngine.DEFAULT_RETRIES);
+		mEngine.setTimeout(TagIoEngine.DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	@After
+	public void tearDown(){
+		setUp();
+	}
+
+	@Test
+	public void lostTagIsRetriedAndClosedAfterEveryAttempt() throws Exception {
+		final FakeTech tech = new FakeTech();
+		final AtomicInteger attempts = new AtomicInteger();
+
+		String result = mEngine.executeNow(new TagTask<String>() {
+			@Override
+			protected String run() throws Exception {
+				this.connect(tech);
+				if(attempts.incrementAndGet() < 3) throw new TagLostException();
+				return "written";
+			}
+		});
+
+		assertEquals("written", result);
+		assertEquals(3, attempts.get());
+		assertEquals(3, tech.closes.get());
+		assertFalse(tech.isConnected());
+	}
+
+	@Test
+	public void retriesAreBounded() throws Exception {
+		mEngine.setRetries(2);
+		final AtomicInteger attempts = new AtomicInteger();
+
+		try {
+			mEngine.executeNow(new TagTask<Void>() {
+				@Override
+				protected Void run() throws Exception {
+					attempts.incrementAndGet();
+					throw new TagLostException();
+				}
+			});
+			fail();
+		} catch (TagLostException e) {
+			assertEquals(3, attempts.get());
+		}
+	}
+
+	@Test
+	public void otherFailuresAreNotRetried() throws Exception {
+		final AtomicInteger attempts = new AtomicInteger();
+
+		try {
+			mEngine.executeNow(new TagTask<Void>() {
+				@Override
+				protected Void run() throws Exception {
+					attempts.incrementAndGet();
+					throw new IOException("read only");
+				}
+			});
+			fail();
+		} catch (IOException e) {
+			assertEquals("read only", e.getMessage());
+			assertEquals(1, attempts.get());
+		}
+	}
+
+	@Test
+	public void timeoutClosesBlockedTech() throws Exception {
+		mEngine.setTimeout(50);
+		FakeTech tech = new FakeTech();
+
+		try {
+			mEngine.executeNow(new BlockingTask(tech));
+			fail();
+		} catch (InterruptedIOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+			assertFalse(tech.isConnected());
+		}
+	}
+
+	@Test
+	public void cancelAllAbortsRunningTask() throws Exception {
+		final FakeTech tech = new FakeTech();
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		try {
+			Future<Void> result = caller.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					return mEngine.executeNow(new BlockingTask(tech));
+				}
+			});
+			assertTrue(tech.connected.await(1, TimeUnit.SECONDS));
+			mEngine.cancelAll();
+
+			try {
+				result.get(1, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof InterruptedIOException);
+				assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("cancelled"));
+			}
+		} finally {
+			caller.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Blocks in I/O until its technology is closed, like a transceive on a tag which does not answer.
+	 */
+	private static final class BlockingTask extends TagTask<Void> {
+		private final FakeTech mTech;
+
+		BlockingTask(FakeTech tech){
+			mTech = tech;
+		}
+
+		@Override
+		protected Void run() throws Exception {
+			this.connect(mTech).awaitClose();
+			throw new IOException("connection closed");
+		}
+	}
+
+	private static final class FakeTech implements TagTech {
+		final AtomicInteger closes = new AtomicInteger();
+		final CountDownLatch connected = new CountDownLatch(1);
+		private final CountDownLatch mClosed = new CountDownLatch(1);
+		private volatile boolean mConnected;
+
+		@Override
+		public void connect() throws IOException {
+			mConnected = true;
+			connected.countDown();
+		}
+
+		@Override
+		public void close() throws IOException {
+			mConnected = false;
+			closes.incrementAndGet();
+			mClosed.countDown();
+		}
+
+		@Override
+		public boolean isConnected() {
+			return mConnected;
+		}
+
+		void awaitClose() throws InterruptedException {
+			if(!mClosed.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("not closed");
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package de.simplenfc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.simplenfc.compress.Compression;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.exceptions.ReadOnlyException;
+import de.simplenfc.sim.LoadRunner;
+import de.simplenfc.sim.SimulatedTag;
+
+/**
+ * Write and read paths of {@link TagWriter} and {@link Type2Writer} against a {@link SimulatedTag}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class TagWriterTest {
+	private TagIoEngine mEngine;
+
+	@Before
+	public void setUp(){
+		mEngine = TagIoEngine.getInstance();
+		mEngine.setBackoff(0, 0);
+	}
+
+	@After
+	public void tearDown(){
+		Type2Writer.setEnabled(true);
+	}
+
+	@Test
+	public void type2WritesOnlyChangedPages() throws Exception {
+		SimulatedTag tag = new SimulatedTag.Builder().build();
+		NfcMessage message = message("value");
+
+		assertEquals(WriteOutcome.WRITTEN, write(tag, message, Compression.NONE, WritePolicy.OVERWRITE));
+		long written = tag.getPagesWritten();
+		assertTrue(written > 0);
+		assertEquals(message.getByteBuffer(), tag.getContent());
+
+		assertEquals(WriteOutcome.WRITTEN, write(tag, message, Compression.NONE, WritePolicy.OVERWRITE));
+		assertEquals(written, tag.getPagesWritten());
+
+		Type2Tech type2 = tag.getType2();
+		type2.connect();
+		try {
+			assertEquals(message.getByteBuffer(), Type2Writer.read(type2));
+		} finally {
+			type2.close();
+		}
+	}
+
+	@Test
+	public void ndefWriteIsVerified() throws Exception {
+		Type2Writer.setEnabled(false);
+		SimulatedTag tag = new SimulatedTag.Builder().build();
+
+		assertEquals(WriteOutcome.VERIFIED, write(tag, message("value"), Compression.NONE, WritePolicy.VERIFY));
+		assertEquals(message("value").getByteBuffer(), tag.getContent());
+	}
+
+	@Test
+	public void identicalContentIsSkipped() throws Exception {
+		SimulatedTag tag = new SimulatedTag.Builder().build();
+		NfcMessage message = message("value");
+
+		assertEquals(WriteOutcome.VERIFIED, write(tag, message, Compression.NONE, WritePolicy.SKIP_IF_IDENTICAL_AND_VERIFY));
+		assertEquals(WriteOutcome.SKIPPED, write(tag, message, Compression.NONE, WritePolicy.SKIP_IF_IDENTICAL_AND_VERIFY));
+		assertEquals(WriteOutcome.VERIFIED, write(tag, message("other"), Compression.NONE, WritePolicy.SKIP_IF_IDENTICAL_AND_VERIFY));
+	}
+
+	@Test
+	public void compressedContentIsSkipped() throws Exception {
+		SimulatedTag tag = new SimulatedTag.Builder().build();
+		StringBuilder content = new StringBuilder();
+		for(int i=0; i<40; i++) content.append("repeated text ");
+		NfcMessage message = message(content.toString());
+		assertTrue(message.getEncodedSize() > tag.getNdef().getMaxSize());
+
+		assertEquals(WriteOutcome.VERIFIED, write(tag, message, Compression.DEFLATE, WritePolicy.SKIP_IF_IDENTICAL_AND_VERIFY));
+		assertEquals(WriteOutcome.SKIPPED, write(tag, message, Compression.DEFLATE, WritePolicy.SKIP_IF_IDENTICAL_AND_VERIFY));
+		assertEquals(content.toString(), NfcMessage.parse(tag.getContent()).getRecordById("data").getString());
+	}
+
+	@Test
+	public void unformattedTagIsFormatted() throws Exception {
+		SimulatedTag tag = new SimulatedTag.Builder().setFormatted(false).build();
+
+		assertEquals(WriteOutcome.WRITTEN, write(tag, message("value"), Compression.NONE, WritePolicy.OVERWRITE));
+		assertEquals(message("value").getByteBuffer(), tag.getContent());
+	}
+
+	@Test(expected = ReadOnlyException.class)
+	public void readOnlyTagFails() throws Exception {
+		SimulatedTag tag = new SimulatedTag.Builder().setReadOnly(true).build();
+		write(tag, message("value"), Compression.NONE, WritePolicy.OVERWRITE);
+	}
+
+	@Test
+	public void flakyTagIsNeverCorrupted() throws Exception {
+		SimulatedTag tag = new SimulatedTag.Builder().setFailures(0.01, 0.002, 7).build();
+		NfcMessage[] messages = { message("a"), message("bb"), message("ccc") };
+
+		LoadRunner.Result result = LoadRunner.run(tag, messages, 500, Compression.NONE, WritePolicy.VERIFY);
+		assertEquals(0, result.getCorrupted());
+		assertTrue(result.getWritten() > 0);
+		assertTrue(result.getFailed() > 0);
+	}
+
+
+	private WriteOutcome write(SimulatedTag tag, NfcMessage message, Compression compression, WritePolicy policy) throws Exception {
+		tag.discover();
+		return mEngine.executeNow(new TagWriter(tag, message, compression, policy));
+	}
+
+	private static NfcMessage message(String content){
+		return new NfcMessage.Builder().addRecord("app", "first").addRecord("data", content).build();
+	}
+
+}
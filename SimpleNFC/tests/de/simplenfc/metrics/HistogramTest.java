@@ -0,0 +1,145 @@
+package de.simplenfc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.simplenfc.entity.exceptions.LowCapacityException;
+
+/**
+ * Bucket accuracy of {@link Histogram} and recording by the {@link HistogramSink}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class HistogramTest {
+
+	@After
+	public void tearDown(){
+		NfcMetrics.setSink(null);
+	}
+
+	@Test
+	public void emptyHistogramReportsZero(){
+		Histogram histogram = new Histogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void smallValuesAreExact(){
+		Histogram histogram = new Histogram();
+		for(int i=1; i<=10; i++){
+			histogram.record(i);
+		}
+
+		assertEquals(10, histogram.getCount());
+		assertEquals(1, histogram.getMin());
+		assertEquals(10, histogram.getMax());
+		assertEquals(5.5, histogram.getMean(), 0);
+		assertEquals(5, histogram.getPercentile(50));
+		assertEquals(9, histogram.getPercentile(90));
+		assertEquals(10, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void bucketsAreAccurateToASixteenth(){
+		long[] values = {16, 17, 100, 1000, 4095, 4096, 123456789, 1L << 40, Long.MAX_VALUE / 3};
+		for(long value : values){
+			Histogram histogram = new Histogram();
+			histogram.record(value);
+			histogram.record(Long.MAX_VALUE);
+
+			long bound = histogram.getPercentile(50);
+			assertTrue(value+" -> "+bound, bound >= value);
+			assertTrue(value+" -> "+bound, bound - value <= value / 16);
+		}
+	}
+
+	@Test
+	public void percentilesOfUniformValues(){
+		Histogram histogram = new Histogram();
+		for(int i=1; i<=1000; i++){
+			histogram.record(i);
+		}
+
+		long p50 = histogram.getPercentile(50);
+		long p99 = histogram.getPercentile(99);
+		assertTrue(String.valueOf(p50), p50 >= 500 && p50 <= 500 + 500 / 16);
+		assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 1000);
+		assertEquals(1000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void percentileIsCappedAtMaximum(){
+		Histogram histogram = new Histogram();
+		histogram.record(1000);
+
+		assertEquals(1000, histogram.getPercentile(50));
+	}
+
+	@Test
+	public void negativeValuesAreRecordedAsZeroAndResetClears(){
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+
+	@Test
+	public void sinkRecordsMeasurementsOfNfcMetrics(){
+		HistogramSink sink = new HistogramSink();
+		NfcMetrics.setSink(sink);
+
+		NfcMetrics.stop(Stage.PARSE, NfcMetrics.start());
+		NfcMetrics.exception(new IOException());
+		NfcMetrics.exception(new IOException());
+		NfcMetrics.exception(new LowCapacityException(137, 200));
+		NfcMetrics.messageSize(100, 137);
+		NfcMetrics.messageSize(200, 137);
+
+		assertEquals(1, sink.getTimings(Stage.PARSE).getCount());
+		assertEquals(0, sink.getTimings(Stage.WRITE).getCount());
+		Map<String, Long> exceptions = sink.getExceptionCounts();
+		assertEquals(Long.valueOf(2), exceptions.get("IOException"));
+		assertEquals(Long.valueOf(1), exceptions.get("LowCapacityException"));
+		assertEquals(200, sink.getMessageSizes().getMax());
+		assertEquals(0, sink.getHeadroom().getMin());
+		assertEquals(37, sink.getHeadroom().getMax());
+
+		sink.reset();
+		assertEquals(0, sink.getTimings(Stage.PARSE).getCount());
+		assertTrue(sink.getExceptionCounts().isEmpty());
+		assertEquals(0, sink.getMessageSizes().getCount());
+	}
+
+	@Test
+	public void nothingIsMeasuredWithoutSink(){
+		HistogramSink sink = new HistogramSink();
+		long start = NfcMetrics.start();
+		NfcMetrics.setSink(sink);
+
+		NfcMetrics.stop(Stage.PARSE, start);
+
+		assertEquals(0, sink.getTimings(Stage.PARSE).getCount());
+	}
+}
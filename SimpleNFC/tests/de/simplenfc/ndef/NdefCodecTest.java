@@ -0,0 +1,95 @@
+package de.simplenfc.ndef;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+
+/**
+ * Round-trips of {@link NdefCodec}, checked against the encoding of the platform.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class NdefCodecTest {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	@Test
+	public void shortAndLongRecordsRoundTrip() throws Exception {
+		byte[] small = "small".getBytes(CHARSET);
+		byte[] large = new byte[300];
+		for(int i=0; i<large.length; i++) large[i] = (byte) i;
+
+		ByteBuffer out = ByteBuffer.allocate(NdefCodec.recordSize(1, 2, small.length) + NdefCodec.recordSize(3, 0, large.length));
+		NdefCodec.writeRecord(out, NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), "id".getBytes(CHARSET), ByteBuffer.wrap(small), true, false);
+		NdefCodec.writeRecord(out, NdefCodec.TNF_MIME_MEDIA, "a/b".getBytes(CHARSET), new byte[0], ByteBuffer.wrap(large), false, true);
+		out.flip();
+
+		NdefRecordView[] records = NdefCodec.decode(out);
+		assertEquals(2, records.length);
+		assertEquals(NdefCodec.TNF_WELL_KNOWN, records[0].getTnf());
+		assertEquals("id", records[0].getIdString(CHARSET));
+		assertArrayEquals(small, records[0].copyPayload());
+		assertEquals(NdefCodec.TNF_MIME_MEDIA, records[1].getTnf());
+		assertEquals("a/b", records[1].getTypeString(CHARSET));
+		assertArrayEquals(large, records[1].copyPayload());
+	}
+
+	@Test
+	public void encodingMatchesPlatform() throws Exception {
+		byte[] payload = "payload".getBytes(CHARSET);
+		ByteBuffer encoded = NdefCodec.encodeRecord(NdefCodec.TNF_EXTERNAL_TYPE, "example.com:t".getBytes(CHARSET), "x".getBytes(CHARSET), payload);
+
+		NdefMessage platform = new NdefMessage(new NdefRecord[]{
+				new NdefRecord(NdefRecord.TNF_EXTERNAL_TYPE, "example.com:t".getBytes(CHARSET), "x".getBytes(CHARSET), payload) });
+		assertEquals(ByteBuffer.wrap(platform.toByteArray()), encoded);
+	}
+
+	@Test
+	public void chunkedRecordIsJoined() throws Exception {
+		byte[] payload = new byte[100];
+		for(int i=0; i<payload.length; i++) payload[i] = (byte) (i * 7);
+
+		ByteBuffer out = ByteBuffer.allocate(NdefCodec.chunkedRecordSize(1, 0, payload.length, 16));
+		NdefCodec.writeChunkedRecord(out, NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), new byte[0], ByteBuffer.wrap(payload), 16, true, true);
+		assertFalse(out.hasRemaining());
+		out.flip();
+
+		NdefRecordView[] records = NdefCodec.decode(out);
+		assertEquals(1, records.length);
+		assertTrue(records[0].isChunked());
+		assertEquals(payload.length, records[0].getPayloadLength());
+		assertArrayEquals(payload, records[0].copyPayload());
+		assertEquals(ByteBuffer.wrap(new NdefMessage(out.array()).getRecords()[0].getPayload()), ByteBuffer.wrap(payload));
+	}
+
+	@Test
+	public void appendedRecordClearsMessageEnd() throws Exception {
+		ByteBuffer message = NdefCodec.encodeRecord(NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), new byte[0], new byte[]{ 1 });
+		NdefRecordView[] records = NdefCodec.decode(message);
+		ByteBuffer appended = NdefCodec.appendRecord(message, records[0], NdefCodec.TNF_WELL_KNOWN, "U".getBytes(CHARSET), new byte[0], ByteBuffer.wrap(new byte[]{ 2 }));
+
+		records = NdefCodec.decode(appended);
+		assertEquals(2, records.length);
+		assertArrayEquals(new byte[]{ 2 }, records[1].copyPayload());
+		assertEquals(2, new NdefMessage(appended.array()).getRecords().length);
+	}
+
+	@Test(expected = MalformedNdefException.class)
+	public void truncatedMessageIsRejected() throws Exception {
+		ByteBuffer message = NdefCodec.encodeRecord(NdefCodec.TNF_WELL_KNOWN, "T".getBytes(CHARSET), new byte[0], new byte[10]);
+		message.limit(message.limit() - 1);
+		NdefCodec.decode(message);
+	}
+}
@@ -0,0 +1,89 @@
+package de.simplenfc.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+/**
+ * Matching rules and the Bloom pre-filter of {@link RoutingTable}.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public class RoutingTableTest {
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	@Test
+	public void mostSpecificRuleWins(){
+		HashMap<String, Class<?>> rules = new HashMap<String, Class<?>>();
+		rules.put("door", Integer.class);
+		rules.put("door*", Long.class);
+		rules.put("door-?", Short.class);
+		rules.put("door-1", Byte.class);
+		rules.put("d*", Double.class);
+		RoutingTable table = RoutingTable.compile(rules);
+
+		assertEquals(Integer.class, table.route("door"));
+		assertEquals(Byte.class, table.route("door-1"));
+		assertEquals(Short.class, table.route("door-2"));
+		assertEquals(Long.class, table.route("door-22"));
+		assertEquals(Double.class, table.route("dock"));
+		assertNull(table.route("window"));
+		assertNull(table.route(null));
+	}
+
+	@Test
+	public void quotedRulesMatchLiterally(){
+		HashMap<String, Class<?>> rules = new HashMap<String, Class<?>>();
+		rules.put(RoutingTable.quote("a*b"), Integer.class);
+		rules.put(RoutingTable.quote("x?"), Long.class);
+		rules.put("x?", Short.class);
+		RoutingTable table = RoutingTable.compile(rules);
+
+		assertEquals(Integer.class, table.route("a*b"));
+		assertNull(table.route("axb"));
+		assertEquals(Long.class, table.route("x?"));
+		assertEquals(Short.class, table.route("xy"));
+		assertTrue(table.mightMatch("a*b".getBytes(CHARSET)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void innerPrefixWildcardIsRejected(){
+		RoutingTable.checkRule("a*b");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void trailingEscapeIsRejected(){
+		RoutingTable.checkRule("a\\");
+	}
+
+	@Test
+	public void filterHasNoFalseNegatives(){
+		HashMap<String, Class<?>> rules = new HashMap<String, Class<?>>();
+		for(int i=0; i<1000; i++){
+			rules.put("com.example.app" + i, Integer.class);
+		}
+		rules.put("org.example.*", Long.class);
+		RoutingTable table = RoutingTable.compile(rules);
+
+		for(int i=0; i<1000; i++){
+			assertTrue(table.mightMatch(("com.example.app" + i).getBytes(CHARSET)));
+		}
+		assertTrue(table.mightMatch("org.example.anything".getBytes(CHARSET)));
+
+		int falsePositives = 0;
+		for(int i=0; i<1000; i++){
+			if(table.mightMatch(("net.example.other" + i).getBytes(CHARSET))) falsePositives++;
+		}
+		assertTrue("false positives: " + falsePositives, falsePositives < 100);
+		assertFalse(RoutingTable.EMPTY.mightMatch("x".getBytes(CHARSET)));
+	}
+}
@@ -0,0 +1,190 @@
+package de.simplenfc.sim;
+
+import java.nio.ByteBuffer;
+
+import de.simplenfc.compress.Compression;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.entity.exceptions.MalformedNdefException;
+import de.simplenfc.entity.exceptions.NDEFException;
+import de.simplenfc.io.NdefTech;
+import de.simplenfc.io.TagHandle;
+import de.simplenfc.io.TagIoEngine;
+import de.simplenfc.io.TagTask;
+import de.simplenfc.io.TagWriter;
+import de.simplenfc.io.WriteOutcome;
+import de.simplenfc.io.WritePolicy;
+
+/**
+ * Runs the write and read pipeline of the library against a {@link SimulatedTag} on the calling thread and
+ * measures its throughput. Every iteration discovers the tag, writes a message through {@link TagWriter} and
+ * the {@link TagIoEngine} including its retries, discovers the tag again, reads the message back and parses it.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class LoadRunner {
+
+	private LoadRunner(){}
+
+
+	/**
+	 * @param tag The simulated tag.
+	 * @param messages Messages written in turn, should be immutable.
+	 * @param iterations Number of writes.
+	 * @param compression Compression allowed for messages which exceed the capacity of the tag.
+	 * @param policy Policy of every write.
+	 * @return The counters and the elapsed time of the run.
+	 */
+	public static Result run(SimulatedTag tag, NfcMessage[] messages, int iterations, Compression compression, WritePolicy policy){
+		TagIoEngine engine = TagIoEngine.getInstance();
+		Result result = new Result(iterations);
+		tag.resetCounters();
+
+		long start = System.nanoTime();
+		for(int i=0; i<iterations; i++){
+			NfcMessage message = messages[i % messages.length];
+
+			tag.discover();
+			try {
+				WriteOutcome outcome = engine.executeNow(new TagWriter(tag, message, compression, policy));
+				if(outcome == WriteOutcome.SKIPPED){
+					result.mSkipped++;
+				}else{
+					result.mWritten++;
+				}
+			} catch (Exception e) {
+				result.mFailed++;
+				continue;
+			}
+
+			tag.discover();
+			try {
+				ByteBuffer content = engine.executeNow(new ReadTask(tag));
+				if(content == null) throw new MalformedNdefException("Tag is empty.");
+
+				NfcMessage read = NfcMessage.parse(content);
+				boolean fits = message.getEncodedSize() <= tag.getNdef().getMaxSize();
+				if(fits && !read.getByteBuffer().equals(message.getByteBuffer())) result.mCorrupted++;
+			} catch (MalformedNdefException e) {
+				result.mCorrupted++;
+			} catch (Exception e) {
+				result.mFailed++;
+			}
+		}
+		result.mElapsedNanos = System.nanoTime() - start;
+		result.mPagesWritten = tag.getPagesWritten();
+		result.mPagesRead = tag.getPagesRead();
+		return result;
+	}
+
+
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+
+	/**
+	 * Counters of a run.
+	 */
+	public static final class Result{
+		private final int mIterations;
+		private int mWritten;
+		private int mSkipped;
+		private int mFailed;
+		private int mCorrupted;
+		private long mPagesWritten;
+		private long mPagesRead;
+		private long mElapsedNanos;
+
+		Result(int iterations){
+			mIterations = iterations;
+		}
+
+		/**
+		 * @return Number of iterations.
+		 */
+		public int getIterations(){
+			return mIterations;
+		}
+
+		/**
+		 * @return Number of successful writes.
+		 */
+		public int getWritten(){
+			return mWritten;
+		}
+
+		/**
+		 * @return Number of writes skipped by the {@link WritePolicy}.
+		 */
+		public int getSkipped(){
+			return mSkipped;
+		}
+
+		/**
+		 * @return Number of failed writes and reads, after all retries.
+		 */
+		public int getFailed(){
+			return mFailed;
+		}
+
+		/**
+		 * @return Number of reads which returned a malformed or different message.
+		 */
+		public int getCorrupted(){
+			return mCorrupted;
+		}
+
+		/**
+		 * @return Number of pages written to the tag.
+		 */
+		public long getPagesWritten(){
+			return mPagesWritten;
+		}
+
+		/**
+		 * @return Number of pages read from the tag.
+		 */
+		public long getPagesRead(){
+			return mPagesRead;
+		}
+
+		/**
+		 * @return Duration of the run in nanoseconds.
+		 */
+		public long getElapsedNanos(){
+			return mElapsedNanos;
+		}
+
+		/**
+		 * @return Iterations per second.
+		 */
+		public double getThroughput(){
+			return mElapsedNanos == 0 ? 0 : mIterations * 1e9 / mElapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "Result(iterations: "+mIterations+", written: "+mWritten+", skipped: "+mSkipped+", failed: "+mFailed
+					+", corrupted: "+mCorrupted+", pages written: "+mPagesWritten+", pages read: "+mPagesRead
+					+", "+String.format("%.1f", this.getThroughput())+" iterations/s)";
+		}
+	}
+
+	private static final class ReadTask extends TagTask<ByteBuffer>{
+		private final TagHandle mTag;
+
+		ReadTask(TagHandle tag){
+			mTag = tag;
+		}
+
+		@Override
+		protected ByteBuffer run() throws Exception {
+			NdefTech ndef = mTag.getNdef();
+			if(ndef == null) throw new NDEFException();
+
+			return this.connect(ndef).readMessage();
+		}
+	}
+}
@@ -0,0 +1,552 @@
+package de.simplenfc.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import android.nfc.FormatException;
+import android.nfc.TagLostException;
+import de.simplenfc.entity.NfcMessage;
+import de.simplenfc.io.NdefFormatableTech;
+import de.simplenfc.io.NdefTech;
+import de.simplenfc.io.TagHandle;
+import de.simplenfc.io.TagTech;
+import de.simplenfc.io.Type2Tech;
+
+/**
+ * In-memory NFC Forum Type 2 tag, for running {@link de.simplenfc.io.TagTask}s on the JVM without a device.
+ * The tag is modelled as page memory like a NTAG, with the capability container in page 3 and the data area
+ * from page 4. Its {@link NdefTech}, {@link NdefFormatableTech} and {@link Type2Tech} all work on that memory,
+ * so a message written by one is read by the others.
+ * <p>
+ * Every command to the tag, i.e. every page read or written, takes the configured latency and may fail with
+ * a {@link TagLostException} or an {@link IOException} at the configured rates. A NDEF-message is written page
+ * by page like on a real tag, so a lost tag leaves a torn write behind. {@link #setPresent(boolean)} removes the
+ * tag from the field.
+ * <p>
+ * The classes of {@code android.nfc} are used for exceptions, so the JVM needs them on the classpath, e.g. from a
+ * unit test runtime of the Android SDK.
+ *
+ * @author Benjamin R&uuml;hl (simplenfc@benjamin-ruehl.de)
+ * @author Dennis Becker (simplenfc@denbec.de)
+ * @version 1.0
+ *
+ */
+public final class SimulatedTag implements TagHandle {
+	/** Size of the data area of a NTAG213. */
+	public static final int DEFAULT_DATA_SIZE = 144;
+
+	private static final int PAGE_SIZE = Type2Tech.PAGE_SIZE;
+	private static final int CC_PAGE = 3;
+	private static final int DATA_PAGE = 4;
+	private static final byte CMD_READ = 0x30;
+	private static final byte CMD_WRITE = (byte) 0xA2;
+	private static final byte CMD_FAST_READ = 0x3A;
+	private static final int TLV_NDEF = 0x03;
+	private static final int TLV_TERMINATOR = 0xFE;
+	private static final int TLV_LONG_LENGTH = 0xFF;
+
+	private final byte[] mId;
+	private final byte[] mMemory;
+	private final int mDataSize;
+	private final boolean mType2;
+	private final boolean mFastRead;
+	private final long mLatencyMicros;
+	private final double mTagLostRate;
+	private final double mIoErrorRate;
+	private final Random mRandom;
+
+	private boolean mPresent = true;
+	private TagTech mConnected;
+	private ByteBuffer mCachedMessage;
+	private long mCommands;
+	private long mPagesRead;
+	private long mPagesWritten;
+	private long mFailures;
+
+
+	private SimulatedTag(Builder builder){
+		mId = builder.mId.clone();
+		mDataSize = builder.mDataSize;
+		mMemory = new byte[DATA_PAGE * PAGE_SIZE + mDataSize];
+		mType2 = builder.mType2;
+		mFastRead = builder.mFastRead;
+		mLatencyMicros = builder.mLatencyMicros;
+		mTagLostRate = builder.mTagLostRate;
+		mIoErrorRate = builder.mIoErrorRate;
+		mRandom = new Random(builder.mSeed);
+
+		System.arraycopy(mId, 0, mMemory, 0, Math.min(mId.length, 2 * PAGE_SIZE));
+		if(builder.mFormatted){
+			this.formatMemory(builder.mReadOnly);
+		}
+		this.discover();
+	}
+
+
+	/**
+	 * Simulates a new discovery of the tag: it is put into the field, all technologies are closed and the
+	 * message returned by {@link NdefTech#getCachedMessage()} is read again.
+	 */
+	public synchronized void discover(){
+		mPresent = true;
+		mConnected = null;
+		mCachedMessage = this.isFormatted() ? this.decodeMessage() : null;
+	}
+
+	/**
+	 * @param present False to remove the tag from the field, all further commands fail with {@link TagLostException}.
+	 */
+	public synchronized void setPresent(boolean present){
+		mPresent = present;
+	}
+
+
+	/**
+	 * @return The encoded NDEF-message in memory, or null if the tag is not formatted or empty. Takes no latency and never fails.
+	 */
+	public synchronized ByteBuffer getContent(){
+		return this.isFormatted() ? this.decodeMessage() : null;
+	}
+
+	/**
+	 * @return Copy of the whole page memory.
+	 */
+	public synchronized byte[] getMemory(){
+		return mMemory.clone();
+	}
+
+	/**
+	 * @return Number of commands sent to the tag, including failed ones.
+	 */
+	public synchronized long getCommands(){
+		return mCommands;
+	}
+
+	/**
+	 * @return Number of pages read from the tag.
+	 */
+	public synchronized long getPagesRead(){
+		return mPagesRead;
+	}
+
+	/**
+	 * @return Number of pages written to the tag.
+	 */
+	public synchronized long getPagesWritten(){
+		return mPagesWritten;
+	}
+
+	/**
+	 * @return Number of injected failures.
+	 */
+	public synchronized long getFailures(){
+		return mFailures;
+	}
+
+	/**
+	 * Resets all counters.
+	 */
+	public synchronized void resetCounters(){
+		mCommands = 0;
+		mPagesRead = 0;
+		mPagesWritten = 0;
+		mFailures = 0;
+	}
+
+
+	@Override
+	public byte[] getId() {
+		return mId.clone();
+	}
+
+	@Override
+	public synchronized NdefTech getNdef() {
+		return this.isFormatted() ? new SimNdef() : null;
+	}
+
+	@Override
+	public synchronized NdefFormatableTech getNdefFormatable() {
+		return this.isFormatted() ? null : new SimNdefFormatable();
+	}
+
+	@Override
+	public Type2Tech getType2() {
+		return mType2 ? new SimType2() : null;
+	}
+
+
+	/* **************************************** */
+	/* *********** private methods ************ */
+	/* **************************************** */
+
+	private boolean isFormatted(){
+		return (mMemory[CC_PAGE * PAGE_SIZE] & 0xFF) == 0xE1;
+	}
+
+	private boolean isWritable(){
+		return mMemory[CC_PAGE * PAGE_SIZE + 3] == 0;
+	}
+
+	private int getMaxSize(){
+		// type and length of the NDEF-TLV, a length of 255 bytes or more takes 3 bytes
+		return Math.max(Math.min(mDataSize - 2, TLV_LONG_LENGTH - 1), mDataSize - 4);
+	}
+
+	private void formatMemory(boolean readOnly){
+		int offset = CC_PAGE * PAGE_SIZE;
+		mMemory[offset] = (byte) 0xE1;
+		mMemory[offset + 1] = 0x10;
+		mMemory[offset + 2] = (byte) (mDataSize / 8);
+		mMemory[offset + 3] = (byte) (readOnly ? 0x0F : 0x00);
+
+		int data = DATA_PAGE * PAGE_SIZE;
+		mMemory[data] = TLV_NDEF;
+		mMemory[data + 1] = 0;
+		mMemory[data + 2] = (byte) TLV_TERMINATOR;
+	}
+
+	private ByteBuffer decodeMessage(){
+		int offset = DATA_PAGE * PAGE_SIZE;
+		int end = mMemory.length;
+		while(offset + 1 < end){
+			int type = mMemory[offset] & 0xFF;
+			if(type == 0) {
+				offset++;
+				continue;
+			}
+			if(type == TLV_TERMINATOR) return null;
+
+			int length = mMemory[offset + 1] & 0xFF;
+			int lengthSize = 1;
+			if(length == TLV_LONG_LENGTH){
+				if(offset + 3 >= end) return null;
+				length = (mMemory[offset + 2] & 0xFF) << 8 | (mMemory[offset + 3] & 0xFF);
+				lengthSize = 3;
+			}
+			int value = offset + 1 + lengthSize;
+			if(type == TLV_NDEF){
+				if(length == 0 || value + length > end) return null;
+
+				byte[] message = new byte[length];
+				System.arraycopy(mMemory, value, message, 0, length);
+				return ByteBuffer.wrap(message);
+			}
+			offset = value + length;
+		}
+		return null;
+	}
+
+	/**
+	 * Encodes a message as NDEF-TLV in front of the data area.
+	 */
+	private byte[] encodeTlv(NfcMessage message) throws IOException{
+		ByteBuffer encoded = message == null ? ByteBuffer.allocate(0) : message.getByteBuffer();
+		int length = encoded.remaining();
+		if(length > this.getMaxSize()) throw new IOException("Message of "+length+" bytes exceeds the capacity of "+this.getMaxSize()+" bytes.");
+
+		int lengthSize = length < TLV_LONG_LENGTH ? 1 : 3;
+		int end = 1 + lengthSize + length;
+		byte[] tlv = new byte[end < mDataSize ? end + 1 : end];
+		tlv[0] = TLV_NDEF;
+		if(lengthSize == 1){
+			tlv[1] = (byte) length;
+		}else{
+			tlv[1] = (byte) TLV_LONG_LENGTH;
+			tlv[2] = (byte) (length >>> 8);
+			tlv[3] = (byte) length;
+		}
+		encoded.duplicate().get(tlv, 1 + lengthSize, length);
+		if(end < tlv.length) tlv[end] = (byte) TLV_TERMINATOR;
+		return tlv;
+	}
+
+	/**
+	 * Writes a TLV page by page, each page as one command.
+	 */
+	private void writeTlv(TagTech tech, byte[] tlv) throws IOException{
+		int pages = (tlv.length + PAGE_SIZE - 1) / PAGE_SIZE;
+		for(int page=0; page<pages; page++){
+			byte[] data = new byte[PAGE_SIZE];
+			System.arraycopy(tlv, page * PAGE_SIZE, data, 0, Math.min(PAGE_SIZE, tlv.length - page * PAGE_SIZE));
+			this.writePage(tech, DATA_PAGE + page, data);
+		}
+	}
+
+	private byte[] readPages(TagTech tech, int first, int count) throws IOException{
+		int pages = mMemory.length / PAGE_SIZE;
+		if(first < 0 || first >= pages) throw new IOException("Page "+first+" out of range.");
+
+		this.command(tech);
+		byte[] data = new byte[count * PAGE_SIZE];
+		synchronized (this) {
+			for(int i=0; i<count; i++){
+				// reads beyond the last page roll over to page 0
+				System.arraycopy(mMemory, ((first + i) % pages) * PAGE_SIZE, data, i * PAGE_SIZE, PAGE_SIZE);
+			}
+			mPagesRead += count;
+		}
+		return data;
+	}
+
+	private void writePage(TagTech tech, int page, byte[] data) throws IOException{
+		if(data == null || data.length != PAGE_SIZE) throw new IllegalArgumentException("A page has "+PAGE_SIZE+" bytes.");
+
+		this.command(tech);
+		synchronized (this) {
+			if(page < CC_PAGE || page >= mMemory.length / PAGE_SIZE) throw new IOException("Page "+page+" is not writable.");
+			if(page >= DATA_PAGE && !this.isWritable()) throw new IOException("Tag is read-only.");
+
+			int offset = page * PAGE_SIZE;
+			for(int i=0; i<PAGE_SIZE; i++){
+				// the capability container is one-time programmable, bits can only be set
+				mMemory[offset + i] = page == CC_PAGE ? (byte) (mMemory[offset + i] | data[i]) : data[i];
+			}
+			mPagesWritten++;
+		}
+	}
+
+	/**
+	 * Accounts one command of a connected technology, sleeps for the latency and injects failures.
+	 */
+	private void command(TagTech tech) throws IOException{
+		boolean lost;
+		boolean error;
+		synchronized (this) {
+			if(mConnected != tech) throw new IllegalStateException("Call connect() first!");
+
+			mCommands++;
+			lost = !mPresent || mRandom.nextDouble() < mTagLostRate;
+			error = !lost && mRandom.nextDouble() < mIoErrorRate;
+			if(lost || error) mFailures++;
+		}
+		if(mLatencyMicros > 0){
+			try {
+				Thread.sleep(mLatencyMicros / 1000, (int) (mLatencyMicros % 1000) * 1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted.");
+			}
+		}
+		if(lost) throw new TagLostException("Tag was lost.");
+		if(error) throw new IOException("Transceive failed.");
+	}
+
+
+	/* **************************************** */
+	/* *********** internal class ************* */
+	/* **************************************** */
+
+	/**
+	 * Configuration of a {@link SimulatedTag}. By default the tag is a formatted, empty and writable NTAG213
+	 * which supports FAST_READ, answers without latency and never fails.
+	 */
+	public static final class Builder{
+		private byte[] mId = { 0x04, 0x11, 0x22, 0x33, 0x44, 0x55, 0x66 };
+		private int mDataSize = DEFAULT_DATA_SIZE;
+		private boolean mFormatted = true;
+		private boolean mReadOnly;
+		private boolean mType2 = true;
+		private boolean mFastRead = true;
+		private long mLatencyMicros;
+		private double mTagLostRate;
+		private double mIoErrorRate;
+		private long mSeed = 1;
+
+		/**
+		 * @param id UID of the tag.
+		 * @return This builder.
+		 */
+		public Builder setId(byte[] id){
+			mId = id.clone();
+			return this;
+		}
+
+		/**
+		 * @param dataSize Size of the data area in bytes, a multiple of 8, e.g. 144 (NTAG213), 496 (NTAG215) or 872 (NTAG216).
+		 * @return This builder.
+		 */
+		public Builder setDataSize(int dataSize){
+			if(dataSize < 8 || dataSize % 8 != 0 || dataSize > 255 * 8) throw new IllegalArgumentException("Invalid data size "+dataSize);
+			mDataSize = dataSize;
+			return this;
+		}
+
+		/**
+		 * @param formatted False for a tag which offers {@link NdefFormatableTech} instead of {@link NdefTech}.
+		 * @return This builder.
+		 */
+		public Builder setFormatted(boolean formatted){
+			mFormatted = formatted;
+			return this;
+		}
+
+		/**
+		 * @param readOnly True to lock the data area.
+		 * @return This builder.
+		 */
+		public Builder setReadOnly(boolean readOnly){
+			mReadOnly = readOnly;
+			return this;
+		}
+
+		/**
+		 * @param type2 False to hide the page access, so only NDEF operations are available.
+		 * @param fastRead False for a tag which answers FAST_READ with a NAK.
+		 * @return This builder.
+		 */
+		public Builder setType2(boolean type2, boolean fastRead){
+			mType2 = type2;
+			mFastRead = fastRead;
+			return this;
+		}
+
+		/**
+		 * @param latencyMicros Time every command takes, in microseconds.
+		 * @return This builder.
+		 */
+		public Builder setLatency(long latencyMicros){
+			mLatencyMicros = latencyMicros;
+			return this;
+		}
+
+		/**
+		 * @param tagLostRate Probability of a command to fail with {@link TagLostException}.
+		 * @param ioErrorRate Probability of a command to fail with {@link IOException}.
+		 * @param seed Seed of the random failures, runs with the same seed fail the same way.
+		 * @return This builder.
+		 */
+		public Builder setFailures(double tagLostRate, double ioErrorRate, long seed){
+			mTagLostRate = tagLostRate;
+			mIoErrorRate = ioErrorRate;
+			mSeed = seed;
+			return this;
+		}
+
+		/**
+		 * @return New tag.
+		 */
+		public SimulatedTag build(){
+			return new SimulatedTag(this);
+		}
+	}
+
+	private abstract class SimTech implements TagTech{
+
+		@Override
+		public void connect() throws IOException {
+			synchronized (SimulatedTag.this) {
+				if(mConnected != null && mConnected != this) throw new IllegalStateException("Close other technology first!");
+				if(!mPresent) throw new TagLostException("Tag was lost.");
+				mConnected = this;
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (SimulatedTag.this) {
+				if(mConnected == this) mConnected = null;
+			}
+		}
+
+		@Override
+		public boolean isConnected() {
+			synchronized (SimulatedTag.this) {
+				return mConnected == this;
+			}
+		}
+	}
+
+	private final class SimNdef extends SimTech implements NdefTech{
+
+		@Override
+		public boolean isWritable() {
+			synchronized (SimulatedTag.this) {
+				return SimulatedTag.this.isWritable();
+			}
+		}
+
+		@Override
+		public int getMaxSize() {
+			return SimulatedTag.this.getMaxSize();
+		}
+
+		@Override
+		public ByteBuffer getCachedMessage() {
+			synchronized (SimulatedTag.this) {
+				return mCachedMessage == null ? null : mCachedMessage.duplicate();
+			}
+		}
+
+		@Override
+		public ByteBuffer readMessage() throws IOException {
+			int pages = mDataSize / PAGE_SIZE;
+			for(int page=0; page<pages; page+=4){
+				SimulatedTag.this.readPages(this, DATA_PAGE + page, Math.min(4, pages - page));
+			}
+			synchronized (SimulatedTag.this) {
+				return SimulatedTag.this.decodeMessage();
+			}
+		}
+
+		@Override
+		public boolean verifyMessage(NfcMessage message) throws IOException {
+			ByteBuffer read = this.readMessage();
+			return read != null && read.equals(message.getByteBuffer());
+		}
+
+		@Override
+		public void writeMessage(NfcMessage message) throws IOException {
+			if(!this.isWritable()) throw new IOException("Tag is read-only.");
+
+			SimulatedTag.this.writeTlv(this, SimulatedTag.this.encodeTlv(message));
+		}
+	}
+
+	private final class SimNdefFormatable extends SimTech implements NdefFormatableTech{
+
+		@Override
+		public void format(NfcMessage message) throws IOException, FormatException {
+			byte[] tlv = SimulatedTag.this.encodeTlv(message);
+
+			byte[] cc = { (byte) 0xE1, 0x10, (byte) (mDataSize / 8), 0x00 };
+			SimulatedTag.this.writePage(this, CC_PAGE, cc);
+			SimulatedTag.this.writeTlv(this, tlv);
+		}
+	}
+
+	private final class SimType2 extends SimTech implements Type2Tech{
+
+		@Override
+		public byte[] readPages(int pageOffset) throws IOException {
+			return SimulatedTag.this.readPages(this, pageOffset, 4);
+		}
+
+		@Override
+		public void writePage(int pageOffset, byte[] data) throws IOException {
+			SimulatedTag.this.writePage(this, pageOffset, data);
+		}
+
+		@Override
+		public byte[] transceive(byte[] data) throws IOException {
+			if(data.length == 2 && data[0] == CMD_READ){
+				return this.readPages(data[1] & 0xFF);
+			}
+			if(data.length == 6 && data[0] == CMD_WRITE){
+				byte[] page = new byte[PAGE_SIZE];
+				System.arraycopy(data, 2, page, 0, PAGE_SIZE);
+				this.writePage(data[1] & 0xFF, page);
+				return new byte[]{ 0x0A };
+			}
+			if(data.length == 3 && data[0] == CMD_FAST_READ && mFastRead){
+				int first = data[1] & 0xFF;
+				int last = data[2] & 0xFF;
+				if(last < first || last >= mMemory.length / PAGE_SIZE) throw new IOException("Transceive failed.");
+				return SimulatedTag.this.readPages(this, first, last - first + 1);
+			}
+			// a NAK, which ends the activation of the tag like on a real tag
+			this.close();
+			throw new IOException("Transceive failed.");
+		}
+	}
+}